@@ -0,0 +1,49 @@
+package libember.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of this library with the allocation profiler enabled,
+ * so every run reports the bytes allocated per operation next to the time.
+ * <p>
+ * The benchmarks are compiled together with the library sources against
+ * <i>jmh-core</i>, with <i>jmh-generator-annprocess</i> as annotation
+ * processor. The pom in the bench directory does this: <i>mvn package</i>
+ * builds <i>target/benchmarks.jar</i>, which runs this class via
+ * <i>java -jar target/benchmarks.jar</i>. All JMH command line options are
+ * accepted, for example a regular expression selecting the benchmarks to run,
+ * or <i>-rf json</i> to store the results for comparison with a later run.
+ * </p>
+ */
+public final class BenchmarkRunner {
+	/**
+	 * This class only contains static members.
+	 */
+	private BenchmarkRunner() {
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 * 
+	 * @param args
+	 *            The JMH command line options.
+	 * @throws CommandLineOptionException
+	 *             Thrown if the options are invalid.
+	 * @throws RunnerException
+	 *             Thrown if a benchmark fails.
+	 */
+	public static void main(String[] args) throws CommandLineOptionException,
+			RunnerException {
+		final Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class).build();
+
+		new Runner(options).run();
+	}
+}
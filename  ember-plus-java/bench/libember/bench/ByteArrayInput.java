@@ -0,0 +1,43 @@
+package libember.bench;
+
+import java.util.NoSuchElementException;
+
+import libember.util.InputStream;
+
+/**
+ * An {@link InputStream} reading from a byte array, which can be rewound
+ * without allocating. {@link libember.util.MemoryStream} is not used by the
+ * benchmarks, since it boxes every byte and consumes in linear time.
+ */
+final class ByteArrayInput implements InputStream {
+	private byte[] bytes = new byte[0];
+	private int position;
+
+	/**
+	 * Initializes a new instance of the {@link ByteArrayInput} class.
+	 */
+	ByteArrayInput() {
+	}
+
+	public void consume() {
+		position++;
+	}
+
+	public int peek() throws NoSuchElementException {
+		if (position >= bytes.length)
+			throw new NoSuchElementException();
+
+		return bytes[position] & 0xFF;
+	}
+
+	/**
+	 * Starts reading a byte array from the beginning.
+	 * 
+	 * @param bytes
+	 *            The bytes to read.
+	 */
+	void reset(byte[] bytes) {
+		this.bytes = bytes;
+		this.position = 0;
+	}
+}
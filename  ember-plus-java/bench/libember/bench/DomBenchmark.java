@@ -0,0 +1,68 @@
+package libember.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import libember.dom.AsyncDomReader;
+import libember.dom.Node;
+import libember.glow.GlowNodeFactory;
+import libember.util.ByteStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the decoding of complete glow messages by an
+ * {@link AsyncDomReader} and the encoding of the corresponding trees by
+ * {@link Node#encode(libember.util.OutputStream)}. See {@link GlowMessages}
+ * for the messages.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DomBenchmark {
+	@Param({ "tree", "matrix", "streams" })
+	public String message;
+
+	private final AsyncDomReader reader = new AsyncDomReader(
+			new GlowNodeFactory());
+	private Node tree;
+	private byte[] encoded;
+	private ByteStream output;
+
+	@Setup
+	public void setup() {
+		tree = GlowMessages.create(message);
+		encoded = GlowMessages.encode(tree);
+		output = new ByteStream(encoded.length);
+	}
+
+	@Benchmark
+	public Node decode() {
+		reader.reset();
+
+		for (int i = 0; i < encoded.length; i++) {
+			reader.read(encoded[i] & 0xFF);
+		}
+
+		return reader.root();
+	}
+
+	@Benchmark
+	public int encode() {
+		output.clear();
+		tree.encode(output);
+		return output.size();
+	}
+}
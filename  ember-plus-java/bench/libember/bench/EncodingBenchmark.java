@@ -0,0 +1,135 @@
+package libember.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import libember.ber.Encoding;
+import libember.ber.Oid;
+import libember.util.ByteStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the encoding and decoding of the primitive BER values used by
+ * glow: integers, reals, UTF-8 strings and relative object identifiers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodingBenchmark {
+	private final static int INT = 123456789;
+	private final static long LONG = -1234567890123L;
+	private final static double REAL = -23.625;
+	private final static String STRING = "Kanal 12 Gr\u00F6\u00DFe";
+	private final static Oid OID = new Oid(Arrays.asList(1, 2, 3, 400,
+			50000));
+
+	private final ByteStream output = new ByteStream(64);
+	private final ByteArrayInput input = new ByteArrayInput();
+	private byte[] encodedInt;
+	private byte[] encodedLong;
+	private byte[] encodedReal;
+	private byte[] encodedString;
+	private byte[] encodedOid;
+
+	@Setup
+	public void setup() {
+		Encoding.encode(output, INT);
+		encodedInt = take();
+		Encoding.encode(output, LONG);
+		encodedLong = take();
+		Encoding.encode(output, REAL);
+		encodedReal = take();
+		Encoding.encode(output, STRING);
+		encodedString = take();
+		Encoding.encode(output, OID);
+		encodedOid = take();
+	}
+
+	/**
+	 * Returns the bytes written to the output and clears it.
+	 */
+	private byte[] take() {
+		final byte[] bytes = output.toArray();
+
+		output.clear();
+		return bytes;
+	}
+
+	@Benchmark
+	public int decodeInt() {
+		input.reset(encodedInt);
+		return Encoding.decode(input, encodedInt.length, Encoding.INT);
+	}
+
+	@Benchmark
+	public long decodeLong() {
+		input.reset(encodedLong);
+		return Encoding.decode(input, encodedLong.length, Encoding.LONG);
+	}
+
+	@Benchmark
+	public Oid decodeOid() {
+		input.reset(encodedOid);
+		return Encoding.decode(input, encodedOid.length, Encoding.OID);
+	}
+
+	@Benchmark
+	public double decodeReal() {
+		input.reset(encodedReal);
+		return Encoding.decode(input, encodedReal.length, Encoding.DOUBLE);
+	}
+
+	@Benchmark
+	public String decodeString() {
+		input.reset(encodedString);
+		return Encoding.decode(input, encodedString.length, Encoding.STRING);
+	}
+
+	@Benchmark
+	public int encodeInt() {
+		output.clear();
+		Encoding.encode(output, INT);
+		return output.size();
+	}
+
+	@Benchmark
+	public int encodeLong() {
+		output.clear();
+		Encoding.encode(output, LONG);
+		return output.size();
+	}
+
+	@Benchmark
+	public int encodeOid() {
+		output.clear();
+		Encoding.encode(output, OID);
+		return output.size();
+	}
+
+	@Benchmark
+	public int encodeReal() {
+		output.clear();
+		Encoding.encode(output, REAL);
+		return output.size();
+	}
+
+	@Benchmark
+	public int encodeString() {
+		output.clear();
+		Encoding.encode(output, STRING);
+		return output.size();
+	}
+}
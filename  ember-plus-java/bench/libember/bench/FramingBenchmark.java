@@ -0,0 +1,77 @@
+package libember.bench;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import libember.s101.StreamDecoder;
+import libember.s101.StreamDecoderListener;
+import libember.s101.StreamEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the S101 framing of a payload by {@link StreamEncoder} and the
+ * unframing of the resulting frame by {@link StreamDecoder}. The payload is
+ * random, so about three percent of its bytes have to be escaped.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FramingBenchmark {
+	@Param({ "64", "1024", "16384" })
+	public int payloadSize;
+
+	private final StreamEncoder encoder = new StreamEncoder();
+	private byte[] payload;
+	private byte[] frame;
+	private int decoded;
+	private StreamDecoder decoder;
+
+	@Setup
+	public void setup() {
+		payload = new byte[payloadSize];
+		new Random(101).nextBytes(payload);
+
+		encoder.reset();
+		encoder.encode(payload, 0, payload.length);
+		encoder.finish();
+		frame = encoder.toArray();
+
+		decoder = new StreamDecoder(new StreamDecoderListener() {
+			public void messageDecoded(Iterator<Integer> i) {
+				decoded++;
+			}
+		});
+	}
+
+	@Benchmark
+	public int decode() {
+		for (int i = 0; i < frame.length; i++) {
+			decoder.read(frame[i] & 0xFF);
+		}
+
+		return decoded;
+	}
+
+	@Benchmark
+	public int encode() {
+		encoder.reset();
+		encoder.encode(payload, 0, payload.length);
+		encoder.finish();
+		return encoder.size();
+	}
+}
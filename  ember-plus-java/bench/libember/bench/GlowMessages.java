@@ -0,0 +1,166 @@
+package libember.bench;
+
+import java.util.ArrayList;
+
+import libember.dom.Node;
+import libember.glow.GlowConnection;
+import libember.glow.GlowMatrix;
+import libember.glow.GlowNode;
+import libember.glow.GlowParameter;
+import libember.glow.GlowRootElementCollection;
+import libember.glow.GlowStreamCollection;
+import libember.util.ByteStream;
+
+/**
+ * Creates the glow messages used by the DOM benchmarks. The messages resemble
+ * the traffic of a large router: a complete tree sent in response to a
+ * recursive GetDirectory, a matrix with a connection for every target and a
+ * stream collection carrying audio levels.
+ */
+final class GlowMessages {
+	/**
+	 * This class only contains static members.
+	 */
+	private GlowMessages() {
+	}
+
+	/**
+	 * Creates a message by name.
+	 * 
+	 * @param name
+	 *            One of "tree", "matrix" or "streams".
+	 * @return The root node of the message.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link name} is unknown.
+	 */
+	static Node create(String name) throws IllegalArgumentException {
+		if (name.equals("tree"))
+			return tree(50, 20);
+		else if (name.equals("matrix"))
+			return matrix(256, 256);
+		else if (name.equals("streams"))
+			return streams(500);
+		else
+			throw new IllegalArgumentException("name");
+	}
+
+	/**
+	 * Encodes a message.
+	 * 
+	 * @param message
+	 *            The message to encode.
+	 * @return The BER encoding of the message.
+	 */
+	static byte[] encode(Node message) {
+		final ByteStream stream = new ByteStream(message.encodedLength());
+
+		message.encode(stream);
+		return stream.toArray();
+	}
+
+	/**
+	 * Creates a matrix whose targets are each connected to four sources.
+	 * 
+	 * @param targets
+	 *            The number of targets.
+	 * @param sources
+	 *            The number of sources.
+	 * @return The root collection containing the matrix.
+	 */
+	static GlowRootElementCollection matrix(int targets, int sources) {
+		final GlowRootElementCollection root = GlowRootElementCollection
+				.create();
+		final GlowMatrix matrix = new GlowMatrix(root, 1);
+
+		matrix.setIdentifier("router");
+		matrix.setDescription("Video Router");
+		matrix.setTargetCount(targets);
+		matrix.setSourceCount(sources);
+
+		for (int target = 0; target < targets; target++) {
+			final GlowConnection connection = new GlowConnection(target);
+			final ArrayList<Integer> connected = new ArrayList<Integer>(4);
+
+			for (int i = 0; i < 4; i++) {
+				connected.add((target * 7 + i * 61) % sources);
+			}
+
+			connection.setSources(connected);
+			matrix.connections(true).insert(connection);
+		}
+
+		return root;
+	}
+
+	/**
+	 * Creates a stream collection containing integer and real entries.
+	 * 
+	 * @param entries
+	 *            The number of entries.
+	 * @return The stream collection.
+	 */
+	static GlowStreamCollection streams(int entries) {
+		final GlowStreamCollection streams = GlowStreamCollection.create();
+
+		for (int i = 0; i < entries; i++) {
+			if ((i & 1) == 0) {
+				streams.insert(i, -(i % 96));
+			} else {
+				streams.insert(i, -0.5 * (i % 96));
+			}
+		}
+
+		return streams;
+	}
+
+	/**
+	 * Creates a device node containing nodes with parameters of all common
+	 * value types.
+	 * 
+	 * @param nodes
+	 *            The number of nodes below the device node.
+	 * @param parameters
+	 *            The number of parameters of each node.
+	 * @return The root collection containing the device node.
+	 */
+	static GlowRootElementCollection tree(int nodes, int parameters) {
+		final GlowRootElementCollection root = GlowRootElementCollection
+				.create();
+		final GlowNode device = new GlowNode(root, 1);
+
+		device.setIdentifier("device");
+		device.setDescription("Audio Console");
+
+		for (int n = 1; n <= nodes; n++) {
+			final GlowNode channel = new GlowNode(device, n);
+
+			channel.setIdentifier("channel" + n);
+			channel.setDescription("Channel " + n);
+
+			for (int p = 1; p <= parameters; p++) {
+				final GlowParameter parameter = new GlowParameter(channel, p);
+
+				parameter.setIdentifier("parameter" + p);
+				parameter.setDescription("Kanal " + n + " Gr\u00F6\u00DFe " + p);
+
+				switch (p % 3) {
+				case 0:
+					parameter.setValue((long) (n * p));
+					parameter.setMinimum(0L);
+					parameter.setMaximum(1000L);
+					break;
+				case 1:
+					parameter.setValue(-20.0 + p * 0.25);
+					parameter.setMinimum(-128.0);
+					parameter.setMaximum(15.0);
+					break;
+				default:
+					parameter.setValue("Label " + n + "." + p);
+					break;
+				}
+			}
+		}
+
+		return root;
+	}
+}
@@ -0,0 +1,50 @@
+package libember.s101;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the table driven crc of the S101 framing. The benchmark lives in
+ * the package of {@link Crc16}, since that class is internal.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Crc16Benchmark {
+	@Param({ "64", "1024" })
+	public int length;
+
+	private byte[] bytes;
+
+	@Setup
+	public void setup() {
+		bytes = new byte[length];
+		new Random(16).nextBytes(bytes);
+	}
+
+	@Benchmark
+	public int sample() {
+		int crc = 0xFFFF;
+
+		for (int i = 0; i < bytes.length; i++) {
+			crc = Crc16.sample(crc, bytes[i] & 0xFF);
+		}
+
+		return crc;
+	}
+}
@@ -928,7 +928,7 @@ public static int encodedLength(char value) {
 				final long exponent = ((0x7FF0000000000000L & bits) >> 52L) - 1023;
 				long mantissa = (0x000FFFFFFFFFFFFFL & bits) | 0x0010000000000000L;
 
-				while ((mantissa & 0xFF) == 0xFF) {
+				while ((mantissa & 0xFF) == 0x00) {
 					mantissa >>= 8;
 				}
 
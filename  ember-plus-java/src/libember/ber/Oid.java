@@ -17,6 +17,8 @@ public final class Oid extends ImmutableCollection<Integer> implements
 	 */
 	public static final Oid EMPTY = new Oid();
 
+	private int hash;
+
 	/**
 	 * Initializes a new instance of the {@link Oid} class.
 	 */
@@ -73,6 +75,33 @@ public final class Oid extends ImmutableCollection<Integer> implements
 	public boolean equals(Oid other) {
 		return compareTo(other) == 0;
 	}
+
+	/**
+	 * Computes a hash code from the sub-identifiers of this {@link Oid}, which
+	 * is consistent with {@link #equals(Oid)} and allows to use instances of
+	 * this class as keys of hash based collections. The value is computed once
+	 * and cached, since an {@link Oid} is immutable.
+	 * 
+	 * @return The hash code of this {@link Oid}.
+	 */
+	@Override
+	public int hashCode() {
+		int result = hash;
+
+		if (result == 0) {
+			final int length = size();
+
+			result = 1;
+
+			for (int i = 0; i < length; ++i) {
+				result = 31 * result + get(i);
+			}
+
+			hash = result;
+		}
+
+		return result;
+	}
 	
 	/**
 	 * Concatenates the sub-ids from this {@link Oid} and the sub-ids
@@ -108,11 +137,34 @@ public final class Oid extends ImmutableCollection<Integer> implements
     for (final Integer n : this)
       data.add(n);
 
-    data.set(size, subid);
+    data.add(subid);
 
     return new Oid(data);
   }
 
+	/**
+	 * Gets the {@link Oid} of the parent element, which consists of all
+	 * sub-ids of this {@link Oid} except the last one.
+	 * 
+	 * @return A new instance of {@link Oid}, or {@link #EMPTY} if this
+	 *         {@link Oid} contains less than two sub-ids.
+	 */
+	public Oid parent() {
+		final int size = size() - 1;
+
+		if (size <= 0) {
+			return EMPTY;
+		}
+
+		final ArrayList<Integer> data = new ArrayList<Integer>(size);
+
+		for (int i = 0; i < size; i++) {
+			data.add(get(i));
+		}
+
+		return new Oid(data);
+	}
+
 	@Override
 	public String toString() {
 		final String items = StringUtil.join(".", iterator());
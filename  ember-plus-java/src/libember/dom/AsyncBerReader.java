@@ -6,6 +6,7 @@ import java.util.Stack;
 
 import libember.ber.Encoding;
 import libember.ber.Length;
+import libember.ber.Octets;
 import libember.ber.Oid;
 import libember.ber.Tag;
 import libember.ber.Type;
@@ -392,6 +393,11 @@ public abstract class AsyncBerReader {
 					Encoding.OID);
 			return new Value(value);
 		}
+		case OCTETSTRING: {
+			final Octets value = Encoding.decode(valueBuffer, encodedLength,
+					Encoding.OCTETS);
+			return new Value(value);
+		}
 		default: {
 			return null;
 		}
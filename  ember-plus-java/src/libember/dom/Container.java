@@ -49,6 +49,23 @@ public abstract class Container extends Node implements Iterable<Node> {
 		child.setParent(this);
 	}
 
+	/**
+	 * Computes the fingerprint of this container from the fingerprints of its
+	 * children, in the order of the children.
+	 * 
+	 * @return The fingerprint of this container.
+	 */
+	@Override
+	protected long fingerprintImpl() {
+		long hash = Fingerprint.start(this);
+
+		for (Iterator<Node> it = iterator(); it.hasNext(); /* Nothing */) {
+			hash = Fingerprint.mix(hash, it.next().fingerprint());
+		}
+
+		return hash;
+	}
+
 	/**
 	 * The implementation of this method is responsible for inserting the
 	 * provided child node at the specified index. If the index is out of the
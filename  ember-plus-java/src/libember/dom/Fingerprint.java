@@ -0,0 +1,149 @@
+package libember.dom;
+
+import libember.ber.Octets;
+import libember.ber.Oid;
+import libember.ber.Tag;
+import libember.ber.Value;
+
+/**
+ * Helper functions used to compute the fingerprint of a {@link Node}. A
+ * fingerprint is built by starting with the tags of a node and mixing in the
+ * value of a leaf, the fingerprints of the children of a container or the
+ * encoded bytes of any other node.
+ */
+final class Fingerprint {
+	private final static long SEED = 0xCBF29CE484222325L;
+	private final static long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * This class only contains static members.
+	 */
+	private Fingerprint() {
+	}
+
+	/**
+	 * Mixes the encoded bytes of a node into a fingerprint.
+	 * 
+	 * @param hash
+	 *            The fingerprint to extend.
+	 * @param buffer
+	 *            The buffer containing the bytes.
+	 * @param length
+	 *            The number of valid bytes within the buffer.
+	 * @return The combined fingerprint.
+	 */
+	static long mix(long hash, byte[] buffer, int length) {
+		for (int i = 0; i < length; i++) {
+			hash = mix(hash, buffer[i]);
+		}
+
+		return mix(hash, length);
+	}
+
+	/**
+	 * Mixes a single value into a fingerprint.
+	 * 
+	 * @param hash
+	 *            The fingerprint to extend.
+	 * @param value
+	 *            The value to add.
+	 * @return The combined fingerprint.
+	 */
+	static long mix(long hash, long value) {
+		hash = (hash ^ value) * MULTIPLIER;
+		return hash ^ (hash >>> 29);
+	}
+
+	/**
+	 * Mixes the characters of a string into a fingerprint.
+	 * 
+	 * @param hash
+	 *            The fingerprint to extend.
+	 * @param string
+	 *            The string to add.
+	 * @return The combined fingerprint.
+	 */
+	static long mix(long hash, String string) {
+		final int length = string.length();
+
+		for (int i = 0; i < length; i++) {
+			hash = mix(hash, string.charAt(i));
+		}
+
+		return mix(hash, length);
+	}
+
+	/**
+	 * Mixes the class and number of a tag into a fingerprint. The container
+	 * flag is ignored.
+	 * 
+	 * @param hash
+	 *            The fingerprint to extend.
+	 * @param tag
+	 *            The tag to add.
+	 * @return The combined fingerprint.
+	 */
+	static long mix(long hash, Tag tag) {
+		return mix(mix(hash, tag.preamble() & 0xC0), tag.number());
+	}
+
+	/**
+	 * Mixes a type erased value into a fingerprint. {@link MutableLeaf}
+	 * produces the same result for its primitive values without creating a
+	 * {@link Value}.
+	 * 
+	 * @param hash
+	 *            The fingerprint to extend.
+	 * @param value
+	 *            The value to add.
+	 * @return The combined fingerprint.
+	 */
+	static long mix(long hash, Value value) {
+		hash = mix(hash, value.type().value());
+
+		switch (value.type()) {
+		case BOOLEAN:
+			return mix(hash, value.toBoolean() ? 1 : 0);
+		case INTEGER:
+			return mix(hash, value.toLong());
+		case REAL:
+			return mix(hash, Double.doubleToLongBits(value.toDouble()));
+		case UTF8STRING:
+			return mix(hash, value.toUTF8String());
+		case OCTETSTRING: {
+			final Octets octets = value.toOctets();
+			final int size = octets.size();
+
+			for (int i = 0; i < size; i++) {
+				hash = mix(hash, octets.get(i).intValue());
+			}
+
+			return mix(hash, size);
+		}
+		case RELATIVEOID: {
+			final Oid oid = value.toOid();
+			final int size = oid.size();
+
+			for (int i = 0; i < size; i++) {
+				hash = mix(hash, oid.get(i).intValue());
+			}
+
+			return mix(hash, size);
+		}
+		default:
+			return hash;
+		}
+	}
+
+	/**
+	 * Creates the initial fingerprint of a node from its application tag and
+	 * its type tag.
+	 * 
+	 * @param node
+	 *            The node to create the fingerprint for.
+	 * @return The initial fingerprint.
+	 */
+	static long start(Node node) {
+		return mix(mix(SEED, node.applicationTag()), node.typeTag());
+	}
+}
@@ -10,11 +10,12 @@ import libember.util.OutputStream;
 /**
  * This class represents a leaf within an ber tree. A {@link Leaf} must not
  * contain any children, but a value instead. This class accepts instance of
- * {@link Value}, which is a type erased value that is encodable. The value this
- * class is initialized with is immutable.
+ * {@link Value}, which is a type erased value that is encodable. The
+ * {@link Value} itself is immutable, but it may be exchanged by calling
+ * {@link #setValue(Value)}, which allows to update a leaf in place.
  */
 public class Leaf extends Node {
-	private final Value value;
+	private Value value;
 	private int cachedLength;
 
 	/**
@@ -36,6 +37,42 @@ public class Leaf extends Node {
 		this.value = value;
 	}
 
+	/**
+	 * Initializes a new instance of the {@link Leaf} class without a
+	 * {@link Value}. This constructor is meant for derived classes which store
+	 * their value differently and therefore override {@link #value()},
+	 * {@link #encodedPayloadLength()}, {@link #encodePayload(OutputStream)}
+	 * and {@link #typeTagImpl()}.
+	 * 
+	 * @param applicationTag
+	 *            The application tag of this node.
+	 * @throws NullPointerException
+	 *             Thrown if {@link applicationTag} is <i>null</i>.
+	 */
+	protected Leaf(Tag applicationTag) throws NullPointerException {
+		super(applicationTag);
+	}
+
+	/**
+	 * Gets the encoded length of the value, excluding the type tag and the
+	 * length.
+	 * 
+	 * @return The encoded length of the value.
+	 */
+	protected int encodedPayloadLength() {
+		return value.encodedLength();
+	}
+
+	/**
+	 * Encodes the value, without the type tag and the length.
+	 * 
+	 * @param output
+	 *            The {@link OutputStream} to write the encoded value to.
+	 */
+	protected void encodePayload(OutputStream output) {
+		value.encode(output);
+	}
+
 	@Override
 	protected int encodedLengthImpl() {
 		return cachedLength;
@@ -45,7 +82,7 @@ public class Leaf extends Node {
 	protected void encodeImpl(OutputStream output) {
 		final Tag innerTag = typeTag();
 		final int innerTagLength = Encoding.encodedLength(innerTag);
-		final int payloadLength = value.encodedLength();
+		final int payloadLength = encodedPayloadLength();
 		final int innerLength = innerTagLength
 				+ Encoding.encodedLength(new Length(payloadLength))
 				+ payloadLength;
@@ -55,7 +92,12 @@ public class Leaf extends Node {
 		Encoding.encode(output, innerTag);
 		Encoding.encode(output, new Length(payloadLength));
 
-		value.encode(output);
+		encodePayload(output);
+	}
+
+	@Override
+	protected long fingerprintImpl() {
+		return Fingerprint.mix(Fingerprint.start(this), value());
 	}
 
 	@Override
@@ -66,19 +108,34 @@ public class Leaf extends Node {
 	@Override
 	protected void updateImpl() {
 		final int innerTagLength = Encoding.encodedLength(typeTag());
-		final int payloadLength = value.encodedLength();
+		final int payloadLength = encodedPayloadLength();
 		final int innerLength = innerTagLength
 				+ Encoding.encodedLength(new Length(payloadLength))
 				+ payloadLength;
 
-		final int outerTagLength = Encoding.encodedLength(applicationTag()
-				.toContainer());
+		final int outerTagLength = Encoding.encodedLength(applicationTag());
 		final int outerLength = outerTagLength
 				+ Encoding.encodedLength(new Length(innerLength)) + innerLength;
 
 		cachedLength = outerLength;
 	}
 
+	/**
+	 * Replaces the {@link Value} this instance stores and marks this leaf and
+	 * its ancestors dirty.
+	 * 
+	 * @param value
+	 *            The new value to store.
+	 * @throws NullPointerException
+	 *             Thrown if {@link value} is <i>null</i>.
+	 */
+	public void setValue(Value value) throws NullPointerException {
+		Assert.AssertNotNull(value, "value");
+
+		this.value = value;
+		markDirty();
+	}
+
 	/**
 	 * Gets the {@link Value} this instance stores.
 	 * 
@@ -1,7 +1,8 @@
 package libember.dom;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Vector;
+import java.util.NoSuchElementException;
 
 import libember.ber.Encoding;
 import libember.ber.Length;
@@ -10,12 +11,22 @@ import libember.util.OutputStream;
 
 /**
  * This class servers as a base class for the {@link Set} and the
- * {@link Sequence}.
+ * {@link Sequence}. The children are stored in a plain, unsynchronized array
+ * which grows on demand, so indexed access is a constant time operation.
  */
 abstract class ListContainer extends Container {
-	private final Vector<Node> children = new Vector<Node>();
+	private final static Node[] EMPTY = new Node[0];
+	private Node[] children = EMPTY;
+	private int count = 0;
 	private int cachedLength = 0;
 
+	/**
+	 * The accumulated encoded length of all children. It is maintained
+	 * incrementally when children are inserted, removed or change their
+	 * length.
+	 */
+	private int payloadLength = 0;
+
 	/**
 	 * Initializes a new instance of the {@link ListContainer} class.
 	 * 
@@ -29,17 +40,32 @@ abstract class ListContainer extends Container {
 	}
 
 	/**
-	 * Gets the accumulated encoded length of all children of this container.
-	 * 
-	 * @return The accumulated encoded length of all children of this container.
+	 * Iterator traversing the child array of a {@link ListContainer}.
 	 */
-	private int encodedPayloadLength() {
-		int payloadLength = 0;
+	private final class ChildIterator implements Iterator<Node> {
+		private int cursor = 0;
+
+		public boolean hasNext() {
+			return cursor < count;
+		}
 
-		for (Iterator<Node> it = iterator(); it.hasNext();) {
-			payloadLength += it.next().encodedLength();
+		public Node next() {
+			if (cursor >= count)
+				throw new NoSuchElementException();
+
+			return children[cursor++];
+		}
+
+		/**
+		 * This operation is not supported and throws an
+		 * {@link UnsupportedOperationException} exception.
+		 * 
+		 * @throws UnsupportedOperationException
+		 *             Thrown when this method is being called.
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
 		}
-		return payloadLength;
 	}
 
 	/**
@@ -51,9 +77,8 @@ abstract class ListContainer extends Container {
 	 *             Thrown if {@link output} is <i>null</i>.
 	 */
 	private void encodePayload(OutputStream output) throws NullPointerException {
-		for (Iterator<Node> it = iterator(); it.hasNext(); /** Nothing */
-		) {
-			it.next().encode(output);
+		for (int index = 0; index < count; index++) {
+			children[index].encode(output);
 		}
 	}
 
@@ -66,7 +91,6 @@ abstract class ListContainer extends Container {
 	protected void encodeImpl(OutputStream output) {
 		final Tag innerContainerTag = typeTag().toContainer();
 		final int innerTagLength = Encoding.encodedLength(innerContainerTag);
-		final int payloadLength = encodedPayloadLength();
 		final int innerLength = innerTagLength
 				+ Encoding.encodedLength(new Length(payloadLength))
 				+ payloadLength;
@@ -80,42 +104,146 @@ abstract class ListContainer extends Container {
 
 	@Override
 	protected void eraseImpl(int index) {
-		children.remove(index);
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException();
+
+		final int moved = count - index - 1;
+
+		payloadLength -= children[index].encodedLength();
+		children[index].setParent(null);
+
+		if (moved > 0) {
+			System.arraycopy(children, index + 1, children, index, moved);
+		}
+
+		children[--count] = null;
 	}
 
 	@Override
 	protected void insertImpl(int index, Node node) {
-		children.insertElementAt(node, index);
+		if (index < 0 || index > count) {
+			index = count;
+		}
+
+		if (count == children.length) {
+			final int capacity = Math.max(4, count + (count >> 1));
+			children = Arrays.copyOf(children, capacity);
+		}
+
+		if (index < count) {
+			System.arraycopy(children, index, children, index + 1, count
+					- index);
+		}
+
+		children[index] = node;
+		count += 1;
+		payloadLength += node.encodedLength();
+	}
+
+	/**
+	 * Exchanges the child node at the specified index. The previous child is
+	 * detached from this container and the accumulated length is adjusted,
+	 * but the dirty state of this container is not updated.
+	 * 
+	 * @param index
+	 *            The index of the child to exchange.
+	 * @param node
+	 *            The new child node.
+	 * @return The previous child node.
+	 */
+	Node replaceImpl(int index, Node node) {
+		final Node previous = children[index];
+
+		payloadLength += node.encodedLength() - previous.encodedLength();
+		previous.setParent(null);
+		children[index] = node;
+		return previous;
+	}
+
+	/**
+	 * Gets the index of the specified child node, by comparing references.
+	 * 
+	 * @param node
+	 *            The child node to look for.
+	 * @return The index of the child node or -1, if {@link node} is not a
+	 *         child of this container.
+	 */
+	int indexOf(Node node) {
+		for (int index = 0; index < count; index++) {
+			if (children[index] == node) {
+				return index;
+			}
+		}
+
+		return -1;
 	}
 
 	@Override
 	protected Iterator<Node> iteratorImpl() {
-		return children.iterator();
+		return new ChildIterator();
 	}
 
 	@Override
 	protected void updateImpl() {
-		final int innerTagLength = Encoding.encodedLength(typeTag()
-				.toContainer());
-		final int payloadLength = encodedPayloadLength();
+		final int innerTagLength = Encoding.encodedLength(typeTag());
 		final int innerLength = innerTagLength
 				+ Encoding.encodedLength(new Length(payloadLength))
 				+ payloadLength;
-		final int outerTagLength = Encoding.encodedLength(applicationTag()
-				.toContainer());
+		final int outerTagLength = Encoding.encodedLength(applicationTag());
 		final int outerLength = outerTagLength
 				+ Encoding.encodedLength(new Length(innerLength)) + innerLength;
 
 		this.cachedLength = outerLength;
 	}
 
+	@Override
+	void childLengthChanged(int delta) {
+		payloadLength += delta;
+		markDirty();
+	}
+
+	/**
+	 * Removes all child nodes from this container at once, without shifting
+	 * the remaining children for every removed node.
+	 */
+	@Override
+	public void clear() {
+		if (count > 0) {
+			for (int index = 0; index < count; index++) {
+				children[index].setParent(null);
+			}
+
+			Arrays.fill(children, 0, count, null);
+			count = 0;
+			payloadLength = 0;
+			markDirty();
+		}
+	}
+
+	/**
+	 * Gets the child node at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the child node to return.
+	 * @return The child node at the specified index.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is negative or not less than
+	 *             {@link #size()}.
+	 */
+	public Node get(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException();
+
+		return children[index];
+	}
+
 	@Override
 	public boolean isEmpty() {
-		return children.isEmpty();
+		return count == 0;
 	}
 
 	@Override
 	public int size() {
-		return children.size();
+		return count;
 	}
 }
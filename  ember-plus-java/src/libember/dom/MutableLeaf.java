@@ -0,0 +1,431 @@
+package libember.dom;
+
+import java.nio.charset.Charset;
+
+import libember.ber.Encoding;
+import libember.ber.Tag;
+import libember.ber.UniversalType;
+import libember.ber.Value;
+import libember.util.Assert;
+import libember.util.OutputStream;
+
+/**
+ * A {@link Leaf} which stores a primitive value (<i>boolean</i>,
+ * <i>long</i>, <i>double</i> or <i>String</i>) directly and allows to change
+ * it in place. Updating the value of a {@link MutableLeaf} does not allocate
+ * any objects, except the encoded representation of a string. Only the
+ * encoded length of the changed leaf is recomputed, its ancestors are marked
+ * dirty via {@link Node#markDirty()}.
+ * <p>
+ * Values of other types, like {@link libember.ber.Octets} or
+ * {@link libember.ber.Oid}, may still be assigned via {@link #setValue(Value)}
+ * and are stored as they are.
+ * </p>
+ */
+public class MutableLeaf extends Leaf {
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+	private final static Tag BOOLEAN_TAG = UniversalType
+			.universalTag(UniversalType.BOOLEAN);
+	private final static Tag INTEGER_TAG = UniversalType
+			.universalTag(UniversalType.INTEGER);
+	private final static Tag REAL_TAG = UniversalType
+			.universalTag(UniversalType.REAL);
+	private final static Tag UTF8STRING_TAG = UniversalType
+			.universalTag(UniversalType.UTF8STRING);
+
+	private UniversalType type;
+	private long longValue;
+	private double doubleValue;
+	private String stringValue;
+	private byte[] stringBytes;
+
+	/**
+	 * Caches the {@link Value} returned by {@link #value()} until the value
+	 * changes. For values which are not primitive, this is the value itself.
+	 */
+	private Value value;
+
+	/**
+	 * Initializes a new instance of the {@link MutableLeaf} class with a value
+	 * of type <i>boolean</i>.
+	 * 
+	 * @param applicationTag
+	 *            The application tag of this node.
+	 * @param value
+	 *            The initial value.
+	 * @throws NullPointerException
+	 *             Thrown if {@link applicationTag} is <i>null</i>.
+	 */
+	public MutableLeaf(Tag applicationTag, boolean value)
+			throws NullPointerException {
+		super(applicationTag);
+
+		this.type = UniversalType.BOOLEAN;
+		this.longValue = value ? 1 : 0;
+	}
+
+	/**
+	 * Initializes a new instance of the {@link MutableLeaf} class with a value
+	 * of type <i>double</i>.
+	 * 
+	 * @param applicationTag
+	 *            The application tag of this node.
+	 * @param value
+	 *            The initial value.
+	 * @throws NullPointerException
+	 *             Thrown if {@link applicationTag} is <i>null</i>.
+	 */
+	public MutableLeaf(Tag applicationTag, double value)
+			throws NullPointerException {
+		super(applicationTag);
+
+		this.type = UniversalType.REAL;
+		this.doubleValue = value;
+	}
+
+	/**
+	 * Initializes a new instance of the {@link MutableLeaf} class with a value
+	 * of type <i>long</i>.
+	 * 
+	 * @param applicationTag
+	 *            The application tag of this node.
+	 * @param value
+	 *            The initial value.
+	 * @throws NullPointerException
+	 *             Thrown if {@link applicationTag} is <i>null</i>.
+	 */
+	public MutableLeaf(Tag applicationTag, long value)
+			throws NullPointerException {
+		super(applicationTag);
+
+		this.type = UniversalType.INTEGER;
+		this.longValue = value;
+	}
+
+	/**
+	 * Initializes a new instance of the {@link MutableLeaf} class with a value
+	 * of type <i>String</i>.
+	 * 
+	 * @param applicationTag
+	 *            The application tag of this node.
+	 * @param value
+	 *            The initial value.
+	 * @throws NullPointerException
+	 *             Thrown if either {@link applicationTag} or {@link value} is
+	 *             <i>null</i>.
+	 */
+	public MutableLeaf(Tag applicationTag, String value)
+			throws NullPointerException {
+		super(applicationTag);
+
+		Assert.AssertNotNull(value, "value");
+
+		this.type = UniversalType.UTF8STRING;
+		this.stringValue = value;
+		this.stringBytes = value.getBytes(UTF8);
+	}
+
+	/**
+	 * Initializes a new instance of the {@link MutableLeaf} class with a type
+	 * erased {@link Value}.
+	 * 
+	 * @param applicationTag
+	 *            The application tag of this node.
+	 * @param value
+	 *            The initial value.
+	 * @throws NullPointerException
+	 *             Thrown if either {@link applicationTag} or {@link value} is
+	 *             <i>null</i>.
+	 */
+	public MutableLeaf(Tag applicationTag, Value value)
+			throws NullPointerException {
+		super(applicationTag);
+
+		Assert.AssertNotNull(value, "value");
+
+		assign(value);
+	}
+
+	/**
+	 * Stores the passed {@link Value}, converting it into the primitive
+	 * representation if possible.
+	 * 
+	 * @param value
+	 *            The value to store.
+	 */
+	private void assign(Value value) {
+		final UniversalType type = value.type();
+
+		this.type = type;
+		this.value = null;
+		this.stringValue = null;
+		this.stringBytes = null;
+
+		switch (type) {
+		case BOOLEAN:
+			this.longValue = value.toBoolean() ? 1 : 0;
+			break;
+		case INTEGER:
+			this.longValue = value.toLong();
+			break;
+		case REAL:
+			this.doubleValue = value.toDouble();
+			break;
+		case UTF8STRING:
+			this.stringValue = value.toUTF8String();
+			this.stringBytes = stringValue.getBytes(UTF8);
+			break;
+		default:
+			this.value = value;
+			break;
+		}
+	}
+
+	@Override
+	protected int encodedPayloadLength() {
+		switch (type) {
+		case BOOLEAN:
+			return Encoding.encodedLength(longValue != 0);
+		case INTEGER:
+			return Encoding.encodedLength(longValue);
+		case REAL:
+			return Encoding.encodedLength(doubleValue);
+		case UTF8STRING:
+			return stringBytes.length;
+		default:
+			return value.encodedLength();
+		}
+	}
+
+	@Override
+	protected void encodePayload(OutputStream output) {
+		switch (type) {
+		case BOOLEAN:
+			Encoding.encode(output, longValue != 0);
+			break;
+		case INTEGER:
+			Encoding.encode(output, longValue);
+			break;
+		case REAL:
+			Encoding.encode(output, doubleValue);
+			break;
+		case UTF8STRING:
+			for (int i = 0; i < stringBytes.length; i++) {
+				output.append(stringBytes[i] & 0xFF);
+			}
+			break;
+		default:
+			value.encode(output);
+			break;
+		}
+	}
+
+	@Override
+	protected long fingerprintImpl() {
+		final long hash = Fingerprint.mix(Fingerprint.start(this), type.value());
+
+		switch (type) {
+		case BOOLEAN:
+		case INTEGER:
+			return Fingerprint.mix(hash, longValue);
+		case REAL:
+			return Fingerprint.mix(hash, Double.doubleToLongBits(doubleValue));
+		case UTF8STRING:
+			return Fingerprint.mix(hash, stringValue);
+		default:
+			return super.fingerprintImpl();
+		}
+	}
+
+	@Override
+	protected Tag typeTagImpl() {
+		switch (type) {
+		case BOOLEAN:
+			return BOOLEAN_TAG;
+		case INTEGER:
+			return INTEGER_TAG;
+		case REAL:
+			return REAL_TAG;
+		case UTF8STRING:
+			return UTF8STRING_TAG;
+		default:
+			return value.universalTag();
+		}
+	}
+
+	/**
+	 * Gets the stored value as <i>boolean</i>.
+	 * 
+	 * @param defaultValue
+	 *            The value to return if the leaf stores a value of a different
+	 *            type.
+	 * @return The stored value or {@link defaultValue}.
+	 */
+	public boolean booleanValue(boolean defaultValue) {
+		return type == UniversalType.BOOLEAN ? longValue != 0 : defaultValue;
+	}
+
+	/**
+	 * Gets the stored value as <i>double</i>. Integer values are converted.
+	 * 
+	 * @param defaultValue
+	 *            The value to return if the leaf stores a value of a
+	 *            non-numeric type.
+	 * @return The stored value or {@link defaultValue}.
+	 */
+	public double doubleValue(double defaultValue) {
+		if (type == UniversalType.REAL) {
+			return doubleValue;
+		} else if (type == UniversalType.INTEGER) {
+			return longValue;
+		} else {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Gets the stored value as <i>long</i>.
+	 * 
+	 * @param defaultValue
+	 *            The value to return if the leaf stores a value of a different
+	 *            type.
+	 * @return The stored value or {@link defaultValue}.
+	 */
+	public long longValue(long defaultValue) {
+		return type == UniversalType.INTEGER ? longValue : defaultValue;
+	}
+
+	/**
+	 * Gets the stored value as <i>String</i>.
+	 * 
+	 * @param defaultValue
+	 *            The value to return if the leaf stores a value of a different
+	 *            type.
+	 * @return The stored value or {@link defaultValue}.
+	 */
+	public String stringValue(String defaultValue) {
+		return type == UniversalType.UTF8STRING ? stringValue : defaultValue;
+	}
+
+	/**
+	 * Stores a value of type <i>boolean</i>. The leaf is only marked dirty if
+	 * the value or its type actually changes.
+	 * 
+	 * @param value
+	 *            The new value.
+	 */
+	public void setBoolean(boolean value) {
+		final long bits = value ? 1 : 0;
+
+		if (type != UniversalType.BOOLEAN || longValue != bits) {
+			release(UniversalType.BOOLEAN);
+			longValue = bits;
+			markDirty();
+		}
+	}
+
+	/**
+	 * Stores a value of type <i>double</i>. The leaf is only marked dirty if
+	 * the value or its type actually changes.
+	 * 
+	 * @param value
+	 *            The new value.
+	 */
+	public void setDouble(double value) {
+		if (type != UniversalType.REAL
+				|| Double.doubleToLongBits(doubleValue) != Double
+						.doubleToLongBits(value)) {
+			release(UniversalType.REAL);
+			doubleValue = value;
+			markDirty();
+		}
+	}
+
+	/**
+	 * Stores a value of type <i>long</i>. The leaf is only marked dirty if the
+	 * value or its type actually changes.
+	 * 
+	 * @param value
+	 *            The new value.
+	 */
+	public void setLong(long value) {
+		if (type != UniversalType.INTEGER || longValue != value) {
+			release(UniversalType.INTEGER);
+			longValue = value;
+			markDirty();
+		}
+	}
+
+	/**
+	 * Stores a value of type <i>String</i>. The leaf is only marked dirty if
+	 * the value or its type actually changes.
+	 * 
+	 * @param value
+	 *            The new value.
+	 * @throws NullPointerException
+	 *             Thrown if {@link value} is <i>null</i>.
+	 */
+	public void setString(String value) throws NullPointerException {
+		Assert.AssertNotNull(value, "value");
+
+		if (type != UniversalType.UTF8STRING || value.equals(stringValue) == false) {
+			release(UniversalType.UTF8STRING);
+			stringValue = value;
+			stringBytes = value.getBytes(UTF8);
+			markDirty();
+		}
+	}
+
+	@Override
+	public void setValue(Value value) throws NullPointerException {
+		Assert.AssertNotNull(value, "value");
+
+		assign(value);
+		markDirty();
+	}
+
+	/**
+	 * Gets the stored value as type erased {@link Value}. The returned instance
+	 * is cached until the value changes.
+	 * 
+	 * @return The {@link Value} this instance stores.
+	 */
+	@Override
+	public Value value() {
+		if (value == null) {
+			switch (type) {
+			case BOOLEAN:
+				value = new Value(longValue != 0);
+				break;
+			case INTEGER:
+				value = new Value(longValue);
+				break;
+			case REAL:
+				value = new Value(doubleValue);
+				break;
+			default:
+				value = new Value(stringValue);
+				break;
+			}
+		}
+
+		return value;
+	}
+
+	/**
+	 * Changes the type of the stored value and drops all cached
+	 * representations of the previous value.
+	 * 
+	 * @param type
+	 *            The new value type.
+	 */
+	private void release(UniversalType type) {
+		this.type = type;
+		this.value = null;
+
+		if (type != UniversalType.UTF8STRING) {
+			this.stringValue = null;
+			this.stringBytes = null;
+		}
+	}
+}
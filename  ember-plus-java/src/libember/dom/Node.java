@@ -2,6 +2,7 @@ package libember.dom;
 
 import libember.ber.Tag;
 import libember.util.Assert;
+import libember.util.ByteStream;
 import libember.util.OutputStream;
 
 /**
@@ -11,6 +12,8 @@ public abstract class Node {
 	private final Tag appTag;
 	private Node parent;
 	private boolean dirty = true;
+	private boolean fingerprintValid;
+	private long fingerprint;
 
 	/**
 	 * Initializes a new instance of the {@link Node} class.
@@ -40,6 +43,18 @@ public abstract class Node {
 		}
 	}
 
+	/**
+	 * Discards the cached fingerprint of this node and of its ancestors. The
+	 * walk stops at the first node whose fingerprint is not cached, since the
+	 * fingerprint of a node is only cached while those of all its descendants
+	 * are.
+	 */
+	private void invalidateFingerprint() {
+		for (Node node = this; node != null && node.fingerprintValid; node = node.parent) {
+			node.fingerprintValid = false;
+		}
+	}
+
 	/**
 	 * Gets the encoded length of this node, which also includes the accumulated
 	 * length of all eventually existing children.
@@ -48,6 +63,22 @@ public abstract class Node {
 	 */
 	protected abstract int encodedLengthImpl();
 
+	/**
+	 * Computes the fingerprint of this node. The default implementation hashes
+	 * the tags and the encoded bytes of this node. {@link Leaf} and
+	 * {@link Container} override this method to hash the value or the
+	 * fingerprints of the children instead.
+	 * 
+	 * @return The fingerprint of this node.
+	 */
+	protected long fingerprintImpl() {
+		final ByteStream stream = new ByteStream(encodedLength());
+
+		encode(stream);
+		return Fingerprint.mix(Fingerprint.start(this), stream.buffer(),
+				stream.size());
+	}
+
 	/**
 	 * Encodes the data of this node and writes to the provided
 	 * {@link OutputStream}.
@@ -69,14 +100,51 @@ public abstract class Node {
 	}
 
 	/**
-	 * Marks this node and all of its parents dirty. This method is invoked when
-	 * a child node is inserted to a {@link Container}.
+	 * Invoked when the encoded length of a child node changed. The default
+	 * implementation simply marks this node dirty, so its length is recomputed
+	 * from scratch. Containers which maintain the accumulated length of their
+	 * children apply the difference instead.
+	 * 
+	 * @param delta
+	 *            The difference between the new and the previous encoded length
+	 *            of the child.
+	 */
+	void childLengthChanged(int delta) {
+		markDirty();
+	}
+
+	/**
+	 * Marks this node dirty and propagates the change to its parents. This
+	 * method is invoked when a child node is inserted to a {@link Container}
+	 * or when the value of a node changes.
+	 * <p>
+	 * A node which is owned by a container recomputes its encoded length
+	 * immediately and passes only the resulting difference on to its parent,
+	 * so the siblings of the changed node are never revisited. The propagation
+	 * stops as soon as the encoded length of an ancestor does not change. A
+	 * node without a parent is only flagged and updated lazily.
+	 * </p>
+	 * <p>
+	 * The cached fingerprints of this node and its ancestors are discarded in
+	 * any case, since a change may leave the encoded length unchanged.
+	 * </p>
 	 */
 	protected void markDirty() {
-		dirty = true;
+		invalidateFingerprint();
+
+		if (parent == null) {
+			dirty = true;
+		} else {
+			final int previousLength = encodedLengthImpl();
+
+			updateImpl();
+			dirty = false;
+
+			final int delta = encodedLengthImpl() - previousLength;
 
-		if (parent != null) {
-			parent.markDirty();
+			if (delta != 0) {
+				parent.childLengthChanged(delta);
+			}
 		}
 	}
 
@@ -141,6 +209,31 @@ public abstract class Node {
 		return encodedLengthImpl();
 	}
 
+	/**
+	 * Gets a 64-bit fingerprint of this node and all its descendants, computed
+	 * from their tags, their types and their values. Nodes with equal content
+	 * have equal fingerprints, nodes with different content have different
+	 * fingerprints with a very high probability. This allows to test whether a
+	 * subtree changed, to detect identical subtrees or to key caches by
+	 * content without encoding the nodes.
+	 * <p>
+	 * The fingerprint is computed on demand and cached. Modifying a node
+	 * discards the cached fingerprints of the node and its ancestors only, so
+	 * after a change only the path to the changed node is hashed again. The
+	 * members of a {@link Set} are hashed regardless of their order.
+	 * </p>
+	 * 
+	 * @return The fingerprint of this node.
+	 */
+	public long fingerprint() {
+		if (fingerprintValid == false) {
+			fingerprint = fingerprintImpl();
+			fingerprintValid = true;
+		}
+
+		return fingerprint;
+	}
+
 	/**
 	 * Gets the parent of this node. This value might be <i>null</i>.
 	 * 
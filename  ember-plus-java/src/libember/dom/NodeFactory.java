@@ -1,7 +1,11 @@
 package libember.dom;
 
+import java.util.Iterator;
+
 import libember.ber.Tag;
 import libember.ber.Type;
+import libember.ber.UniversalType;
+import libember.util.Assert;
 
 /**
  * A default implementation of the {@link NodeFactory} class, which is only able
@@ -60,6 +64,61 @@ public abstract class NodeFactory {
 		return new Set(tag);
 	}
 
+	/**
+	 * Creates a deep copy of the passed {@link Node}. Leaves share the
+	 * immutable {@link libember.ber.Value} of the original, containers are
+	 * created with {@link #createSet(Tag)}, {@link #createSequence(Tag)} or
+	 * {@link #createApplicationDefinedNode(Type, Tag)} depending on their type
+	 * tag. The copy does not have a parent, so it may be inserted into another
+	 * tree.
+	 * 
+	 * @param node
+	 *            The node to copy.
+	 * @return The copy of {@link node} or <i>null</i>, if the node or one of
+	 *         its descendants is of a type this factory cannot create.
+	 * @throws NullPointerException
+	 *             Thrown if {@link node} is <i>null</i>.
+	 */
+	public Node copy(Node node) throws NullPointerException {
+		Assert.AssertNotNull(node, "node");
+
+		if (node instanceof Leaf) {
+			return new Leaf(node.applicationTag(), ((Leaf) node).value());
+		} else if (node instanceof Container) {
+			final Type type = Type.fromTag(node.typeTag());
+			final Node result;
+
+			if (type.isApplicationDefined()) {
+				result = createApplicationDefinedNode(type, node.applicationTag());
+			} else if (type.value() == UniversalType.SET.value()) {
+				result = createSet(node.applicationTag());
+			} else if (type.value() == UniversalType.SEQUENCE.value()) {
+				result = createSequence(node.applicationTag());
+			} else {
+				result = null;
+			}
+
+			if (result instanceof Container) {
+				final Container container = (Container) result;
+
+				for (Iterator<Node> it = ((Container) node).iterator(); it
+						.hasNext(); /* Nothing */) {
+					final Node child = copy(it.next());
+
+					if (child == null) {
+						return null;
+					}
+
+					container.insert(child);
+				}
+
+				return container;
+			}
+		}
+
+		return null;
+	}
+
 	/**
 	 * This method is called by the {@link AsyncDomReader} class in order to
 	 * create an application defined node which is not part in the default BER
@@ -1,18 +1,46 @@
 package libember.dom;
 
+import java.util.Arrays;
+import java.util.Iterator;
+
+import libember.ber.Class;
 import libember.ber.Tag;
 import libember.ber.UniversalType;
+import libember.util.Assert;
 
 /**
  * This class implements the ber set. A {@link Set} contains elements in any
  * order and of arbitrary types, but each element must have an application tag
  * that is unique within the {@link Set}. Speaking in terms of C++, the
  * {@link Set} can be compared to a <code>struct</code>.
+ * <p>
+ * Since the members of a set are usually identified by context-specific tags
+ * with small numbers, the set maintains a slot table indexed by the tag number
+ * which allows to look up such members in constant time and without
+ * allocating a {@link Tag}.
+ * </p>
  */
 public class Set extends ListContainer {
 	private final static Tag SET_TAG = UniversalType
 			.universalTag(UniversalType.SET);
 
+	/**
+	 * The number of slots available for context-specific tags. Members with a
+	 * greater tag number or a different tag class are located by a linear
+	 * search.
+	 */
+	private final static int SLOT_COUNT = 64;
+
+	/**
+	 * Mask used to extract the class bits from a tag preamble.
+	 */
+	private final static int CLASS_MASK = 0xC0;
+
+	private final static Node[] NO_SLOTS = new Node[0];
+
+	private Node[] slots = NO_SLOTS;
+	private long slotMask;
+
 	/**
 	 * Initializes a new instance of the {@link Set} class.
 	 * 
@@ -25,8 +53,207 @@ public class Set extends ListContainer {
 		super(appTag);
 	}
 
+	/**
+	 * Gets the slot number of the specified tag.
+	 * 
+	 * @param tag
+	 *            The tag to get the slot number for.
+	 * @return The slot number or -1, if the tag cannot be stored in a slot.
+	 */
+	private static int slotOf(Tag tag) {
+		final int number = tag.number();
+
+		if ((tag.preamble() & CLASS_MASK) == Class.CONTEXT.value()
+				&& number >= 0 && number < SLOT_COUNT) {
+			return number;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Searches the first member with the specified tag by traversing all
+	 * children.
+	 * 
+	 * @param tag
+	 *            The tag to look for.
+	 * @return The first member using the tag or <i>null</i>.
+	 */
+	private Node scan(Tag tag) {
+		final int size = size();
+
+		for (int index = 0; index < size; index++) {
+			final Node node = get(index);
+
+			if (node.applicationTag().equals(tag)) {
+				return node;
+			}
+		}
+
+		return null;
+	}
+
+	@Override
+	protected void eraseImpl(int index) {
+		final Node node = get(index);
+
+		super.eraseImpl(index);
+
+		final int slot = slotOf(node.applicationTag());
+
+		if (slot >= 0 && slot < slots.length && slots[slot] == node) {
+			slots[slot] = scan(node.applicationTag());
+
+			if (slots[slot] == null) {
+				slotMask &= ~(1L << slot);
+			}
+		}
+	}
+
+	/**
+	 * Computes the fingerprint of this set. Since the members of a set are
+	 * not ordered, the fingerprints of the members are summed up.
+	 * 
+	 * @return The fingerprint of this set.
+	 */
+	@Override
+	protected long fingerprintImpl() {
+		long sum = 0;
+
+		for (Iterator<Node> it = iterator(); it.hasNext(); /* Nothing */) {
+			sum += it.next().fingerprint();
+		}
+
+		return Fingerprint.mix(Fingerprint.start(this), sum);
+	}
+
+	@Override
+	protected void insertImpl(int index, Node node) {
+		super.insertImpl(index, node);
+
+		final int slot = slotOf(node.applicationTag());
+
+		if (slot >= 0) {
+			if (slot >= slots.length) {
+				slots = Arrays.copyOf(slots,
+						Math.min(SLOT_COUNT, Math.max(slot + 1, 16)));
+			}
+
+			if (slots[slot] == null) {
+				slots[slot] = node;
+			} else {
+				slots[slot] = scan(node.applicationTag());
+			}
+
+			slotMask |= 1L << slot;
+		}
+	}
+
 	@Override
 	protected Tag typeTagImpl() {
 		return SET_TAG;
 	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(slots, null);
+		slotMask = 0;
+		super.clear();
+	}
+
+	/**
+	 * Searches for the member using the specified application tag. If the set
+	 * erroneously contains multiple members with the same tag, the first one
+	 * is returned.
+	 * 
+	 * @param tag
+	 *            The application tag to look for.
+	 * @return The member using the specified tag or <i>null</i>, if no such
+	 *         member exists.
+	 * @throws NullPointerException
+	 *             Thrown if {@link tag} is <i>null</i>.
+	 */
+	public Node find(Tag tag) throws NullPointerException {
+		final int slot = slotOf(tag);
+
+		if (slot >= 0) {
+			return slot < slots.length ? slots[slot] : null;
+		}
+
+		return scan(tag);
+	}
+
+	/**
+	 * Inserts a member into this set. If the set already contains a member with
+	 * the same application tag, the new member takes its place and the former
+	 * member is detached and returned. Invoking this method marks this
+	 * instance dirty.
+	 * 
+	 * @param node
+	 *            The member to insert.
+	 * @return The member which has been replaced or <i>null</i>, if the set
+	 *         did not contain a member with the same tag.
+	 * @throws NullPointerException
+	 *             Thrown if {@link node} is <i>null</i>.
+	 * @throws UnsupportedOperationException
+	 *             Thrown if {@link node} is already the child of another
+	 *             container.
+	 */
+	public Node replace(Node node) throws NullPointerException,
+			UnsupportedOperationException {
+		Assert.AssertNotNull(node, "node");
+
+		final Node previous = find(node.applicationTag());
+
+		if (previous == null) {
+			insert(node);
+		} else if (previous != node) {
+			if (node.parent() != null)
+				throw new UnsupportedOperationException(
+						"Attempt to add a node already owned by a container");
+
+			replaceImpl(indexOf(previous), node);
+			node.setParent(this);
+
+			final int slot = slotOf(node.applicationTag());
+
+			if (slot >= 0) {
+				slots[slot] = node;
+			}
+
+			markDirty();
+		}
+
+		return previous;
+	}
+
+	/**
+	 * Gets a bit mask of the context-specific tags used by the members of this
+	 * set. Bit <i>n</i> is set if a member uses the context-specific tag with
+	 * the number <i>n</i>. Members using greater tag numbers or tags of a
+	 * different class are not reflected by the mask.
+	 * 
+	 * @return The mask of the context-specific tags 0 to 63.
+	 */
+	public long contextMask() {
+		return slotMask;
+	}
+
+	/**
+	 * Searches for the member using a context-specific application tag with
+	 * the specified number. Unlike {@link #find(Tag)}, this method does not
+	 * require a {@link Tag} instance.
+	 * 
+	 * @param number
+	 *            The number of the context-specific tag to look for.
+	 * @return The member using the specified tag or <i>null</i>, if no such
+	 *         member exists.
+	 */
+	public Node findContext(int number) {
+		if (number >= 0 && number < SLOT_COUNT) {
+			return number < slots.length ? slots[number] : null;
+		}
+
+		return scan(new Tag(Class.CONTEXT, number));
+	}
 }
@@ -2,11 +2,15 @@ package libember.glow;
 
 /**
  * Represents a formula that is used to compute a display value from a device
- * value and vice versa.
+ * value and vice versa. The terms are compiled into a {@link FormulaTerm} on
+ * first use and cached, so converting values with {@link #toConsumer(double)}
+ * and {@link #toProvider(double)} neither parses nor allocates.
  */
 public final class Formula {
 	private final String providerToConsumer;
 	private final String consumerToProvider;
+	private FormulaTerm compiledProviderToConsumer;
+	private FormulaTerm compiledConsumerToProvider;
 
 	/**
 	 * Initializes a new instance of the {@link Formula} class.
@@ -24,6 +28,48 @@ public final class Formula {
 		this.consumerToProvider = consumerToProvider;
 	}
 
+	/**
+	 * Gets the compiled term to compute the device value from a display value.
+	 * A missing term is compiled as the identity.
+	 * 
+	 * @return The compiled term.
+	 * @throws IllegalArgumentException
+	 *             Thrown if the term contains a syntax error.
+	 */
+	public FormulaTerm compiledConsumerToProvider()
+			throws IllegalArgumentException {
+		FormulaTerm compiled = compiledConsumerToProvider;
+
+		if (compiled == null) {
+			compiled = FormulaTerm.compile(consumerToProvider != null ? consumerToProvider
+					: "");
+			compiledConsumerToProvider = compiled;
+		}
+
+		return compiled;
+	}
+
+	/**
+	 * Gets the compiled term to compute the display value from a device value.
+	 * A missing term is compiled as the identity.
+	 * 
+	 * @return The compiled term.
+	 * @throws IllegalArgumentException
+	 *             Thrown if the term contains a syntax error.
+	 */
+	public FormulaTerm compiledProviderToConsumer()
+			throws IllegalArgumentException {
+		FormulaTerm compiled = compiledProviderToConsumer;
+
+		if (compiled == null) {
+			compiled = FormulaTerm.compile(providerToConsumer != null ? providerToConsumer
+					: "");
+			compiledProviderToConsumer = compiled;
+		}
+
+		return compiled;
+	}
+
 	/**
 	 * Gets the term to compute the device value from a display value.
 	 * 
@@ -41,4 +87,32 @@ public final class Formula {
 	public String providerToConsumer() {
 		return providerToConsumer;
 	}
+
+	/**
+	 * Converts a device value into a display value.
+	 * 
+	 * @param value
+	 *            The device value to convert.
+	 * @return The display value.
+	 * @throws IllegalArgumentException
+	 *             Thrown if the provider to consumer term contains a syntax
+	 *             error.
+	 */
+	public double toConsumer(double value) throws IllegalArgumentException {
+		return compiledProviderToConsumer().evaluate(value);
+	}
+
+	/**
+	 * Converts a display value into a device value.
+	 * 
+	 * @param value
+	 *            The display value to convert.
+	 * @return The device value.
+	 * @throws IllegalArgumentException
+	 *             Thrown if the consumer to provider term contains a syntax
+	 *             error.
+	 */
+	public double toProvider(double value) throws IllegalArgumentException {
+		return compiledConsumerToProvider().evaluate(value);
+	}
 }
@@ -0,0 +1,493 @@
+package libember.glow;
+
+import libember.util.Assert;
+
+/**
+ * A compiled formula term, as used by the {@link Formula} of a parameter. The
+ * term is parsed once into an expression tree, which is then evaluated for
+ * each value without parsing or allocating objects. Sub-expressions which do
+ * not depend on the value are folded into constants during compilation.
+ * <p>
+ * A term may contain the placeholder <code>$</code> for the value to convert,
+ * decimal numbers, the constants <code>e</code> and <code>pi</code>, the
+ * binary operators <code>+ - * / % ^</code>, unary signs, parentheses and the
+ * functions <code>abs acos asin atan ceil cos exp floor ln log round sin sqrt
+ * tan</code>. The <code>^</code> operator is right associative and binds
+ * stronger than a unary sign, <code>log</code> is the common logarithm and
+ * <code>ln</code> the natural logarithm. <code>round</code> rounds halves
+ * away from zero, so <code>round(-2.5)</code> is <code>-3</code>. An empty
+ * term returns the value unchanged.
+ * </p>
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ * </p>
+ */
+public final class FormulaTerm {
+	private final static int CONSTANT = 0;
+	private final static int VALUE = 1;
+	private final static int NEGATE = 2;
+	private final static int ADD = 3;
+	private final static int SUBTRACT = 4;
+	private final static int MULTIPLY = 5;
+	private final static int DIVIDE = 6;
+	private final static int MODULO = 7;
+	private final static int POWER = 8;
+	private final static int ABS = 9;
+	private final static int ACOS = 10;
+	private final static int ASIN = 11;
+	private final static int ATAN = 12;
+	private final static int CEIL = 13;
+	private final static int COS = 14;
+	private final static int EXP = 15;
+	private final static int FLOOR = 16;
+	private final static int LN = 17;
+	private final static int LOG = 18;
+	private final static int ROUND = 19;
+	private final static int SIN = 20;
+	private final static int SQRT = 21;
+	private final static int TAN = 22;
+
+	private final static String[] FUNCTIONS = { "abs", "acos", "asin", "atan",
+			"ceil", "cos", "exp", "floor", "ln", "log", "round", "sin", "sqrt",
+			"tan" };
+
+	/**
+	 * A node of the expression tree. All node kinds share this class and are
+	 * distinguished by their operation code, which keeps the evaluation a
+	 * single monomorphic method.
+	 */
+	private final static class Expression {
+		private final int operation;
+		private final double constant;
+		private final Expression left;
+		private final Expression right;
+
+		/**
+		 * Initializes a new instance of the {@link Expression} class.
+		 * 
+		 * @param operation
+		 *            The operation code.
+		 * @param constant
+		 *            The value of a {@link FormulaTerm#CONSTANT} node.
+		 * @param left
+		 *            The only or left operand, or <i>null</i>.
+		 * @param right
+		 *            The right operand of a binary operation, or <i>null</i>.
+		 */
+		Expression(int operation, double constant, Expression left,
+				Expression right) {
+			this.operation = operation;
+			this.constant = constant;
+			this.left = left;
+			this.right = right;
+		}
+
+		/**
+		 * Rounds a number to the nearest integer, rounding halves away from
+		 * zero. Unlike <code>Math.floor(x + 0.5)</code>, this is exact for
+		 * numbers just below one half and for numbers too large to have a
+		 * fraction.
+		 * 
+		 * @param x
+		 *            The number to round.
+		 * @return The rounded number.
+		 */
+		private static double round(double x) {
+			final double magnitude = Math.abs(x);
+			final double floor = Math.floor(magnitude);
+
+			return Math.copySign(magnitude - floor >= 0.5 ? floor + 1.0
+					: floor, x);
+		}
+
+		/**
+		 * Evaluates this expression.
+		 * 
+		 * @param value
+		 *            The value to substitute for the placeholder.
+		 * @return The result of the expression.
+		 */
+		double evaluate(double value) {
+			switch (operation) {
+			case CONSTANT:
+				return constant;
+			case VALUE:
+				return value;
+			case NEGATE:
+				return -left.evaluate(value);
+			case ADD:
+				return left.evaluate(value) + right.evaluate(value);
+			case SUBTRACT:
+				return left.evaluate(value) - right.evaluate(value);
+			case MULTIPLY:
+				return left.evaluate(value) * right.evaluate(value);
+			case DIVIDE:
+				return left.evaluate(value) / right.evaluate(value);
+			case MODULO:
+				return left.evaluate(value) % right.evaluate(value);
+			case POWER:
+				return Math.pow(left.evaluate(value), right.evaluate(value));
+			case ABS:
+				return Math.abs(left.evaluate(value));
+			case ACOS:
+				return Math.acos(left.evaluate(value));
+			case ASIN:
+				return Math.asin(left.evaluate(value));
+			case ATAN:
+				return Math.atan(left.evaluate(value));
+			case CEIL:
+				return Math.ceil(left.evaluate(value));
+			case COS:
+				return Math.cos(left.evaluate(value));
+			case EXP:
+				return Math.exp(left.evaluate(value));
+			case FLOOR:
+				return Math.floor(left.evaluate(value));
+			case LN:
+				return Math.log(left.evaluate(value));
+			case LOG:
+				return Math.log10(left.evaluate(value));
+			case ROUND:
+				return round(left.evaluate(value));
+			case SIN:
+				return Math.sin(left.evaluate(value));
+			case SQRT:
+				return Math.sqrt(left.evaluate(value));
+			default:
+				return Math.tan(left.evaluate(value));
+			}
+		}
+
+		/**
+		 * Gets a value indicating whether this expression is a constant.
+		 * 
+		 * @return <i>true</i> if the expression does not depend on the value.
+		 */
+		boolean isConstant() {
+			return operation == CONSTANT;
+		}
+	}
+
+	/**
+	 * A recursive descent parser creating the expression tree of a term.
+	 */
+	private final static class Parser {
+		private final String term;
+		private int position;
+
+		/**
+		 * Initializes a new instance of the {@link Parser} class.
+		 * 
+		 * @param term
+		 *            The term to parse.
+		 */
+		Parser(String term) {
+			this.term = term;
+		}
+
+		/**
+		 * Creates an operation node, folding it into a constant if all its
+		 * operands are constant.
+		 */
+		private static Expression create(int operation, Expression left,
+				Expression right) {
+			final Expression expression = new Expression(operation, 0, left,
+					right);
+
+			if (left.isConstant() && (right == null || right.isConstant())) {
+				return new Expression(CONSTANT, expression.evaluate(0), null,
+						null);
+			}
+
+			return expression;
+		}
+
+		/**
+		 * Creates the exception reporting a syntax error at the current
+		 * position.
+		 */
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position "
+					+ position + " of the formula term \"" + term + "\"");
+		}
+
+		/**
+		 * Skips white space and returns the next character without consuming
+		 * it, or 0 at the end of the term.
+		 */
+		private char peek() {
+			while (position < term.length()
+					&& Character.isWhitespace(term.charAt(position))) {
+				position++;
+			}
+
+			return position < term.length() ? term.charAt(position) : 0;
+		}
+
+		/**
+		 * Consumes the next character if it matches the specified one.
+		 */
+		private boolean accept(char c) {
+			if (peek() == c) {
+				position++;
+				return true;
+			}
+
+			return false;
+		}
+
+		/**
+		 * Parses the complete term.
+		 */
+		Expression parse() throws IllegalArgumentException {
+			if (peek() == 0) {
+				return new Expression(VALUE, 0, null, null);
+			}
+
+			final Expression expression = sum();
+
+			if (peek() != 0)
+				throw error("Unexpected character '" + peek() + "'");
+
+			return expression;
+		}
+
+		/**
+		 * sum := product (('+' | '-') product)*
+		 */
+		private Expression sum() {
+			Expression expression = product();
+
+			while (true) {
+				if (accept('+')) {
+					expression = create(ADD, expression, product());
+				} else if (accept('-')) {
+					expression = create(SUBTRACT, expression, product());
+				} else {
+					return expression;
+				}
+			}
+		}
+
+		/**
+		 * product := unary (('*' | '/' | '%') unary)*
+		 */
+		private Expression product() {
+			Expression expression = unary();
+
+			while (true) {
+				if (accept('*')) {
+					expression = create(MULTIPLY, expression, unary());
+				} else if (accept('/')) {
+					expression = create(DIVIDE, expression, unary());
+				} else if (accept('%')) {
+					expression = create(MODULO, expression, unary());
+				} else {
+					return expression;
+				}
+			}
+		}
+
+		/**
+		 * unary := ('-' | '+') unary | power
+		 */
+		private Expression unary() {
+			if (accept('-')) {
+				return create(NEGATE, unary(), null);
+			} else if (accept('+')) {
+				return unary();
+			} else {
+				return power();
+			}
+		}
+
+		/**
+		 * power := primary ('^' unary)?
+		 */
+		private Expression power() {
+			final Expression base = primary();
+
+			if (accept('^')) {
+				return create(POWER, base, unary());
+			}
+
+			return base;
+		}
+
+		/**
+		 * primary := number | '$' | '(' sum ')' | constant | function '('
+		 * sum ')'
+		 */
+		private Expression primary() {
+			final char c = peek();
+
+			if (c == '$') {
+				position++;
+				return new Expression(VALUE, 0, null, null);
+			} else if (c == '(') {
+				position++;
+
+				final Expression expression = sum();
+
+				if (accept(')') == false)
+					throw error("Missing ')'");
+
+				return expression;
+			} else if ((c >= '0' && c <= '9') || c == '.') {
+				return number();
+			} else if (Character.isLetter(c)) {
+				return name();
+			} else if (c == 0) {
+				throw error("Unexpected end");
+			} else {
+				throw error("Unexpected character '" + c + "'");
+			}
+		}
+
+		/**
+		 * Parses a decimal number with an optional exponent.
+		 */
+		private Expression number() {
+			final int start = position;
+
+			while (position < term.length()
+					&& (Character.isDigit(term.charAt(position)) || term
+							.charAt(position) == '.')) {
+				position++;
+			}
+
+			if (position < term.length()
+					&& (term.charAt(position) == 'e' || term.charAt(position) == 'E')) {
+				int end = position + 1;
+
+				if (end < term.length()
+						&& (term.charAt(end) == '+' || term.charAt(end) == '-')) {
+					end++;
+				}
+
+				if (end < term.length() && Character.isDigit(term.charAt(end))) {
+					position = end;
+
+					while (position < term.length()
+							&& Character.isDigit(term.charAt(position))) {
+						position++;
+					}
+				}
+			}
+
+			try {
+				return new Expression(CONSTANT, Double.parseDouble(term
+						.substring(start, position)), null, null);
+			} catch (NumberFormatException e) {
+				position = start;
+				throw error("Invalid number");
+			}
+		}
+
+		/**
+		 * Parses a constant or a function call.
+		 */
+		private Expression name() {
+			final int start = position;
+
+			while (position < term.length()
+					&& Character.isLetterOrDigit(term.charAt(position))) {
+				position++;
+			}
+
+			final String name = term.substring(start, position).toLowerCase();
+
+			if (name.equals("pi")) {
+				return new Expression(CONSTANT, Math.PI, null, null);
+			} else if (name.equals("e")) {
+				return new Expression(CONSTANT, Math.E, null, null);
+			}
+
+			for (int i = 0; i < FUNCTIONS.length; i++) {
+				if (FUNCTIONS[i].equals(name)) {
+					if (accept('(') == false)
+						throw error("Missing '(' after function " + name);
+
+					final Expression argument = sum();
+
+					if (accept(')') == false)
+						throw error("Missing ')'");
+
+					return create(ABS + i, argument, null);
+				}
+			}
+
+			position = start;
+			throw error("Unknown name '" + name + "'");
+		}
+	}
+
+	private final String term;
+	private final Expression expression;
+
+	/**
+	 * Initializes a new instance of the {@link FormulaTerm} class.
+	 * 
+	 * @param term
+	 *            The source of the term.
+	 * @param expression
+	 *            The compiled expression.
+	 */
+	private FormulaTerm(String term, Expression expression) {
+		this.term = term;
+		this.expression = expression;
+	}
+
+	/**
+	 * Compiles a formula term.
+	 * 
+	 * @param term
+	 *            The term to compile.
+	 * @return The compiled term.
+	 * @throws NullPointerException
+	 *             Thrown if {@link term} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if the term contains a syntax error.
+	 */
+	public static FormulaTerm compile(String term) throws NullPointerException,
+			IllegalArgumentException {
+		Assert.AssertNotNull(term, "term");
+
+		return new FormulaTerm(term, new Parser(term).parse());
+	}
+
+	/**
+	 * Evaluates the term for the specified value.
+	 * 
+	 * @param value
+	 *            The value to substitute for the placeholder.
+	 * @return The result of the term.
+	 */
+	public double evaluate(double value) {
+		return expression.evaluate(value);
+	}
+
+	/**
+	 * Gets a value indicating whether the term returns the value unchanged,
+	 * which allows callers to skip the conversion altogether.
+	 * 
+	 * @return <i>true</i> if the term consists of the placeholder only.
+	 */
+	public boolean isIdentity() {
+		return expression.operation == VALUE;
+	}
+
+	/**
+	 * Gets the source of this term.
+	 * 
+	 * @return The source of this term.
+	 */
+	public String term() {
+		return term;
+	}
+
+	@Override
+	public String toString() {
+		return term;
+	}
+}
@@ -1,6 +1,6 @@
 package libember.glow;
 
-import java.util.Iterator;
+import java.util.HashMap;
 
 import libember.ber.Tag;
 import libember.dom.Node;
@@ -26,9 +26,23 @@ public class GlowContainer extends Sequence {
 		 */
 		SORTED,
 	}
+	/**
+	 * Containers with more children than this use a hash based tag index
+	 * instead of a linear scan, if they are not sorted.
+	 */
+	private final static int INDEX_THRESHOLD = 8;
+
 	private final Tag universalTag;
 
-	private final InsertMode insertMode;;
+	private final InsertMode insertMode;
+
+	/**
+	 * Maps an application tag to the index of the first child using it. The
+	 * index is only maintained for unsorted containers and is built lazily.
+	 * It is <i>null</i> until required or after a modification which shifted
+	 * the child indices.
+	 */
+	private HashMap<Tag, Integer> tagIndex;
 
 	/**
 	 * Initializes a new instance of the {@link GlowContainer}. The application
@@ -77,6 +91,107 @@ public class GlowContainer extends Sequence {
 		insertMode = mode;
 	}
 
+	/**
+	 * Gets the index of the first child node with the specified application
+	 * tag. Sorted containers are searched with a binary search, large unsorted
+	 * containers use a lazily built tag index and small containers are
+	 * scanned.
+	 * 
+	 * @param tag
+	 *            The application tag to look for.
+	 * @return The index of the first child using the specified tag, or -1 if
+	 *         no such child exists.
+	 */
+	private int indexOf(Tag tag) {
+		final int size = size();
+
+		if (insertMode == InsertMode.SORTED) {
+			final int index = lowerBound(tag);
+
+			if (index < size && get(index).applicationTag().equals(tag)) {
+				return index;
+			}
+		} else if (size > INDEX_THRESHOLD) {
+			if (tagIndex == null) {
+				tagIndex = new HashMap<Tag, Integer>(size * 2);
+
+				for (int index = size - 1; index >= 0; index--) {
+					tagIndex.put(get(index).applicationTag(), index);
+				}
+			}
+
+			final Integer index = tagIndex.get(tag);
+
+			if (index != null) {
+				return index;
+			}
+		} else {
+			for (int index = 0; index < size; index++) {
+				if (get(index).applicationTag().equals(tag)) {
+					return index;
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Gets the index of the first child whose application tag is not less than
+	 * the specified tag. This method must only be used with sorted containers.
+	 * 
+	 * @param tag
+	 *            The tag to search for.
+	 * @return The index of the first child whose tag compares greater or
+	 *         equal to {@link tag}.
+	 */
+	private int lowerBound(Tag tag) {
+		int first = 0;
+		int last = size();
+
+		while (first < last) {
+			final int middle = (first + last) >>> 1;
+
+			if (get(middle).applicationTag().compareTo(tag) < 0) {
+				first = middle + 1;
+			} else {
+				last = middle;
+			}
+		}
+
+		return first;
+	}
+
+	/**
+	 * Gets the index of the first child whose application tag is greater than
+	 * the specified tag. This method must only be used with sorted containers.
+	 * 
+	 * @param tag
+	 *            The tag to search for.
+	 * @return The index of the first child whose tag compares greater than
+	 *         {@link tag}.
+	 */
+	private int upperBound(Tag tag) {
+		int first = 0;
+		int last = size();
+
+		if (last == 0 || get(last - 1).applicationTag().compareTo(tag) <= 0) {
+			return last;
+		}
+
+		while (first < last) {
+			final int middle = (first + last) >>> 1;
+
+			if (get(middle).applicationTag().compareTo(tag) <= 0) {
+				first = middle + 1;
+			} else {
+				last = middle;
+			}
+		}
+
+		return first;
+	}
+
 	/**
 	 * Removes the node with the specified {@link tag}.
 	 * 
@@ -90,15 +205,11 @@ public class GlowContainer extends Sequence {
 	protected boolean erase(Tag tag) throws NullPointerException {
 		Assert.AssertNotNull(tag, "tag");
 
-		Iterator<Node> i = iterator();
-
-		for (int index = 0; i.hasNext(); index++) {
-			final Node node = i.next();
+		final int index = indexOf(tag);
 
-			if (node.applicationTag().equals(tag)) {
-				erase(index);
-				return true;
-			}
+		if (index >= 0) {
+			erase(index);
+			return true;
 		}
 
 		return false;
@@ -106,7 +217,8 @@ public class GlowContainer extends Sequence {
 
 	/**
 	 * Searches for the child node by comparing its application tag with the one
-	 * provided.
+	 * provided. If multiple children use the same tag, the first one is
+	 * returned.
 	 * 
 	 * @param tag
 	 *            The tag to look for.
@@ -118,17 +230,8 @@ public class GlowContainer extends Sequence {
 	protected Node find(Tag tag) throws NullPointerException {
 		Assert.AssertNotNull(tag, "tag");
 
-		Iterator<Node> i = iterator();
-
-		while (i.hasNext()) {
-			Node node = i.next();
-
-			if (node.applicationTag().equals(tag)) {
-				return node;
-			}
-		}
-
-		return null;
+		final int index = indexOf(tag);
+		return index >= 0 ? get(index) : null;
 	}
 
 	/**
@@ -149,29 +252,41 @@ public class GlowContainer extends Sequence {
 		return (T) this.find(tag);
 	}
 
+	@Override
+	protected void eraseImpl(int index) {
+		super.eraseImpl(index);
+		tagIndex = null;
+	}
+
 	@Override
 	protected void insertImpl(int index, Node node) {
+		final int size = size();
+
 		if (insertMode == InsertMode.SORTED) {
-			final Tag tag = node.applicationTag();
+			index = upperBound(node.applicationTag());
+		} else if (index < 0 || index > size) {
+			index = size;
+		}
 
-			index = 0;
+		super.insertImpl(index, node);
 
-			for (Iterator<Node> i = iterator(); i.hasNext(); index++) {
-				final Tag other = i.next().applicationTag();
+		if (tagIndex != null) {
+			if (index == size) {
+				final Tag tag = node.applicationTag();
 
-				if (other.compareTo(tag) > 0) {
-					super.insertImpl(index, node);
-					return;
+				if (tagIndex.containsKey(tag) == false) {
+					tagIndex.put(tag, index);
 				}
+			} else {
+				tagIndex = null;
 			}
 		}
-
-		super.insertImpl(index, node);
 	}
 
 	/**
 	 * Inserts the provided {@link Node} but removes an eventually existing node
-	 * with the same application tag first.
+	 * with the same application tag first. The new node takes the position of
+	 * the removed one, so the encoded order of the children is preserved.
 	 * 
 	 * @param node
 	 *            The node to insert.
@@ -181,12 +296,24 @@ public class GlowContainer extends Sequence {
 	protected void replace(Node node) {
 		Assert.AssertNotNull(node, "node");
 
-		erase(node.applicationTag());
-		insert(node);
+		final int index = indexOf(node.applicationTag());
+
+		if (index >= 0) {
+			erase(index);
+			insert(index, node);
+		} else {
+			insert(node);
+		}
 	}
 
 	@Override
 	protected Tag typeTagImpl() {
 		return universalTag;
 	}
+
+	@Override
+	public void clear() {
+		tagIndex = null;
+		super.clear();
+	}
 }
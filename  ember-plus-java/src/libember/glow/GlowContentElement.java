@@ -1,11 +1,11 @@
 package libember.glow;
 
-import java.util.Iterator;
-
 import libember.ber.Octets;
 import libember.ber.Oid;
 import libember.ber.Tag;
+import libember.ber.UniversalType;
 import libember.dom.Leaf;
+import libember.dom.MutableLeaf;
 import libember.dom.Node;
 import libember.dom.Set;
 import libember.util.Assert;
@@ -52,18 +52,108 @@ public class GlowContentElement extends GlowElement {
 	 *         or the node doesn't exist.
 	 */
 	protected Node getContent(Tag tag) {
-		contents();
-
-		if (contents != null) {
-			for (Iterator<Node> i = contents.iterator(); i.hasNext();) {
-				final Node node = i.next();
-				if (node.applicationTag().equals(tag)) {
-					return node;
-				}
-			}
+		final Set set = contents(false);
+		return set != null ? set.find(tag) : null;
+	}
+
+	/**
+	 * Searches for a node with a context-specific tag within the content set.
+	 * This avoids the allocation of a {@link Tag} when the property number is
+	 * known, for example from a {@link ParameterProperty}.
+	 * 
+	 * @param number
+	 *            The number of the context-specific tag to look for.
+	 * @return The node with the specified tag number or null, if the content
+	 *         set is null or the node doesn't exist.
+	 */
+	protected Node getContent(int number) {
+		final Set set = contents(false);
+		return set != null ? set.findContext(number) : null;
+	}
+
+	/**
+	 * Gets the value of a content element with a context-specific tag as
+	 * <i>boolean</i>, without boxing the value.
+	 * 
+	 * @param number
+	 *            The number of the context-specific tag to look for.
+	 * @param defaultValue
+	 *            The value to return if the element does not exist or is of a
+	 *            different type.
+	 * @return The value of the element or {@link defaultValue}.
+	 */
+	protected boolean getContentBoolean(int number, boolean defaultValue) {
+		final Node node = getContent(number);
+
+		if (node instanceof MutableLeaf) {
+			return ((MutableLeaf) node).booleanValue(defaultValue);
+		} else if (node instanceof Leaf) {
+			return ((Leaf) node).value().toBoolean(defaultValue);
+		} else {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Gets the value of a content element with a context-specific tag as
+	 * <i>double</i>, without boxing the value. Integer values are converted.
+	 * 
+	 * @param number
+	 *            The number of the context-specific tag to look for.
+	 * @param defaultValue
+	 *            The value to return if the element does not exist or is not
+	 *            numeric.
+	 * @return The value of the element or {@link defaultValue}.
+	 */
+	protected double getContentDouble(int number, double defaultValue) {
+		final Node node = getContent(number);
+
+		if (node instanceof MutableLeaf) {
+			return ((MutableLeaf) node).doubleValue(defaultValue);
+		} else if (node instanceof Leaf) {
+			final libember.ber.Value value = ((Leaf) node).value();
+
+			return value.type() == UniversalType.INTEGER ? value.toLong()
+					: value.toDouble(defaultValue);
+		} else {
+			return defaultValue;
 		}
+	}
 
-		return null;
+	/**
+	 * Gets the value of a content element with a context-specific tag as
+	 * <i>long</i>, without boxing the value.
+	 * 
+	 * @param number
+	 *            The number of the context-specific tag to look for.
+	 * @param defaultValue
+	 *            The value to return if the element does not exist or is of a
+	 *            different type.
+	 * @return The value of the element or {@link defaultValue}.
+	 */
+	protected long getContentLong(int number, long defaultValue) {
+		final Node node = getContent(number);
+
+		if (node instanceof MutableLeaf) {
+			return ((MutableLeaf) node).longValue(defaultValue);
+		} else if (node instanceof Leaf) {
+			return ((Leaf) node).value().toLong(defaultValue);
+		} else {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Gets a bit mask of the content elements with context-specific tags. Bit
+	 * <i>n</i> is set if the content set contains an element with the
+	 * context-specific tag number <i>n</i>.
+	 * 
+	 * @return The mask of the present content elements, or 0 if the content
+	 *         set does not exist.
+	 */
+	protected long getContentMask() {
+		final Set set = contents(false);
+		return set != null ? set.contextMask() : 0;
 	}
 
 	/**
@@ -90,44 +180,67 @@ public class GlowContentElement extends GlowElement {
 	 *             Thrown if {@link tag} is <i>null</i>.
 	 */
 	protected boolean hasContent(Tag tag) throws NullPointerException {
-		contents();
-
-		if (contents != null) {
-			for (Iterator<Node> i = contents.iterator(); i.hasNext(); /* Nothing */) {
-				final Node node = i.next();
+		Assert.AssertNotNull(tag, "tag");
 
-				if (node.applicationTag().equals(tag)) {
-					return true;
-				}
-			}
-		}
+		return getContent(tag) != null;
+	}
 
-		return false;
+	/**
+	 * Searches for a content element with a context-specific tag.
+	 * 
+	 * @param number
+	 *            The number of the context-specific tag to look for.
+	 * @return <i>true</i> if the element exists, otherwise <i>false</i>.
+	 */
+	protected boolean hasContent(int number) {
+		return getContent(number) != null;
 	}
 
 	/**
-	 * Inserts a node into the contents set.
+	 * Inserts a node into the contents set. If the set already contains a node
+	 * with the same application tag, that node is replaced.
 	 * 
 	 * @param value
 	 *            The node to insert.
 	 */
 	protected void setContent(Node value) {
-		if (contents == null) {
-			contents = new Set(contentsTag);
-			insert(contents);
-		}
+		contents(true).replace(value);
+	}
+
+	/**
+	 * Stores a value in the content {@link Set} with a specified {@link Tag}.
+	 * If a {@link Leaf} with that tag already exists, its value is updated in
+	 * place. Otherwise, a new {@link Leaf} is inserted.
+	 * 
+	 * @param tag
+	 *            The application tag of the leaf to update or insert.
+	 * @param value
+	 *            The value to store.
+	 * @throws NullPointerException
+	 *             Thrown if either {@link tag} or {@link value} is <i>null</i>.
+	 */
+	protected void setContent(Tag tag, libember.ber.Value value)
+			throws NullPointerException {
+		Assert.AssertNotNull(tag, "tag");
+		Assert.AssertNotNull(value, "value");
+
+		final Node node = getContent(tag);
 
-		contents.insert(value);
+		if (node instanceof Leaf) {
+			((Leaf) node).setValue(value);
+		} else {
+			setContent(new Leaf(tag, value));
+		}
 	}
 
 	/**
-	 * Inserts an element to the content {@link Set} with a specified
-	 * {@link Tag} and value.
+	 * Stores a value in the content {@link Set} with a specified {@link Tag},
+	 * replacing the value of an existing element with the same tag.
 	 * 
 	 * @param tag
-	 *            The application tag of the node to insert.
+	 *            The application tag of the node to update or insert.
 	 * @param value
-	 *            The value to insert.
+	 *            The value to store.
 	 * @throws NullPointerException
 	 *             Thrown if {@link tag} is <i>null</i>.
 	 */
@@ -135,17 +248,23 @@ public class GlowContentElement extends GlowElement {
 			throws NullPointerException {
 		Assert.AssertNotNull(tag, "tag");
 
-		setContent(new Leaf(tag, new libember.ber.Value(value)));
+		final Node node = getContent(tag);
+
+		if (node instanceof MutableLeaf) {
+			((MutableLeaf) node).setBoolean(value);
+		} else {
+			setContent(new MutableLeaf(tag, value));
+		}
 	}
 
 	/**
-	 * Inserts an element to the content {@link Set} with a specified
-	 * {@link Tag} and value.
+	 * Stores a value in the content {@link Set} with a specified {@link Tag},
+	 * replacing the value of an existing element with the same tag.
 	 * 
 	 * @param tag
-	 *            The application tag of the node to insert.
+	 *            The application tag of the node to update or insert.
 	 * @param value
-	 *            The value to insert.
+	 *            The value to store.
 	 * @throws NullPointerException
 	 *             Thrown if {@link tag} is <i>null</i>.
 	 */
@@ -153,85 +272,95 @@ public class GlowContentElement extends GlowElement {
 			throws NullPointerException {
 		Assert.AssertNotNull(tag, "tag");
 
-		setContent(new Leaf(tag, new libember.ber.Value(value)));
+		final Node node = getContent(tag);
+
+		if (node instanceof MutableLeaf) {
+			((MutableLeaf) node).setDouble(value);
+		} else {
+			setContent(new MutableLeaf(tag, value));
+		}
 	}
 
 	/**
-	 * Inserts an element to the content {@link Set} with a specified
-	 * {@link Tag} and value.
+	 * Stores a value in the content {@link Set} with a specified {@link Tag},
+	 * replacing the value of an existing element with the same tag.
 	 * 
 	 * @param tag
-	 *            The application tag of the node to insert.
+	 *            The application tag of the node to update or insert.
 	 * @param value
-	 *            The value to insert.
+	 *            The value to store.
 	 * @throws NullPointerException
 	 *             Thrown if {@link tag} is <i>null</i>.
 	 */
 	protected void setContent(Tag tag, float value) throws NullPointerException {
 		Assert.AssertNotNull(tag, "tag");
 
-		setContent(new Leaf(tag, new libember.ber.Value(value)));
+		setContent(tag, (double) value);
 	}
 
 	/**
-	 * Inserts an element to the content {@link Set} with a specified
-	 * {@link Tag} and value.
+	 * Stores a value in the content {@link Set} with a specified {@link Tag},
+	 * replacing the value of an existing element with the same tag.
 	 * 
 	 * @param tag
-	 *            The application tag of the node to insert.
+	 *            The application tag of the node to update or insert.
 	 * @param value
-	 *            The value to insert.
+	 *            The value to store.
 	 * @throws NullPointerException
 	 *             Thrown if {@link tag} is <i>null</i>.
 	 */
 	protected void setContent(Tag tag, int value) throws NullPointerException {
 		Assert.AssertNotNull(tag, "tag");
-		Assert.AssertNotNull(value, "value");
-
-		setContent(new Leaf(tag, new libember.ber.Value(value)));
+		setContent(tag, (long) value);
 	}
 
 	/**
-	 * Inserts an element to the content {@link Set} with a specified
-	 * {@link Tag} and value.
+	 * Stores a value in the content {@link Set} with a specified {@link Tag},
+	 * replacing the value of an existing element with the same tag.
 	 * 
 	 * @param tag
-	 *            The application tag of the node to insert.
+	 *            The application tag of the node to update or insert.
 	 * @param value
-	 *            The value to insert.
+	 *            The value to store.
 	 * @throws NullPointerException
 	 *             Thrown if {@link tag} is <i>null</i>.
 	 */
 	protected void setContent(Tag tag, long value) throws NullPointerException {
 		Assert.AssertNotNull(tag, "tag");
 
-		setContent(new Leaf(tag, new libember.ber.Value(value)));
+		final Node node = getContent(tag);
+
+		if (node instanceof MutableLeaf) {
+			((MutableLeaf) node).setLong(value);
+		} else {
+			setContent(new MutableLeaf(tag, value));
+		}
 	}
 
 	/**
-	 * Inserts an element to the content {@link Set} with a specified
-	 * {@link Tag} and value.
+	 * Stores a value in the content {@link Set} with a specified {@link Tag},
+	 * replacing the value of an existing element with the same tag.
 	 * 
 	 * @param tag
-	 *            The application tag of the node to insert.
+	 *            The application tag of the node to update or insert.
 	 * @param value
-	 *            The value to insert.
+	 *            The value to store.
 	 * @throws NullPointerException
 	 *             Thrown if {@link tag} or {@link value} is <i>null</i>.
 	 */
 	protected void setContent(Tag tag, Octets value)
 			throws NullPointerException {
-		setContent(new Leaf(tag, new libember.ber.Value(value)));
+		setContent(tag, new libember.ber.Value(value));
 	}
 
 	/**
-	 * Inserts an element to the content {@link Set} with a specified
-	 * {@link Tag} and value.
+	 * Stores a value in the content {@link Set} with a specified {@link Tag},
+	 * replacing the value of an existing element with the same tag.
 	 * 
 	 * @param tag
-	 *            The application tag of the node to insert.
+	 *            The application tag of the node to update or insert.
 	 * @param value
-	 *            The value to insert.
+	 *            The value to store.
 	 * @throws NullPointerException
 	 *             Thrown if {@link tag} or {@link value} is <i>null</i>.
 	 */
@@ -239,17 +368,17 @@ public class GlowContentElement extends GlowElement {
 		Assert.AssertNotNull(tag, "tag");
 		Assert.AssertNotNull(value, "value");
 
-		setContent(new Leaf(tag, new libember.ber.Value(value)));
+		setContent(tag, new libember.ber.Value(value));
 	}
 
 	/**
-	 * Inserts an element to the content {@link Set} with a specified
-	 * {@link Tag} and value.
+	 * Stores a value in the content {@link Set} with a specified {@link Tag},
+	 * replacing the value of an existing element with the same tag.
 	 * 
 	 * @param tag
-	 *            The application tag of the node to insert.
+	 *            The application tag of the node to update or insert.
 	 * @param value
-	 *            The value to insert.
+	 *            The value to store.
 	 * @throws NullPointerException
 	 *             Thrown if either {@link tag} or {@link value} is <i>null</i>.
 	 */
@@ -258,7 +387,13 @@ public class GlowContentElement extends GlowElement {
 		Assert.AssertNotNull(tag, "tag");
 		Assert.AssertNotNull(value, "value");
 
-		setContent(new Leaf(tag, new libember.ber.Value(value)));
+		final Node node = getContent(tag);
+
+		if (node instanceof MutableLeaf) {
+			((MutableLeaf) node).setString(value);
+		} else {
+			setContent(new MutableLeaf(tag, value));
+		}
 	}
 
 	/**
@@ -0,0 +1,418 @@
+package libember.glow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import libember.ber.Class;
+import libember.ber.Oid;
+import libember.ber.Tag;
+import libember.ber.Value;
+import libember.dom.Node;
+import libember.dom.Sequence;
+import libember.util.Assert;
+import libember.util.ByteStream;
+
+/**
+ * Implements the provider side of the {@link CommandType#GETDIRECTORY}
+ * command. The provider owns a {@link GlowTree} which represents the
+ * persistent model of the device. The model is updated by applying qualified
+ * (or nested) glow elements via {@link #apply(Node)}, exactly like a consumer
+ * applies the messages it receives.
+ * <p>
+ * A directory response for a node contains a qualified element for each child
+ * of the node; for any other element it contains the element itself. Only the
+ * properties selected by the {@link DirFieldMask} of the request are included.
+ * Matrices are answered with their targets, sources and connections when the
+ * mask is {@link DirFieldMask#ALL}, and with their connections only when the
+ * mask is {@link DirFieldMask#CONNECTIONS}.
+ * The encoded response is cached per element and mask, and is only encoded
+ * again after a property which is part of the response, or the set of
+ * children, has changed. This way, many consumers requesting the same
+ * directory, for example after reconnecting, share a single encoding.
+ * </p>
+ * <p>
+ * All public methods of this class are synchronized, so the provider may be
+ * shared by the threads serving the individual consumer connections.
+ * </p>
+ */
+public final class GlowDirectoryProvider {
+	private final static DirFieldMask[] MASKS = DirFieldMask.values();
+	private final static Tag[] TAGS = new Tag[GlowTreeEntry.MAX_PROPERTIES];
+
+	static {
+		for (int i = 0; i < TAGS.length; i++) {
+			TAGS[i] = new Tag(Class.CONTEXT, i);
+		}
+	}
+
+	private final GlowTree tree;
+	private final HashMap<GlowTreeEntry, byte[][]> cache = new HashMap<GlowTreeEntry, byte[][]>();
+	private final ByteStream stream = new ByteStream();
+
+	/**
+	 * Initializes a new instance of the {@link GlowDirectoryProvider} class
+	 * with an empty model.
+	 */
+	public GlowDirectoryProvider() {
+		this(new GlowTree());
+	}
+
+	/**
+	 * Initializes a new instance of the {@link GlowDirectoryProvider} class.
+	 * 
+	 * @param tree
+	 *            The model to answer the requests from. The tree must only be
+	 *            modified through {@link #apply(Node)} from now on.
+	 * @throws NullPointerException
+	 *             Thrown if {@link tree} is <i>null</i>.
+	 */
+	public GlowDirectoryProvider(GlowTree tree) throws NullPointerException {
+		Assert.AssertNotNull(tree, "tree");
+
+		this.tree = tree;
+		this.tree.addListener(new GlowTreeListener() {
+			public void entryAdded(GlowTreeEntry entry) {
+				cache.remove(entry);
+				cache.remove(entry.parent());
+			}
+
+			public void entryChanged(GlowTreeEntry entry, long properties) {
+				invalidate(entry, entry, properties);
+
+				if (entry.parent() != null) {
+					invalidate(entry.parent(), entry, properties);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Gets the set of properties of an element which is included in a
+	 * directory response.
+	 * 
+	 * @param mask
+	 *            The mask of the request.
+	 * @param type
+	 *            The type of the element.
+	 * @return A bit mask of property numbers, which may also contain
+	 *         {@link GlowTreeEntry#TARGETS}, {@link GlowTreeEntry#SOURCES} and
+	 *         {@link GlowTreeEntry#CONNECTIONS}.
+	 */
+	private static long selection(DirFieldMask mask, GlowType type) {
+		switch (mask) {
+		case ALL:
+			return -1L;
+		case NONE:
+			return 0;
+		case CONNECTIONS:
+			return type == GlowType.MATRIX ? GlowTreeEntry.CONNECTIONS : 0;
+		default: {
+			final int flags = mask.value();
+			long selection = 0;
+
+			if ((flags & DirFieldMask.IDENTIFIER.value()) != 0) {
+				selection |= 1L << ParameterProperty.IDENTIFIER.value();
+			}
+
+			if ((flags & DirFieldMask.DESCRIPTION.value()) != 0) {
+				selection |= 1L << ParameterProperty.DESCRIPTION.value();
+			}
+
+			if ((flags & DirFieldMask.VALUE.value()) != 0
+					&& type == GlowType.PARAMETER) {
+				selection |= 1L << ParameterProperty.VALUE.value();
+			}
+
+			return selection;
+		}
+		}
+	}
+
+	/**
+	 * Adds the targets, sources and connections of a matrix entry to a
+	 * directory response.
+	 * 
+	 * @param entry
+	 *            The matrix entry.
+	 * @param matrix
+	 *            The qualified matrix of the response.
+	 * @param selection
+	 *            The selection of the request, see
+	 *            {@link #selection(DirFieldMask, GlowType)}.
+	 */
+	private static void appendMatrix(GlowTreeEntry entry,
+			GlowMatrixBase matrix, long selection) {
+		if ((selection & GlowTreeEntry.TARGETS) != 0
+				&& entry.targets() != null) {
+			matrix.setTargets(entry.targets());
+		}
+
+		if ((selection & GlowTreeEntry.SOURCES) != 0
+				&& entry.sources() != null) {
+			matrix.setSources(entry.sources());
+		}
+
+		if ((selection & GlowTreeEntry.CONNECTIONS) != 0
+				&& entry.connections().isEmpty() == false) {
+			final Sequence connections = matrix.connections(true);
+
+			for (GlowConnection connection : entry.connections()) {
+				connections.insert(GlowTree.FACTORY.copy(connection));
+			}
+		}
+	}
+
+	/**
+	 * Creates the qualified element which represents an entry in a directory
+	 * response.
+	 * 
+	 * @param entry
+	 *            The entry to create the element for.
+	 * @param mask
+	 *            The mask of the request.
+	 * @return The qualified element.
+	 */
+	private static GlowContentElement element(GlowTreeEntry entry,
+			DirFieldMask mask) {
+		final Oid path = entry.path();
+		final GlowType type = entry.type();
+		final GlowContentElement element;
+
+		if (type == GlowType.PARAMETER) {
+			element = new GlowQualifiedParameter(path);
+		} else if (type == GlowType.MATRIX) {
+			element = new GlowQualifiedMatrix(path);
+		} else if (type == GlowType.FUNCTION) {
+			element = new GlowQualifiedFunction(path);
+		} else {
+			element = new GlowQualifiedNode(path);
+		}
+
+		final long selection = selection(mask, type);
+		long selected = entry.properties() & selection;
+
+		while (selected != 0) {
+			final int property = Long.numberOfTrailingZeros(selected);
+			final Value value = entry.value(property);
+
+			selected &= selected - 1;
+
+			if (value != null) {
+				element.setContent(TAGS[property], value);
+			} else {
+				final Node node = entry.content(property);
+
+				if (node != null) {
+					element.setContent(GlowTree.FACTORY.copy(node));
+				}
+			}
+		}
+
+		if (type == GlowType.MATRIX) {
+			appendMatrix(entry, (GlowMatrixBase) element, selection);
+		}
+
+		return element;
+	}
+
+	/**
+	 * Encodes the directory response of an entry.
+	 * 
+	 * @param entry
+	 *            The entry whose directory has been requested.
+	 * @param mask
+	 *            The mask of the request.
+	 * @return The encoded response.
+	 */
+	private byte[] encode(GlowTreeEntry entry, DirFieldMask mask) {
+		final GlowRootElementCollection root = GlowRootElementCollection
+				.create();
+		final GlowType type = entry.type();
+		final boolean node = type == null || type == GlowType.NODE;
+
+		if (node && (entry.parent() == null || entry.children().isEmpty() == false)) {
+			for (GlowTreeEntry child : entry.children()) {
+				root.insert(element(child, mask));
+			}
+		} else {
+			final GlowContentElement element = element(entry, mask);
+
+			if (node) {
+				element.children(true);
+			}
+
+			root.insert(element);
+		}
+
+		stream.clear();
+		root.encode(stream);
+		return stream.toArray();
+	}
+
+	/**
+	 * Drops all cached responses of an entry which contain a changed property.
+	 * 
+	 * @param owner
+	 *            The entry whose cached responses are checked.
+	 * @param entry
+	 *            The entry whose properties changed. This is either
+	 *            {@link owner} or one of its children.
+	 * @param properties
+	 *            The bit mask of changed properties, or 0 if only the type of
+	 *            the entry changed.
+	 */
+	private void invalidate(GlowTreeEntry owner, GlowTreeEntry entry,
+			long properties) {
+		final byte[][] responses = cache.get(owner);
+
+		if (responses != null) {
+			if (properties == 0) {
+				cache.remove(owner);
+			} else {
+				for (int i = 0; i < responses.length; i++) {
+					if ((selection(MASKS[i], entry.type()) & properties) != 0) {
+						responses[i] = null;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects the directory responses for all commands contained in the
+	 * passed collection and its descendants.
+	 * 
+	 * @param collection
+	 *            The collection to process.
+	 * @param path
+	 *            The path of the element which owns the collection.
+	 * @param responses
+	 *            The list receiving the encoded responses.
+	 */
+	private void process(GlowContainer collection, Oid path,
+			List<byte[]> responses) {
+		for (Iterator<Node> it = collection.iterator(); it.hasNext(); /* Nothing */) {
+			final Node node = it.next();
+
+			if (node instanceof GlowCommand) {
+				final GlowCommand command = (GlowCommand) node;
+
+				if (command.number() == CommandType.GETDIRECTORY) {
+					final byte[] response = getDirectory(path,
+							command.dirFieldMask());
+
+					if (response != null) {
+						responses.add(response);
+					}
+				}
+			} else if (node instanceof GlowContentElement) {
+				final Oid child = GlowTree.pathOf((GlowContentElement) node,
+						path);
+				final GlowElementCollection children = ((GlowContentElement) node)
+						.children();
+
+				if (child != null && children != null) {
+					process(children, child, responses);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merges glow elements into the model. Cached responses which are affected
+	 * by the changes are discarded.
+	 * 
+	 * @param node
+	 *            The elements to merge, usually a
+	 *            {@link GlowRootElementCollection} containing qualified
+	 *            elements.
+	 * @throws NullPointerException
+	 *             Thrown if {@link node} is <i>null</i>.
+	 * @see GlowTree#apply(Node)
+	 */
+	public synchronized void apply(Node node) throws NullPointerException {
+		tree.apply(node);
+	}
+
+	/**
+	 * Gets the encoded response to a {@link CommandType#GETDIRECTORY} command
+	 * addressing the element with the specified path. The returned array is
+	 * shared by all callers requesting the same directory and must not be
+	 * modified.
+	 * 
+	 * @param path
+	 *            The path of the requested element, {@link Oid#EMPTY} for the
+	 *            root.
+	 * @param mask
+	 *            The properties to include into the response.
+	 * @return The encoded {@link GlowRootElementCollection} or <i>null</i>,
+	 *         if the model does not contain an element with the specified
+	 *         path.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} or {@link mask} is <i>null</i>.
+	 */
+	public synchronized byte[] getDirectory(Oid path, DirFieldMask mask)
+			throws NullPointerException {
+		Assert.AssertNotNull(mask, "mask");
+
+		final GlowTreeEntry entry = tree.find(path);
+
+		if (entry == null) {
+			return null;
+		}
+
+		byte[][] responses = cache.get(entry);
+
+		if (responses == null) {
+			responses = new byte[MASKS.length][];
+			cache.put(entry, responses);
+		}
+
+		final int index = mask.ordinal();
+
+		if (responses[index] == null) {
+			responses[index] = encode(entry, mask);
+		}
+
+		return responses[index];
+	}
+
+	/**
+	 * Answers all {@link CommandType#GETDIRECTORY} commands contained in a
+	 * decoded request. Commands may either be located at the top level of the
+	 * request, addressing the root, or within the children of a nested or
+	 * qualified element.
+	 * 
+	 * @param request
+	 *            The decoded request, usually a
+	 *            {@link GlowRootElementCollection}.
+	 * @return The encoded responses, one per command addressing a known
+	 *         element.
+	 * @throws NullPointerException
+	 *             Thrown if {@link request} is <i>null</i>.
+	 */
+	public synchronized List<byte[]> process(Node request)
+			throws NullPointerException {
+		Assert.AssertNotNull(request, "request");
+
+		final List<byte[]> responses = new ArrayList<byte[]>(1);
+
+		if (request instanceof GlowContainer) {
+			process((GlowContainer) request, Oid.EMPTY, responses);
+		}
+
+		return responses;
+	}
+
+	/**
+	 * Gets the model this provider answers the requests from. The returned
+	 * tree may be inspected, but must not be modified directly.
+	 * 
+	 * @return The model of this provider.
+	 */
+	public GlowTree tree() {
+		return tree;
+	}
+}
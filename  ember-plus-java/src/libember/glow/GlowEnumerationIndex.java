@@ -0,0 +1,312 @@
+package libember.glow;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import libember.util.Assert;
+
+/**
+ * An immutable index over the entries of a parameter enumeration, either the
+ * legacy enumeration string or the enumeration map. Resolving the name of a
+ * value takes constant time and resolving the value of a name takes one hash
+ * lookup, neither of which allocates objects.
+ * <p>
+ * Use {@link GlowParameterBase#enumerationIndex()} to get the index of a
+ * parameter, which is cached until the enumeration changes.
+ * </p>
+ */
+public final class GlowEnumerationIndex {
+	private final String[] names;
+	private final int[] values;
+	private final int minimum;
+	private final int[] valueSlots;
+	private final int[] valueKeys;
+	private final int[] nameSlots;
+
+	/**
+	 * Initializes a new instance of the {@link GlowEnumerationIndex} class.
+	 * 
+	 * @param names
+	 *            The names of the entries. The array is copied.
+	 * @param values
+	 *            The values of the entries, one per name. The array is copied.
+	 * @param count
+	 *            The number of valid elements in both arrays.
+	 * @throws NullPointerException
+	 *             Thrown if either array or one of its first {@link count}
+	 *             names is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link count} exceeds one of the arrays or is
+	 *             negative.
+	 */
+	public GlowEnumerationIndex(String[] names, int[] values, int count)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(names, "names");
+		Assert.AssertNotNull(values, "values");
+
+		if (count < 0 || count > names.length || count > values.length)
+			throw new IllegalArgumentException("count");
+
+		this.names = Arrays.copyOf(names, count);
+		this.values = Arrays.copyOf(values, count);
+
+		int minimum = 0;
+		int maximum = -1;
+
+		for (int i = 0; i < count; i++) {
+			Assert.AssertNotNull(this.names[i], "names");
+
+			if (i == 0 || this.values[i] < minimum) {
+				minimum = this.values[i];
+			}
+
+			if (i == 0 || this.values[i] > maximum) {
+				maximum = this.values[i];
+			}
+		}
+
+		final int capacity = capacity(count);
+		final long range = (long) maximum - minimum + 1;
+
+		if (range <= 2L * count + 8) {
+			this.minimum = minimum;
+			this.valueSlots = new int[(int) range];
+			this.valueKeys = null;
+
+			for (int i = count - 1; i >= 0; i--) {
+				valueSlots[this.values[i] - minimum] = i + 1;
+			}
+		} else {
+			this.minimum = 0;
+			this.valueSlots = new int[capacity];
+			this.valueKeys = new int[capacity];
+
+			for (int i = 0; i < count; i++) {
+				final int value = this.values[i];
+				int slot = hash(value) & (capacity - 1);
+
+				while (valueSlots[slot] != 0 && valueKeys[slot] != value) {
+					slot = (slot + 1) & (capacity - 1);
+				}
+
+				if (valueSlots[slot] == 0) {
+					valueSlots[slot] = i + 1;
+					valueKeys[slot] = value;
+				}
+			}
+		}
+
+		this.nameSlots = new int[capacity];
+
+		for (int i = 0; i < count; i++) {
+			final String name = this.names[i];
+			int slot = hash(name.hashCode()) & (capacity - 1);
+
+			while (nameSlots[slot] != 0
+					&& this.names[nameSlots[slot] - 1].equals(name) == false) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+
+			if (nameSlots[slot] == 0) {
+				nameSlots[slot] = i + 1;
+			}
+		}
+	}
+
+	/**
+	 * Gets the size of a hash table for the specified number of entries, which
+	 * is a power of two with at least twice as many slots as entries.
+	 * 
+	 * @param count
+	 *            The number of entries.
+	 * @return The number of slots.
+	 */
+	private static int capacity(int count) {
+		return Integer.highestOneBit(Math.max(count, 1) * 2 + 1) << 1;
+	}
+
+	/**
+	 * Spreads the bits of a hash code, so that the lower bits used to address
+	 * a slot depend on all bits of the code.
+	 * 
+	 * @param code
+	 *            The hash code.
+	 * @return The spread hash code.
+	 */
+	private static int hash(int code) {
+		code *= 0x9E3779B9;
+		return code ^ (code >>> 16);
+	}
+
+	/**
+	 * Creates an index over a legacy enumeration string, whose entries are
+	 * separated by line feeds and numbered from 0.
+	 * 
+	 * @param enumeration
+	 *            The enumeration string.
+	 * @return The new index.
+	 * @throws NullPointerException
+	 *             Thrown if {@link enumeration} is <i>null</i>.
+	 */
+	public static GlowEnumerationIndex create(String enumeration)
+			throws NullPointerException {
+		Assert.AssertNotNull(enumeration, "enumeration");
+
+		final String[] names = enumeration.split("\n");
+		final int[] values = new int[names.length];
+
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i;
+		}
+
+		return new GlowEnumerationIndex(names, values, names.length);
+	}
+
+	/**
+	 * Creates an index over an enumeration map. Pairs lacking a name or a
+	 * value are skipped.
+	 * 
+	 * @param map
+	 *            The enumeration map.
+	 * @return The new index.
+	 * @throws NullPointerException
+	 *             Thrown if {@link map} is <i>null</i>.
+	 */
+	public static GlowEnumerationIndex create(GlowStringIntegerCollection map)
+			throws NullPointerException {
+		Assert.AssertNotNull(map, "map");
+
+		final String[] names = new String[map.size()];
+		final int[] values = new int[map.size()];
+		int count = 0;
+
+		for (Iterator<GlowStringIntegerPair> it = map.pairs().iterator(); it
+				.hasNext(); /* Nothing */) {
+			final GlowStringIntegerPair pair = it.next();
+			final String name = pair.name();
+			final Integer value = pair.value();
+
+			if (name != null && value != null) {
+				names[count] = name;
+				values[count] = value;
+				count++;
+			}
+		}
+
+		return new GlowEnumerationIndex(names, values, count);
+	}
+
+	/**
+	 * Gets the index of the first entry with the specified value.
+	 * 
+	 * @param value
+	 *            The value to look for.
+	 * @return The index of the entry or -1, if no entry uses the value.
+	 */
+	public int find(int value) {
+		if (valueKeys == null) {
+			final long offset = (long) value - minimum;
+
+			return offset >= 0 && offset < valueSlots.length ? valueSlots[(int) offset] - 1
+					: -1;
+		}
+
+		final int mask = valueSlots.length - 1;
+
+		for (int slot = hash(value) & mask; valueSlots[slot] != 0; slot = (slot + 1)
+				& mask) {
+			if (valueKeys[slot] == value) {
+				return valueSlots[slot] - 1;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Gets the index of the first entry with the specified name.
+	 * 
+	 * @param name
+	 *            The name to look for.
+	 * @return The index of the entry or -1, if no entry uses the name.
+	 * @throws NullPointerException
+	 *             Thrown if {@link name} is <i>null</i>.
+	 */
+	public int indexOf(String name) throws NullPointerException {
+		final int mask = nameSlots.length - 1;
+
+		for (int slot = hash(name.hashCode()) & mask; nameSlots[slot] != 0; slot = (slot + 1)
+				& mask) {
+			if (names[nameSlots[slot] - 1].equals(name)) {
+				return nameSlots[slot] - 1;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Gets the name of the entry at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the entry.
+	 * @return The name of the entry.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public String name(int index) throws IndexOutOfBoundsException {
+		return names[index];
+	}
+
+	/**
+	 * Gets the name of the first entry with the specified value.
+	 * 
+	 * @param value
+	 *            The value to look up.
+	 * @return The name of the entry or <i>null</i>, if no entry uses the
+	 *         value.
+	 */
+	public String nameOf(int value) {
+		final int index = find(value);
+		return index >= 0 ? names[index] : null;
+	}
+
+	/**
+	 * Gets the number of entries.
+	 * 
+	 * @return The number of entries.
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * Gets the value of the entry at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the entry.
+	 * @return The value of the entry.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public int value(int index) throws IndexOutOfBoundsException {
+		return values[index];
+	}
+
+	/**
+	 * Gets the value of the first entry with the specified name.
+	 * 
+	 * @param name
+	 *            The name to look up.
+	 * @param defaultValue
+	 *            The value to return if no entry uses the name.
+	 * @return The value of the entry or {@link defaultValue}.
+	 * @throws NullPointerException
+	 *             Thrown if {@link name} is <i>null</i>.
+	 */
+	public int valueOf(String name, int defaultValue)
+			throws NullPointerException {
+		final int index = indexOf(name);
+		return index >= 0 ? values[index] : defaultValue;
+	}
+}
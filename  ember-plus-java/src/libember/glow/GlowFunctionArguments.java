@@ -0,0 +1,203 @@
+package libember.glow;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import libember.ber.Octets;
+import libember.ber.UniversalType;
+import libember.ber.Value;
+import libember.util.Assert;
+
+/**
+ * The arguments of a function invocation, decoded once from
+ * {@link GlowInvocation#typedArguments()} into primitive arrays. Numeric and
+ * boolean arguments are stored both as <i>long</i> and as <i>double</i>, so
+ * handlers can read them in either representation without boxing. Strings and
+ * octet strings are kept as objects.
+ */
+public final class GlowFunctionArguments {
+	private final static UniversalType[] EMPTY_TYPES = new UniversalType[0];
+
+	private UniversalType[] types = EMPTY_TYPES;
+	private long[] longs = new long[0];
+	private double[] doubles = new double[0];
+	private Object[] objects = new Object[0];
+	private int count;
+
+	/**
+	 * Initializes a new instance of the {@link GlowFunctionArguments} class.
+	 * 
+	 * @param arguments
+	 *            The argument values.
+	 * @throws NullPointerException
+	 *             Thrown if {@link arguments} is <i>null</i>.
+	 */
+	public GlowFunctionArguments(Iterable<Value> arguments)
+			throws NullPointerException {
+		Assert.AssertNotNull(arguments, "arguments");
+
+		for (Iterator<Value> it = arguments.iterator(); it.hasNext(); /* Nothing */) {
+			add(it.next());
+		}
+	}
+
+	/**
+	 * Appends an argument.
+	 * 
+	 * @param value
+	 *            The value of the argument.
+	 */
+	private void add(Value value) {
+		if (count == types.length) {
+			final int capacity = Math.max(4, count << 1);
+
+			types = Arrays.copyOf(types, capacity);
+			longs = Arrays.copyOf(longs, capacity);
+			doubles = Arrays.copyOf(doubles, capacity);
+			objects = Arrays.copyOf(objects, capacity);
+		}
+
+		final UniversalType type = value.type();
+
+		types[count] = type;
+
+		switch (type) {
+		case BOOLEAN:
+			longs[count] = value.toBoolean() ? 1 : 0;
+			doubles[count] = longs[count];
+			break;
+		case INTEGER:
+			longs[count] = value.toLong();
+			doubles[count] = longs[count];
+			break;
+		case REAL:
+			doubles[count] = value.toDouble();
+			longs[count] = (long) doubles[count];
+			break;
+		case UTF8STRING:
+			objects[count] = value.toUTF8String();
+			break;
+		case OCTETSTRING:
+			objects[count] = value.toOctets();
+			break;
+		default:
+			objects[count] = value;
+			break;
+		}
+
+		count++;
+	}
+
+	/**
+	 * Gets the argument at the specified index as boolean. Numeric arguments
+	 * are <i>true</i> if they are not zero.
+	 * 
+	 * @param index
+	 *            The index of the argument.
+	 * @return The value of the argument.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public boolean booleanValue(int index) throws IndexOutOfBoundsException {
+		check(index);
+		return doubles[index] != 0;
+	}
+
+	/**
+	 * Validates an argument index.
+	 * 
+	 * @param index
+	 *            The index to validate.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	private void check(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("index");
+	}
+
+	/**
+	 * Gets the argument at the specified index as <i>double</i>. Integer and
+	 * boolean arguments are converted, other arguments return 0.
+	 * 
+	 * @param index
+	 *            The index of the argument.
+	 * @return The value of the argument.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public double doubleValue(int index) throws IndexOutOfBoundsException {
+		check(index);
+		return doubles[index];
+	}
+
+	/**
+	 * Gets the argument at the specified index as <i>long</i>. Real arguments
+	 * are truncated, other non-numeric arguments return 0.
+	 * 
+	 * @param index
+	 *            The index of the argument.
+	 * @return The value of the argument.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public long longValue(int index) throws IndexOutOfBoundsException {
+		check(index);
+		return longs[index];
+	}
+
+	/**
+	 * Gets the octet string argument at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the argument.
+	 * @return The octets or <i>null</i>, if the argument is of a different
+	 *         type.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public Octets octetsValue(int index) throws IndexOutOfBoundsException {
+		check(index);
+		return types[index] == UniversalType.OCTETSTRING ? (Octets) objects[index]
+				: null;
+	}
+
+	/**
+	 * Gets the number of arguments.
+	 * 
+	 * @return The number of arguments.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Gets the string argument at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the argument.
+	 * @return The string or <i>null</i>, if the argument is of a different
+	 *         type.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public String stringValue(int index) throws IndexOutOfBoundsException {
+		check(index);
+		return types[index] == UniversalType.UTF8STRING ? (String) objects[index]
+				: null;
+	}
+
+	/**
+	 * Gets the type of the argument at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the argument.
+	 * @return The universal type of the argument.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public UniversalType type(int index) throws IndexOutOfBoundsException {
+		check(index);
+		return types[index];
+	}
+}
@@ -3,7 +3,6 @@ package libember.glow;
 import java.util.Iterator;
 import java.util.Vector;
 
-import libember.ber.Class;
 import libember.ber.Tag;
 import libember.ber.Value;
 import libember.dom.Node;
@@ -94,8 +93,7 @@ public class GlowFunctionBase extends GlowContentElement {
 			throws NullPointerException {
 		Assert.AssertNotNull(property, "property");
 
-		final Tag tag = new Tag(Class.CONTEXT, property.value());
-		final boolean result = hasContent(tag);
+		final boolean result = hasContent(property.value());
 
 		return result;
 	}
@@ -0,0 +1,316 @@
+package libember.glow;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import libember.ber.Oid;
+import libember.ber.Value;
+import libember.dom.Node;
+import libember.util.Assert;
+
+/**
+ * Dispatches the function invocations received by a provider to registered
+ * {@link GlowFunctionHandler} instances. The thread reading the requests,
+ * usually the I/O loop of the provider, only decodes the arguments; the
+ * handlers are executed by an {@link Executor} and their results are
+ * delivered asynchronously to a {@link GlowFunctionResultListener}.
+ * <p>
+ * The number of invocations which are queued or running is limited by the
+ * capacity passed to the constructor. When the limit is reached,
+ * {@link #process(Object, Node)} waits up to the configured time for an
+ * invocation to finish, and answers the request with an unsuccessful result
+ * if none does. A wait time of zero never blocks the caller, so slow
+ * functions cannot stall the delivery of parameter updates.
+ * </p>
+ * <p>
+ * Any executor may be used, for example a fixed thread pool. Since the
+ * dispatcher limits the number of invocations itself, an unbounded pool
+ * which starts one thread per task is acceptable as well.
+ * </p>
+ * 
+ * @param <TSession>
+ *            The type used to identify a consumer session.
+ */
+public final class GlowFunctionDispatcher<TSession> {
+	private final ConcurrentHashMap<Oid, GlowFunctionHandler> handlers = new ConcurrentHashMap<Oid, GlowFunctionHandler>();
+	private final GlowFunctionResultListener<TSession> listener;
+	private final Executor executor;
+	private final int capacity;
+	private final Semaphore permits;
+	private final long maxWait;
+
+	/**
+	 * Initializes a new instance of the {@link GlowFunctionDispatcher} class.
+	 * 
+	 * @param listener
+	 *            The listener which delivers the invocation results.
+	 * @param executor
+	 *            The executor which runs the handlers.
+	 * @param capacity
+	 *            The maximum number of invocations which may be queued or
+	 *            running at the same time.
+	 * @param maxWait
+	 *            The maximum time {@link #process(Object, Node)} waits for a
+	 *            free slot when the capacity is exhausted.
+	 * @param unit
+	 *            The unit of {@link maxWait}.
+	 * @throws NullPointerException
+	 *             Thrown if {@link listener}, {@link executor} or {@link unit}
+	 *             is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link capacity} is less than one or
+	 *             {@link maxWait} is negative.
+	 */
+	public GlowFunctionDispatcher(GlowFunctionResultListener<TSession> listener,
+			Executor executor, int capacity, long maxWait, TimeUnit unit)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(listener, "listener");
+		Assert.AssertNotNull(executor, "executor");
+		Assert.AssertNotNull(unit, "unit");
+
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity");
+
+		if (maxWait < 0)
+			throw new IllegalArgumentException("maxWait");
+
+		this.listener = listener;
+		this.executor = executor;
+		this.capacity = capacity;
+		this.permits = new Semaphore(capacity);
+		this.maxWait = unit.toNanos(maxWait);
+	}
+
+	/**
+	 * Acquires a slot for an invocation, waiting up to the configured time.
+	 * 
+	 * @return <i>true</i> if a slot has been acquired.
+	 */
+	private boolean acquire() {
+		if (permits.tryAcquire()) {
+			return true;
+		} else if (maxWait > 0) {
+			try {
+				return permits.tryAcquire(maxWait, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Dispatches a single invocation. The arguments are decoded before a slot
+	 * is acquired, so a malformed request is answered with an unsuccessful
+	 * result without occupying a slot.
+	 * 
+	 * @param session
+	 *            The session which sent the invocation.
+	 * @param path
+	 *            The path of the invoked function.
+	 * @param invocation
+	 *            The invocation request.
+	 * @return <i>true</i> if the invocation has been passed to the executor.
+	 */
+	private boolean dispatch(final TSession session, Oid path,
+			GlowInvocation invocation) {
+		final Integer id = invocation.invocationId();
+		final GlowFunctionHandler handler = handlers.get(path);
+
+		if (handler == null) {
+			reply(session, id, false, null);
+			return false;
+		}
+
+		final GlowFunctionArguments arguments;
+
+		try {
+			arguments = new GlowFunctionArguments(invocation.typedArguments());
+		} catch (RuntimeException e) {
+			reply(session, id, false, null);
+			return false;
+		}
+
+		if (acquire() == false) {
+			reply(session, id, false, null);
+			return false;
+		}
+
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						Collection<Value> values = null;
+						boolean success;
+
+						try {
+							values = handler.invoke(arguments);
+							success = true;
+						} catch (Exception e) {
+							success = false;
+						}
+
+						reply(session, id, success, values);
+					} finally {
+						permits.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			reply(session, id, false, null);
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Gets the number of invocations which are queued or running.
+	 * 
+	 * @return The number of outstanding invocations.
+	 */
+	public int pending() {
+		return capacity - permits.availablePermits();
+	}
+
+	/**
+	 * Processes the {@link CommandType#INVOKE} commands contained in a decoded
+	 * request. Invocations of functions without a registered handler, and
+	 * invocations which cannot be queued in time, are answered with an
+	 * unsuccessful result immediately.
+	 * 
+	 * @param session
+	 *            The session which sent the request.
+	 * @param request
+	 *            The decoded request, usually a
+	 *            {@link GlowRootElementCollection}.
+	 * @return The number of invocations which have been passed to the
+	 *         executor.
+	 * @throws NullPointerException
+	 *             Thrown if {@link session} or {@link request} is <i>null</i>.
+	 */
+	public int process(TSession session, Node request)
+			throws NullPointerException {
+		Assert.AssertNotNull(session, "session");
+		Assert.AssertNotNull(request, "request");
+
+		if (request instanceof GlowContainer) {
+			return process(session, (GlowContainer) request, Oid.EMPTY);
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Recursively processes the elements of a collection.
+	 * 
+	 * @param session
+	 *            The session which sent the request.
+	 * @param collection
+	 *            The collection to process.
+	 * @param path
+	 *            The path of the element owning the collection.
+	 * @return The number of invocations which have been passed to the
+	 *         executor.
+	 */
+	private int process(TSession session, GlowContainer collection, Oid path) {
+		int count = 0;
+
+		for (Iterator<Node> it = collection.iterator(); it.hasNext(); /* Nothing */) {
+			final Node node = it.next();
+
+			if (node instanceof GlowCommand) {
+				final GlowCommand command = (GlowCommand) node;
+				final GlowInvocation invocation = command.invocation();
+
+				if (command.number() == CommandType.INVOKE
+						&& invocation != null
+						&& dispatch(session, path, invocation)) {
+					count++;
+				}
+			} else if (node instanceof GlowContentElement) {
+				final Oid child = GlowTree.pathOf((GlowContentElement) node,
+						path);
+				final GlowElementCollection children = ((GlowContentElement) node)
+						.children();
+
+				if (child != null && children != null) {
+					count += process(session, children, child);
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Registers the handler of a function, replacing a previously registered
+	 * one.
+	 * 
+	 * @param path
+	 *            The path of the function.
+	 * @param handler
+	 *            The handler which implements the function.
+	 * @return The previously registered handler or <i>null</i>.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} or {@link handler} is <i>null</i>.
+	 */
+	public GlowFunctionHandler register(Oid path, GlowFunctionHandler handler)
+			throws NullPointerException {
+		Assert.AssertNotNull(path, "path");
+		Assert.AssertNotNull(handler, "handler");
+
+		return handlers.put(path, handler);
+	}
+
+	/**
+	 * Sends the result of an invocation, unless the request did not carry an
+	 * invocation identifier.
+	 * 
+	 * @param session
+	 *            The session which sent the invocation.
+	 * @param id
+	 *            The invocation identifier or <i>null</i>.
+	 * @param success
+	 *            Specifies whether the invocation succeeded.
+	 * @param values
+	 *            The result values or <i>null</i>.
+	 */
+	private void reply(TSession session, Integer id, boolean success,
+			Collection<Value> values) {
+		if (id != null) {
+			final GlowInvocationResult result = GlowInvocationResult.create();
+
+			result.setInvocationId(id);
+			result.setSuccess(success);
+
+			if (values != null && values.isEmpty() == false) {
+				result.setTypedResult(values.iterator());
+			}
+
+			listener.resultReady(session, result);
+		}
+	}
+
+	/**
+	 * Removes the handler of a function.
+	 * 
+	 * @param path
+	 *            The path of the function.
+	 * @return <i>true</i> if a handler has been removed.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} is <i>null</i>.
+	 */
+	public boolean unregister(Oid path) throws NullPointerException {
+		Assert.AssertNotNull(path, "path");
+
+		return handlers.remove(path) != null;
+	}
+}
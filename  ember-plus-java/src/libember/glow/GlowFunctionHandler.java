@@ -0,0 +1,28 @@
+package libember.glow;
+
+import java.util.Collection;
+
+import libember.ber.Value;
+
+/**
+ * Public interface which implements a function of a provider. Instances of
+ * this interface are registered with
+ * {@link GlowFunctionDispatcher#register(libember.ber.Oid, GlowFunctionHandler)}
+ * and are executed by the executor of the dispatcher.
+ */
+public interface GlowFunctionHandler {
+	/**
+	 * This method is called once per invocation of the function. It may be
+	 * called by several threads concurrently.
+	 * 
+	 * @param arguments
+	 *            The decoded arguments of the invocation.
+	 * @return The result values, in the order of the result description of
+	 *         the function, or <i>null</i> if the function has no result.
+	 * @throws Exception
+	 *             Thrown if the invocation failed. The consumer receives an
+	 *             unsuccessful {@link GlowInvocationResult}.
+	 */
+	Collection<Value> invoke(GlowFunctionArguments arguments)
+			throws Exception;
+}
@@ -0,0 +1,257 @@
+package libember.glow;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import libember.ber.Oid;
+import libember.ber.Value;
+import libember.dom.Node;
+import libember.util.Assert;
+
+/**
+ * Invokes functions of a provider and correlates the results with the calls.
+ * Each call to {@link #invoke(Oid, Iterator)} allocates a new invocation
+ * identifier, sends the request and returns a {@link CompletableFuture} which
+ * completes when the matching {@link GlowInvocationResult} is passed to
+ * {@link #process(Node)}. Any number of invocations may be outstanding at the
+ * same time, so requests can be pipelined on a single connection.
+ * <p>
+ * Outstanding invocations are kept in a concurrent map. An invocation which
+ * does not receive a result within the timeout fails with a
+ * {@link TimeoutException}, using a task scheduled on the executor passed to
+ * the constructor. The executor may be shared with other components. If it is
+ * a {@link java.util.concurrent.ScheduledThreadPoolExecutor}, enabling its
+ * remove-on-cancel policy keeps the timeout tasks of completed invocations
+ * from piling up in its queue.
+ * </p>
+ * <p>
+ * All methods may be called concurrently.
+ * </p>
+ */
+public final class GlowFunctionInvoker {
+	private final GlowInvocationSender sender;
+	private final ScheduledExecutorService timer;
+	private final long timeout;
+	private final TimeUnit unit;
+	private final AtomicInteger nextId = new AtomicInteger();
+	private final ConcurrentHashMap<Integer, CompletableFuture<GlowInvocationResult>> pending = new ConcurrentHashMap<Integer, CompletableFuture<GlowInvocationResult>>();
+
+	/**
+	 * Initializes a new instance of the {@link GlowFunctionInvoker} class.
+	 * 
+	 * @param sender
+	 *            The sender which transmits the invocation requests.
+	 * @param timer
+	 *            The executor which runs the timeouts.
+	 * @param timeout
+	 *            The time to wait for the result of an invocation.
+	 * @param unit
+	 *            The unit of {@link timeout}.
+	 * @throws NullPointerException
+	 *             Thrown if {@link sender}, {@link timer} or {@link unit} is
+	 *             <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link timeout} is not positive.
+	 */
+	public GlowFunctionInvoker(GlowInvocationSender sender,
+			ScheduledExecutorService timer, long timeout, TimeUnit unit)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(sender, "sender");
+		Assert.AssertNotNull(timer, "timer");
+		Assert.AssertNotNull(unit, "unit");
+
+		if (timeout <= 0)
+			throw new IllegalArgumentException("timeout");
+
+		this.sender = sender;
+		this.timer = timer;
+		this.timeout = timeout;
+		this.unit = unit;
+	}
+
+	/**
+	 * Completes the pending invocation a result belongs to.
+	 * 
+	 * @param result
+	 *            The received result.
+	 * @return <i>true</i> if an outstanding invocation has been completed.
+	 */
+	private boolean complete(GlowInvocationResult result) {
+		final Integer id = result.invocationId();
+
+		if (id != null) {
+			final CompletableFuture<GlowInvocationResult> future = pending
+					.remove(id);
+
+			if (future != null) {
+				return future.complete(result);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Fails all outstanding invocations, for example when the connection to
+	 * the provider has been lost.
+	 * 
+	 * @param cause
+	 *            The exception to fail the invocations with.
+	 * @return The number of invocations which have been failed.
+	 * @throws NullPointerException
+	 *             Thrown if {@link cause} is <i>null</i>.
+	 */
+	public int abort(Throwable cause) throws NullPointerException {
+		Assert.AssertNotNull(cause, "cause");
+
+		int count = 0;
+
+		for (Iterator<Map.Entry<Integer, CompletableFuture<GlowInvocationResult>>> it = pending
+				.entrySet().iterator(); it.hasNext(); /* Nothing */) {
+			final CompletableFuture<GlowInvocationResult> future = it.next()
+					.getValue();
+
+			it.remove();
+
+			if (future.completeExceptionally(cause)) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Invokes a function. The returned future completes with the result sent
+	 * by the provider, which also reports whether the invocation succeeded,
+	 * or fails with a {@link TimeoutException} if no result arrives in time.
+	 * If the executor rejects the timeout task, for example because it has
+	 * been shut down, the request is not sent and the future fails with the
+	 * {@link RejectedExecutionException}. Cancelling the future discards the result, but cannot cancel the
+	 * invocation on the provider.
+	 * 
+	 * @param path
+	 *            The path of the function to invoke.
+	 * @param arguments
+	 *            The argument values, in the order of the argument description
+	 *            of the function, or <i>null</i> if the function has no
+	 *            arguments.
+	 * @return The future result of the invocation.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} is <i>null</i>.
+	 */
+	public CompletableFuture<GlowInvocationResult> invoke(Oid path,
+			Iterator<Value> arguments) throws NullPointerException {
+		Assert.AssertNotNull(path, "path");
+
+		final CompletableFuture<GlowInvocationResult> future = new CompletableFuture<GlowInvocationResult>();
+		int id;
+
+		do {
+			id = nextId.incrementAndGet() & Integer.MAX_VALUE;
+		} while (id == 0 || pending.putIfAbsent(id, future) != null);
+
+		final Integer key = id;
+		final GlowRootElementCollection request = GlowRootElementCollection
+				.create();
+		final GlowQualifiedFunction function = new GlowQualifiedFunction(
+				request, path);
+		final GlowCommand command = new GlowCommand(CommandType.INVOKE);
+		final GlowInvocation invocation = command.invocation(true);
+
+		invocation.setInvocationId(id);
+
+		if (arguments != null) {
+			invocation.setArguments(arguments);
+		}
+
+		function.children(true).insert(command);
+
+		final ScheduledFuture<?> expiry;
+
+		try {
+			expiry = timer.schedule(new Runnable() {
+				public void run() {
+					if (pending.remove(key, future)) {
+						future.completeExceptionally(new TimeoutException(
+								"No result for invocation " + key));
+					}
+				}
+			}, timeout, unit);
+		} catch (RejectedExecutionException e) {
+			pending.remove(key, future);
+			future.completeExceptionally(e);
+			return future;
+		}
+
+		future.whenComplete(new BiConsumer<GlowInvocationResult, Throwable>() {
+			public void accept(GlowInvocationResult result, Throwable error) {
+				pending.remove(key, future);
+				expiry.cancel(false);
+			}
+		});
+
+		try {
+			sender.send(request);
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Gets the number of outstanding invocations.
+	 * 
+	 * @return The number of invocations waiting for their result.
+	 */
+	public int pending() {
+		return pending.size();
+	}
+
+	/**
+	 * Processes a message received from the provider and completes the
+	 * invocations whose results it contains. Results are usually sent as
+	 * root element; results contained in a root element collection are
+	 * processed as well. Other elements and results of unknown invocations
+	 * are ignored.
+	 * 
+	 * @param message
+	 *            The decoded message.
+	 * @return The number of invocations which have been completed.
+	 * @throws NullPointerException
+	 *             Thrown if {@link message} is <i>null</i>.
+	 */
+	public int process(Node message) throws NullPointerException {
+		Assert.AssertNotNull(message, "message");
+
+		if (message instanceof GlowInvocationResult) {
+			return complete((GlowInvocationResult) message) ? 1 : 0;
+		} else if (message instanceof GlowRootElementCollection) {
+			int count = 0;
+
+			for (Iterator<Node> it = ((GlowRootElementCollection) message)
+					.iterator(); it.hasNext(); /* Nothing */) {
+				final Node node = it.next();
+
+				if (node instanceof GlowInvocationResult
+						&& complete((GlowInvocationResult) node)) {
+					count++;
+				}
+			}
+
+			return count;
+		} else {
+			return 0;
+		}
+	}
+}
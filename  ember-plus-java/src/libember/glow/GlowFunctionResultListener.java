@@ -0,0 +1,25 @@
+package libember.glow;
+
+/**
+ * Public interface which is used to deliver the results of function
+ * invocations to the sessions which requested them. Instances of this
+ * interface are passed to the constructor of {@link GlowFunctionDispatcher}.
+ * 
+ * @param <TSession>
+ *            The type used to identify a consumer session.
+ */
+public interface GlowFunctionResultListener<TSession> {
+	/**
+	 * This method is called by {@link GlowFunctionDispatcher} once per
+	 * invocation which carries an invocation identifier. It is usually called
+	 * by a thread of the dispatcher's executor, and may be called by several
+	 * threads concurrently.
+	 * 
+	 * @param session
+	 *            The session which sent the invocation.
+	 * @param result
+	 *            The {@link GlowInvocationResult} to send, which is marked as
+	 *            root element. The result is owned by the receiver.
+	 */
+	void resultReady(TSession session, GlowInvocationResult result);
+}
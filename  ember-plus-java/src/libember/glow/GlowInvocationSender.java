@@ -0,0 +1,23 @@
+package libember.glow;
+
+/**
+ * Public interface which is used by a {@link GlowFunctionInvoker} to transmit
+ * invocation requests to the provider. An implementation usually encodes the
+ * request into an S101 frame and writes it to the connection, or hands it to
+ * a {@link GlowMessageBatcher}.
+ */
+public interface GlowInvocationSender {
+	/**
+	 * This method is called by {@link GlowFunctionInvoker} for each
+	 * invocation. It may be called by several threads concurrently. If it
+	 * throws a {@link RuntimeException}, the invocation fails with that
+	 * exception.
+	 * 
+	 * @param request
+	 *            A {@link GlowRootElementCollection} containing a
+	 *            {@link GlowQualifiedFunction} with a single
+	 *            {@link CommandType#INVOKE} command. The collection is owned by
+	 *            the receiver.
+	 */
+	void send(GlowRootElementCollection request);
+}
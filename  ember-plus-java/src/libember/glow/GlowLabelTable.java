@@ -0,0 +1,286 @@
+package libember.glow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import libember.ber.Oid;
+import libember.ber.Tag;
+import libember.dom.Node;
+import libember.dom.Sequence;
+import libember.util.Assert;
+import libember.util.ByteStream;
+import libember.util.OutputStream;
+
+/**
+ * An immutable table of the label descriptions of a matrix. Like the
+ * {@link GlowSignalTable}, the table is encoded once when it is created and
+ * attached to a matrix via {@link GlowMatrixBase#setLabels(GlowLabelTable)},
+ * which avoids rebuilding and re-encoding one {@link GlowLabel} per entry for
+ * every response.
+ */
+public final class GlowLabelTable {
+	private final Oid[] basePaths;
+	private final String[] descriptions;
+	private final byte[] payload;
+
+	/**
+	 * Initializes a new instance of the {@link GlowLabelTable} class.
+	 * 
+	 * @param basePaths
+	 *            The base paths of the labels. The array is copied.
+	 * @param descriptions
+	 *            The descriptions of the labels, one per base path. The array
+	 *            is copied.
+	 * @param count
+	 *            The number of valid elements in both arrays.
+	 * @throws NullPointerException
+	 *             Thrown if either array or one of its first {@link count}
+	 *             elements is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link count} exceeds one of the arrays or is
+	 *             negative.
+	 */
+	public GlowLabelTable(Oid[] basePaths, String[] descriptions, int count)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(basePaths, "basePaths");
+		Assert.AssertNotNull(descriptions, "descriptions");
+
+		if (count < 0 || count > basePaths.length
+				|| count > descriptions.length)
+			throw new IllegalArgumentException("count");
+
+		final ByteStream stream = new ByteStream(count * 32);
+
+		for (int i = 0; i < count; i++) {
+			new GlowLabel(basePaths[i], descriptions[i]).encode(stream);
+		}
+
+		this.basePaths = Arrays.copyOf(basePaths, count);
+		this.descriptions = Arrays.copyOf(descriptions, count);
+		this.payload = stream.toArray();
+	}
+
+	/**
+	 * Decodes a table from an encoded sequence of labels, as written by
+	 * {@link #encode(OutputStream, Tag)} or by a {@link Sequence} containing
+	 * {@link GlowLabel} objects. The sequence must use definite lengths.
+	 * Labels lacking a base path or a description are skipped.
+	 * 
+	 * @param data
+	 *            The array containing the encoded sequence, including its
+	 *            application tag.
+	 * @param offset
+	 *            The index of the first byte of the sequence.
+	 * @param length
+	 *            The number of bytes to decode.
+	 * @return The decoded table.
+	 * @throws NullPointerException
+	 *             Thrown if {@link data} is <i>null</i>.
+	 * @throws NoSuchElementException
+	 *             Thrown if the encoded data is truncated.
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the data contains an indefinite length.
+	 */
+	public static GlowLabelTable decode(byte[] data, int offset, int length)
+			throws NullPointerException, NoSuchElementException,
+			UnsupportedOperationException {
+		Assert.AssertNotNull(data, "data");
+
+		final GlowTableDecoder decoder = new GlowTableDecoder(data, offset,
+				length);
+		final int basePathTag = GlowTableDecoder
+				.identifier(GlowTags.Label.BASEPATH);
+		final int descriptionTag = GlowTableDecoder
+				.identifier(GlowTags.Label.DESCRIPTION);
+		final ArrayList<Oid> basePaths = new ArrayList<Oid>();
+		final ArrayList<String> descriptions = new ArrayList<String>();
+
+		decoder.tag();
+		decoder.end();
+		decoder.tag();
+
+		final int end = decoder.end();
+
+		while (decoder.position() < end) {
+			decoder.tag();
+
+			final int elementEnd = decoder.end();
+
+			decoder.tag();
+
+			final int innerEnd = decoder.end();
+			Oid basePath = null;
+			String description = null;
+
+			while (decoder.position() < innerEnd) {
+				final int tag = decoder.tag();
+				final int leafEnd = decoder.end();
+
+				if (tag == basePathTag) {
+					final int[] subids = decoder.oid();
+					final ArrayList<Integer> list = new ArrayList<Integer>(
+							subids.length);
+
+					for (int subid : subids) {
+						list.add(subid);
+					}
+
+					basePath = new Oid(list);
+				} else if (tag == descriptionTag) {
+					description = decoder.string();
+				}
+
+				decoder.seek(leafEnd);
+			}
+
+			if (basePath != null && description != null) {
+				basePaths.add(basePath);
+				descriptions.add(description);
+			}
+
+			decoder.seek(elementEnd);
+		}
+
+		return new GlowLabelTable(basePaths.toArray(new Oid[basePaths.size()]),
+				descriptions.toArray(new String[descriptions.size()]),
+				basePaths.size());
+	}
+
+	/**
+	 * Creates a table from the labels contained in a sequence. Labels lacking
+	 * a base path or a description are skipped.
+	 * 
+	 * @param sequence
+	 *            The sequence containing {@link GlowLabel} objects.
+	 * @return The new table.
+	 * @throws NullPointerException
+	 *             Thrown if {@link sequence} is <i>null</i>.
+	 */
+	public static GlowLabelTable read(Sequence sequence)
+			throws NullPointerException {
+		Assert.AssertNotNull(sequence, "sequence");
+
+		final Oid[] basePaths = new Oid[sequence.size()];
+		final String[] descriptions = new String[sequence.size()];
+		int count = 0;
+
+		for (Iterator<Node> it = sequence.iterator(); it.hasNext(); /* Nothing */) {
+			final Node node = it.next();
+
+			if (node instanceof GlowLabel) {
+				final GlowLabel label = (GlowLabel) node;
+				final Oid basePath = label.basePath();
+				final String description = label.description();
+
+				if (basePath != null && description != null) {
+					basePaths[count] = basePath;
+					descriptions[count] = description;
+					count++;
+				}
+			}
+		}
+
+		return new GlowLabelTable(basePaths, descriptions, count);
+	}
+
+	/**
+	 * Creates the node which represents this table within a matrix.
+	 * 
+	 * @param tag
+	 *            The application tag of the node.
+	 * @return The new node.
+	 */
+	GlowTableNode<GlowLabelTable> node(Tag tag) {
+		return new GlowTableNode<GlowLabelTable>(tag, this, payload);
+	}
+
+	/**
+	 * Gets the base path of the label at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the label.
+	 * @return The base path of the label.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public Oid basePath(int index) throws IndexOutOfBoundsException {
+		return basePaths[index];
+	}
+
+	/**
+	 * Gets the description of the label at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the label.
+	 * @return The description of the label.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public String description(int index) throws IndexOutOfBoundsException {
+		return descriptions[index];
+	}
+
+	/**
+	 * Encodes this table as a sequence of labels.
+	 * 
+	 * @param output
+	 *            The stream to write the encoded table to.
+	 * @param tag
+	 *            The application tag of the sequence.
+	 * @throws NullPointerException
+	 *             Thrown if {@link output} or {@link tag} is <i>null</i>.
+	 */
+	public void encode(OutputStream output, Tag tag)
+			throws NullPointerException {
+		node(tag).encode(output);
+	}
+
+	/**
+	 * Looks up the base path of the label with the specified description.
+	 * 
+	 * @param description
+	 *            The description of the label to look for.
+	 * @return The base path of the first label with a matching description or
+	 *         <i>null</i>, if the table contains no such label.
+	 */
+	public Oid find(String description) {
+		for (int i = 0; i < descriptions.length; i++) {
+			if (descriptions[i].equals(description)) {
+				return basePaths[i];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Gets the number of labels.
+	 * 
+	 * @return The number of labels.
+	 */
+	public int size() {
+		return basePaths.length;
+	}
+
+	/**
+	 * Creates a {@link Sequence} containing a {@link GlowLabel} for each entry
+	 * of this table.
+	 * 
+	 * @param tag
+	 *            The application tag of the sequence.
+	 * @return The new sequence.
+	 * @throws NullPointerException
+	 *             Thrown if {@link tag} is <i>null</i>.
+	 */
+	public Sequence toSequence(Tag tag) throws NullPointerException {
+		final Sequence sequence = new Sequence(tag);
+
+		for (int i = 0; i < basePaths.length; i++) {
+			sequence.insert(new GlowLabel(basePaths[i], descriptions[i]));
+		}
+
+		return sequence;
+	}
+}
@@ -3,7 +3,6 @@ package libember.glow;
 import java.util.ArrayList;
 import java.util.Iterator;
 
-import libember.ber.Class;
 import libember.ber.Oid;
 import libember.ber.Tag;
 import libember.ber.Value;
@@ -122,8 +121,7 @@ public class GlowMatrixBase extends GlowContentElement {
 	 *         returns <i>false</i>.
 	 */
 	public boolean contains(MatrixProperty property) {
-		final Tag tag = new Tag(Class.CONTEXT, property.value());
-		final boolean result = hasContent(tag);
+		final boolean result = hasContent(property.value());
 		return result;
 	}
 
@@ -217,6 +215,14 @@ public class GlowMatrixBase extends GlowContentElement {
 	 * usually consists of objects of type {@link GlowLabel}, which specify the
 	 * available label types and their location within the Ember+ tree.
 	 * 
+	 * <p>
+	 * If the labels have been assigned via {@link #setLabels(GlowLabelTable)}
+	 * and {@link create} is <i>false</i>, a detached copy of the table is
+	 * returned and the matrix is left unchanged. If {@link create} is
+	 * <i>true</i>, the table is replaced by the returned container, so that
+	 * it can be modified.
+	 * </p>
+	 * 
 	 * @param create
 	 *            Specifies whether a new container shall be created, if it
 	 *            doesn't already exist.
@@ -227,7 +233,16 @@ public class GlowMatrixBase extends GlowContentElement {
 	public Sequence labels(boolean create) {
 		final Node container = this.getContent(GlowTags.MatrixContents.LABELS);
 
-		if (container != null) {
+		if (container instanceof GlowTableNode) {
+			final Sequence labels = ((GlowLabelTable) ((GlowTableNode<?>) container)
+					.table()).toSequence(GlowTags.MatrixContents.LABELS);
+
+			if (create) {
+				this.setContent(labels);
+			}
+
+			return labels;
+		} else if (container != null) {
 			return (Sequence) container;
 		} else if (create) {
 			final Sequence labels = new Sequence(GlowTags.MatrixContents.LABELS);
@@ -239,6 +254,27 @@ public class GlowMatrixBase extends GlowContentElement {
 		}
 	}
 
+	/**
+	 * Gets the label descriptions of this matrix as a {@link GlowLabelTable}.
+	 * If the labels have been assigned via {@link #setLabels(GlowLabelTable)},
+	 * that table is returned, otherwise a new table is built from the
+	 * {@link GlowLabel} objects of the labels container.
+	 * 
+	 * @return The label table or <i>null</i>, if the matrix has no labels
+	 *         container.
+	 */
+	public GlowLabelTable labelTable() {
+		final Node container = this.getContent(GlowTags.MatrixContents.LABELS);
+
+		if (container instanceof GlowTableNode) {
+			return (GlowLabelTable) ((GlowTableNode<?>) container).table();
+		} else if (container != null) {
+			return GlowLabelTable.read((Sequence) container);
+		} else {
+			return null;
+		}
+	}
+
 	/**
 	 * Gets a value specifying the maximum number of sources a single target may
 	 * have. This property is usually only used when the type is
@@ -356,6 +392,23 @@ public class GlowMatrixBase extends GlowContentElement {
 
 		setContent(GlowTags.MatrixContents.IDENTIFIER, identifier);
 	}
+
+	/**
+	 * Assigns a compact table of label descriptions, replacing an existing
+	 * labels container. The table is encoded by copying its pre-encoded
+	 * entries. Accessing {@link #labels()} afterwards converts the table back
+	 * into a container of {@link GlowLabel} objects.
+	 * 
+	 * @param labels
+	 *            The label table to assign.
+	 * @throws NullPointerException
+	 *             Thrown if {@link labels} is <i>null</i>.
+	 */
+	public void setLabels(GlowLabelTable labels) throws NullPointerException {
+		Assert.AssertNotNull(labels, "labels");
+
+		setContent(labels.node(GlowTags.MatrixContents.LABELS));
+	}
 	
 	/**
 	 * Sets the string containing the schema identifiers of this matrix. This value must not be <i>null</i>.
@@ -431,6 +484,29 @@ public class GlowMatrixBase extends GlowContentElement {
 		setContent(GlowTags.MatrixContents.SOURCECOUNT, sourceCount);
 	}
 
+	/**
+	 * Assigns a compact table of sources, replacing an existing sources
+	 * container. The table is encoded by copying its pre-encoded entries.
+	 * Accessing {@link #sources()} afterwards converts the table back into a
+	 * container of {@link GlowSource} objects.
+	 * 
+	 * @param sources
+	 *            The source table to assign.
+	 * @throws NullPointerException
+	 *             Thrown if {@link sources} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if the table does not contain sources.
+	 */
+	public void setSources(GlowSignalTable sources) throws NullPointerException,
+			IllegalArgumentException {
+		Assert.AssertNotNull(sources, "sources");
+
+		if (sources.type() != GlowType.SOURCE)
+			throw new IllegalArgumentException("The table must contain sources");
+
+		replace(sources.node(this.sourcesTag));
+	}
+
 	/**
 	 * Sets the number of targets this matrix can have.
 	 * 
@@ -441,6 +517,29 @@ public class GlowMatrixBase extends GlowContentElement {
 		setContent(GlowTags.MatrixContents.TARGETCOUNT, targetCount);
 	}
 
+	/**
+	 * Assigns a compact table of targets, replacing an existing targets
+	 * container. The table is encoded by copying its pre-encoded entries.
+	 * Accessing {@link #targets()} afterwards converts the table back into a
+	 * container of {@link GlowTarget} objects.
+	 * 
+	 * @param targets
+	 *            The target table to assign.
+	 * @throws NullPointerException
+	 *             Thrown if {@link targets} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if the table does not contain targets.
+	 */
+	public void setTargets(GlowSignalTable targets) throws NullPointerException,
+			IllegalArgumentException {
+		Assert.AssertNotNull(targets, "targets");
+
+		if (targets.type() != GlowType.TARGET)
+			throw new IllegalArgumentException("The table must contain targets");
+
+		replace(targets.node(this.targetsTag));
+	}
+
 	/**
 	 * Sets the type of this matrix. The {@link MatrixType} defines the
 	 * switching behavior of a matrix, like 1 to 1 or 1 to N.
@@ -514,7 +613,7 @@ public class GlowMatrixBase extends GlowContentElement {
 			throws NullPointerException {
 		Assert.AssertNotNull(sources, "sources");
 
-		final Sequence container = this.sources();
+		final Sequence container = this.sources(true);
 
 		if (container != null) {
 			container.clear();
@@ -538,7 +637,7 @@ public class GlowMatrixBase extends GlowContentElement {
 			throws NullPointerException {
 		Assert.AssertNotNull(targets, "targets");
 
-		final Sequence container = this.targets();
+		final Sequence container = this.targets(true);
 
 		if (container != null) {
 			container.clear();
@@ -583,6 +682,14 @@ public class GlowMatrixBase extends GlowContentElement {
 	 * Gets a {@link Sequence} containing the sources of this matrix. Prefer
 	 * using the {@link typedSources} method instead to assure type safety.
 	 * 
+	 * <p>
+	 * If the sources have been assigned via {@link #setSources(GlowSignalTable)}
+	 * and {@link create} is <i>false</i>, a detached copy of the table is
+	 * returned and the matrix is left unchanged. If {@link create} is
+	 * <i>true</i>, the table is replaced by the returned container, so that
+	 * it can be modified.
+	 * </p>
+	 * 
 	 * @param create
 	 *            Specifies whether the container shall be created or not, if it
 	 *            doesn't already exist.
@@ -593,7 +700,16 @@ public class GlowMatrixBase extends GlowContentElement {
 	public Sequence sources(boolean create) {
 		final Node container = this.find(this.sourcesTag);
 
-		if (container != null) {
+		if (container instanceof GlowTableNode) {
+			final Sequence sources = ((GlowSignalTable) ((GlowTableNode<?>) container)
+					.table()).toSequence(this.sourcesTag);
+
+			if (create) {
+				this.replace(sources);
+			}
+
+			return sources;
+		} else if (container != null) {
 			return (Sequence) container;
 		} else if (create) {
 			final Sequence sources = new Sequence(this.sourcesTag);
@@ -604,6 +720,27 @@ public class GlowMatrixBase extends GlowContentElement {
 		}
 	}
 
+	/**
+	 * Gets the sources of this matrix as a {@link GlowSignalTable}. If the
+	 * sources have been assigned via {@link #setSources(GlowSignalTable)}, that
+	 * table is returned, otherwise a new table is built from the
+	 * {@link GlowSource} objects of the sources container.
+	 * 
+	 * @return The source table or <i>null</i>, if the matrix has no sources
+	 *         container.
+	 */
+	public GlowSignalTable sourceTable() {
+		final Node container = this.find(this.sourcesTag);
+
+		if (container instanceof GlowTableNode) {
+			return (GlowSignalTable) ((GlowTableNode<?>) container).table();
+		} else if (container != null) {
+			return GlowSignalTable.read(GlowType.SOURCE, (Sequence) container);
+		} else {
+			return null;
+		}
+	}
+
 	/**
 	 * Gets a value specifying the number of targets the matrix has.
 	 * 
@@ -637,6 +774,14 @@ public class GlowMatrixBase extends GlowContentElement {
 	 * Gets a {@link Sequence} containing the targets of this matrix. Prefer
 	 * using the {@link typedTargets} method instead to assure type safety.
 	 * 
+	 * <p>
+	 * If the targets have been assigned via {@link #setTargets(GlowSignalTable)}
+	 * and {@link create} is <i>false</i>, a detached copy of the table is
+	 * returned and the matrix is left unchanged. If {@link create} is
+	 * <i>true</i>, the table is replaced by the returned container, so that
+	 * it can be modified.
+	 * </p>
+	 * 
 	 * @param create
 	 *            Specifies whether the container shall be created or not, if it
 	 *            doesn't already exist.
@@ -647,7 +792,16 @@ public class GlowMatrixBase extends GlowContentElement {
 	public Sequence targets(boolean create) {
 		final Node container = this.find(this.targetsTag);
 
-		if (container != null) {
+		if (container instanceof GlowTableNode) {
+			final Sequence targets = ((GlowSignalTable) ((GlowTableNode<?>) container)
+					.table()).toSequence(this.targetsTag);
+
+			if (create) {
+				this.replace(targets);
+			}
+
+			return targets;
+		} else if (container != null) {
 			return (Sequence) container;
 		} else if (create) {
 			final Sequence targets = new Sequence(this.targetsTag);
@@ -658,6 +812,27 @@ public class GlowMatrixBase extends GlowContentElement {
 		}
 	}
 
+	/**
+	 * Gets the targets of this matrix as a {@link GlowSignalTable}. If the
+	 * targets have been assigned via {@link #setTargets(GlowSignalTable)}, that
+	 * table is returned, otherwise a new table is built from the
+	 * {@link GlowTarget} objects of the targets container.
+	 * 
+	 * @return The target table or <i>null</i>, if the matrix has no targets
+	 *         container.
+	 */
+	public GlowSignalTable targetTable() {
+		final Node container = this.find(this.targetsTag);
+
+		if (container instanceof GlowTableNode) {
+			return (GlowSignalTable) ((GlowTableNode<?>) container).table();
+		} else if (container != null) {
+			return GlowSignalTable.read(GlowType.TARGET, (Sequence) container);
+		} else {
+			return null;
+		}
+	}
+
 	/**
 	 * Gets the {@link MatrixType} of this matrix instance.
 	 * 
@@ -709,9 +884,18 @@ public class GlowMatrixBase extends GlowContentElement {
 	 */
 	public Iterable<GlowLabel> typedLabels() {
 		final ArrayList<GlowLabel> result = new ArrayList<GlowLabel>();
-		final Sequence labels = this.labels();
+		final Node container = this.getContent(GlowTags.MatrixContents.LABELS);
 
-		if (labels != null) {
+		if (container instanceof GlowTableNode) {
+			final GlowLabelTable table = (GlowLabelTable) ((GlowTableNode<?>) container)
+					.table();
+
+			for (int i = 0; i < table.size(); i++) {
+				result.add(new GlowLabel(table.basePath(i), table
+						.description(i)));
+			}
+		} else if (container != null) {
+			final Sequence labels = (Sequence) container;
 			final Iterator<Node> it = labels.iterator();
 
 			while (it.hasNext()) {
@@ -734,9 +918,17 @@ public class GlowMatrixBase extends GlowContentElement {
 	 */
 	public Iterable<GlowSource> typedSources() {
 		final ArrayList<GlowSource> result = new ArrayList<GlowSource>();
-		final Sequence sources = this.sources();
+		final Node container = this.find(this.sourcesTag);
 
-		if (sources != null) {
+		if (container instanceof GlowTableNode) {
+			final GlowSignalTable table = (GlowSignalTable) ((GlowTableNode<?>) container)
+					.table();
+
+			for (int i = 0; i < table.size(); i++) {
+				result.add(new GlowSource(table.number(i)));
+			}
+		} else if (container != null) {
+			final Sequence sources = (Sequence) container;
 			final Iterator<Node> it = sources.iterator();
 
 			while (it.hasNext()) {
@@ -760,9 +952,17 @@ public class GlowMatrixBase extends GlowContentElement {
 	 */
 	public Iterable<GlowTarget> typedTargets() {
 		final ArrayList<GlowTarget> result = new ArrayList<GlowTarget>();
-		final Sequence targets = this.targets();
+		final Node container = this.find(this.targetsTag);
 
-		if (targets != null) {
+		if (container instanceof GlowTableNode) {
+			final GlowSignalTable table = (GlowSignalTable) ((GlowTableNode<?>) container)
+					.table();
+
+			for (int i = 0; i < table.size(); i++) {
+				result.add(new GlowTarget(table.number(i)));
+			}
+		} else if (container != null) {
+			final Sequence targets = (Sequence) container;
 			final Iterator<Node> it = targets.iterator();
 
 			while (it.hasNext()) {
@@ -0,0 +1,904 @@
+package libember.glow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import libember.ber.Oid;
+import libember.dom.Node;
+import libember.dom.Sequence;
+import libember.util.Assert;
+
+/**
+ * Holds the crosspoint state of a linearly addressed matrix with primitive
+ * storage, so that the state of large routers can be maintained without
+ * keeping {@link GlowConnection} objects around.
+ * <p>
+ * For {@link MatrixType#ONE_TO_N} and {@link MatrixType#ONE_TO_ONE} matrices
+ * the state is an array containing the connected source per target. One to
+ * one matrices additionally keep the connected target per source. For
+ * {@link MatrixType#N_TO_N} matrices, each target owns a bitset of its
+ * connected sources, which is only allocated once the target is connected.
+ * Connect and disconnect operations run in constant time, absolute updates in
+ * time proportional to the number of sources passed and the size of the
+ * bitset of the target.
+ * </p>
+ * <p>
+ * The state honors the rules of the matrix type: connecting a source to a
+ * target of a one to N matrix replaces its current source, and connecting a
+ * source of a one to one matrix also disconnects it from its previous target.
+ * Connect operations exceeding the maximum number of connects per target or
+ * in total are rejected.
+ * </p>
+ * <p>
+ * An instance is not thread-safe.
+ * </p>
+ */
+public final class GlowMatrixState {
+	private final MatrixType type;
+	private final int targetCount;
+	private final int sourceCount;
+	private final int maximumConnectsPerTarget;
+	private final int maximumTotalConnects;
+	private final int[] sourceOf;
+	private final int[] targetOf;
+	private final long[][] bits;
+	private final int[] counts;
+	private final long[] scratch;
+	private int total;
+
+	/**
+	 * Initializes a new instance of the {@link GlowMatrixState} class without
+	 * any connection limits.
+	 * 
+	 * @param type
+	 *            The type of the matrix.
+	 * @param targetCount
+	 *            The number of targets.
+	 * @param sourceCount
+	 *            The number of sources.
+	 * @throws NullPointerException
+	 *             Thrown if {@link type} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if one of the counts is negative.
+	 */
+	public GlowMatrixState(MatrixType type, int targetCount, int sourceCount)
+			throws NullPointerException, IllegalArgumentException {
+		this(type, targetCount, sourceCount, 0, 0);
+	}
+
+	/**
+	 * Initializes a new instance of the {@link GlowMatrixState} class.
+	 * 
+	 * @param type
+	 *            The type of the matrix.
+	 * @param targetCount
+	 *            The number of targets.
+	 * @param sourceCount
+	 *            The number of sources.
+	 * @param maximumConnectsPerTarget
+	 *            The maximum number of sources per target of an n to n matrix,
+	 *            or 0 if the number is not limited.
+	 * @param maximumTotalConnects
+	 *            The maximum number of crosspoints which may be connected at
+	 *            the same time, or 0 if the number is not limited.
+	 * @throws NullPointerException
+	 *             Thrown if {@link type} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if one of the counts or limits is negative.
+	 */
+	public GlowMatrixState(MatrixType type, int targetCount, int sourceCount,
+			int maximumConnectsPerTarget, int maximumTotalConnects)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(type, "type");
+
+		if (targetCount < 0 || sourceCount < 0 || maximumConnectsPerTarget < 0
+				|| maximumTotalConnects < 0)
+			throw new IllegalArgumentException(
+					"The counts and limits must not be negative");
+
+		this.type = type;
+		this.targetCount = targetCount;
+		this.sourceCount = sourceCount;
+		this.maximumConnectsPerTarget = maximumConnectsPerTarget > 0 ? maximumConnectsPerTarget
+				: Integer.MAX_VALUE;
+		this.maximumTotalConnects = maximumTotalConnects > 0 ? maximumTotalConnects
+				: Integer.MAX_VALUE;
+
+		if (type == MatrixType.N_TO_N) {
+			this.sourceOf = null;
+			this.targetOf = null;
+			this.bits = new long[targetCount][];
+			this.counts = new int[targetCount];
+			this.scratch = new long[(sourceCount + 63) >>> 6];
+		} else {
+			this.sourceOf = new int[targetCount];
+			this.targetOf = type == MatrixType.ONE_TO_ONE ? new int[sourceCount]
+					: null;
+			this.bits = null;
+			this.counts = null;
+			this.scratch = null;
+
+			Arrays.fill(sourceOf, -1);
+
+			if (targetOf != null) {
+				Arrays.fill(targetOf, -1);
+			}
+		}
+	}
+
+	/**
+	 * Initializes a new instance of the {@link GlowMatrixState} class which
+	 * is a copy of another state.
+	 * 
+	 * @param other
+	 *            The state to copy.
+	 * @throws NullPointerException
+	 *             Thrown if {@link other} is <i>null</i>.
+	 */
+	public GlowMatrixState(GlowMatrixState other) throws NullPointerException {
+		Assert.AssertNotNull(other, "other");
+
+		this.type = other.type;
+		this.targetCount = other.targetCount;
+		this.sourceCount = other.sourceCount;
+		this.maximumConnectsPerTarget = other.maximumConnectsPerTarget;
+		this.maximumTotalConnects = other.maximumTotalConnects;
+		this.sourceOf = other.sourceOf != null ? other.sourceOf.clone() : null;
+		this.targetOf = other.targetOf != null ? other.targetOf.clone() : null;
+		this.counts = other.counts != null ? other.counts.clone() : null;
+		this.scratch = other.scratch != null ? new long[other.scratch.length]
+				: null;
+		this.total = other.total;
+
+		if (other.bits != null) {
+			this.bits = new long[targetCount][];
+
+			for (int i = 0; i < targetCount; i++) {
+				if (other.bits[i] != null) {
+					this.bits[i] = other.bits[i].clone();
+				}
+			}
+		} else {
+			this.bits = null;
+		}
+	}
+
+	/**
+	 * Creates the state of a matrix from its contents and connections. The
+	 * type defaults to {@link MatrixType#ONE_TO_N} if the matrix does not
+	 * specify it.
+	 * 
+	 * @param matrix
+	 *            The matrix to create the state for.
+	 * @return The state of the matrix.
+	 * @throws NullPointerException
+	 *             Thrown if {@link matrix} is <i>null</i>.
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the matrix is not linearly addressed or does not
+	 *             specify its target and source counts.
+	 */
+	public static GlowMatrixState create(GlowMatrixBase matrix)
+			throws NullPointerException, UnsupportedOperationException {
+		Assert.AssertNotNull(matrix, "matrix");
+
+		final MatrixAddressingMode mode = matrix.addressingMode();
+		final MatrixType type = matrix.type();
+		final Integer targetCount = matrix.targetCount();
+		final Integer sourceCount = matrix.sourceCount();
+		final Integer maximumConnectsPerTarget = matrix
+				.maximumConnectsPerTarget();
+		final Integer maximumTotalConnects = matrix.maximumTotalConnects();
+
+		if (mode == MatrixAddressingMode.NONLINEAR || targetCount == null
+				|| sourceCount == null)
+			throw new UnsupportedOperationException(
+					"Only linear matrices with known dimensions are supported");
+
+		final GlowMatrixState state = new GlowMatrixState(
+				type != null ? type : MatrixType.ONE_TO_N, targetCount,
+				sourceCount, maximumConnectsPerTarget != null ? Math.max(0,
+						maximumConnectsPerTarget) : 0,
+				maximumTotalConnects != null ? Math.max(0,
+						maximumTotalConnects) : 0);
+
+		state.apply(matrix);
+		return state;
+	}
+
+	/**
+	 * Checks whether a target index is valid.
+	 * 
+	 * @param target
+	 *            The target index to check.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link target} is not a valid target index.
+	 */
+	private void checkTarget(int target) throws IndexOutOfBoundsException {
+		if (target < 0 || target >= targetCount)
+			throw new IndexOutOfBoundsException("target");
+	}
+
+	/**
+	 * Checks whether a source index is valid.
+	 * 
+	 * @param source
+	 *            The source index to check.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link source} is not a valid source index.
+	 */
+	private void checkSource(int source) throws IndexOutOfBoundsException {
+		if (source < 0 || source >= sourceCount)
+			throw new IndexOutOfBoundsException("source");
+	}
+
+	/**
+	 * Disconnects the current source of a target of a one to N or one to one
+	 * matrix.
+	 * 
+	 * @param target
+	 *            The target to disconnect.
+	 * @return <i>true</i>, if the target was connected.
+	 */
+	private boolean clearSingle(int target) {
+		final int source = sourceOf[target];
+
+		if (source < 0) {
+			return false;
+		}
+
+		sourceOf[target] = -1;
+		total--;
+
+		if (targetOf != null) {
+			targetOf[source] = -1;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Creates a connection reporting a change of a target.
+	 * 
+	 * @param target
+	 *            The target index.
+	 * @param operation
+	 *            The operation of the connection.
+	 * @param disposition
+	 *            The disposition of the connection.
+	 * @param sources
+	 *            The sources which have been connected or disconnected.
+	 * @return The new connection.
+	 */
+	private static GlowConnection connection(int target,
+			ConnectionOperation operation, ConnectionDisposition disposition,
+			ArrayList<Integer> sources) {
+		final GlowConnection connection = new GlowConnection(target);
+
+		connection.setSources(sources);
+		connection.setOperation(operation);
+		connection.setDisposition(disposition);
+		return connection;
+	}
+
+	/**
+	 * Applies all connections of a matrix.
+	 * 
+	 * @param matrix
+	 *            The matrix containing the connections to apply.
+	 * @return <i>true</i>, if the state has changed.
+	 * @throws NullPointerException
+	 *             Thrown if {@link matrix} is <i>null</i>.
+	 */
+	public boolean apply(GlowMatrixBase matrix) throws NullPointerException {
+		Assert.AssertNotNull(matrix, "matrix");
+
+		final Sequence connections = matrix.connections();
+		boolean changed = false;
+
+		if (connections != null) {
+			for (Iterator<Node> it = connections.iterator(); it.hasNext(); /* Nothing */) {
+				final Node node = it.next();
+
+				if (node instanceof GlowConnection) {
+					changed |= apply((GlowConnection) node);
+				}
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Applies a connection. Connections without an operation are treated as
+	 * {@link ConnectionOperation#ABSOLUTE}, and absolute connections without
+	 * sources disconnect the target. Connections addressing an unknown target
+	 * and sources out of range are ignored.
+	 * 
+	 * @param connection
+	 *            The connection to apply.
+	 * @return <i>true</i>, if the state has changed.
+	 * @throws NullPointerException
+	 *             Thrown if {@link connection} is <i>null</i>.
+	 */
+	public boolean apply(GlowConnection connection) throws NullPointerException {
+		Assert.AssertNotNull(connection, "connection");
+
+		final Integer target = connection.target();
+
+		if (target == null || target < 0 || target >= targetCount) {
+			return false;
+		}
+
+		final ConnectionOperation operation = connection.operation();
+		final Iterable<Integer> sources = connection.sources();
+
+		if (operation == ConnectionOperation.CONNECT
+				|| operation == ConnectionOperation.DISCONNECT) {
+			boolean changed = false;
+
+			if (sources != null) {
+				for (Integer source : sources) {
+					if (source >= 0 && source < sourceCount) {
+						changed |= operation == ConnectionOperation.CONNECT ? connect(
+								target, source) : disconnect(target, source);
+					}
+				}
+			}
+
+			return changed;
+		} else {
+			int[] array = new int[4];
+			int count = 0;
+
+			if (sources != null) {
+				for (Integer source : sources) {
+					if (source >= 0 && source < sourceCount) {
+						if (count == array.length) {
+							array = Arrays.copyOf(array, count << 1);
+						}
+
+						array[count++] = source;
+					}
+				}
+			}
+
+			return setSources(target, array, count);
+		}
+	}
+
+	/**
+	 * Connects a source to a target.
+	 * 
+	 * @param target
+	 *            The target index.
+	 * @param source
+	 *            The source index.
+	 * @return <i>true</i>, if the state has changed. <i>false</i> is returned
+	 *         if the crosspoint was already connected or if connecting it
+	 *         would exceed one of the connection limits.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if the target or source index is invalid.
+	 */
+	public boolean connect(int target, int source)
+			throws IndexOutOfBoundsException {
+		checkTarget(target);
+		checkSource(source);
+
+		if (bits != null) {
+			long[] words = bits[target];
+
+			if (words == null) {
+				words = new long[scratch.length];
+				bits[target] = words;
+			}
+
+			final long mask = 1L << source;
+
+			if ((words[source >>> 6] & mask) != 0
+					|| counts[target] >= maximumConnectsPerTarget
+					|| total >= maximumTotalConnects) {
+				return false;
+			}
+
+			words[source >>> 6] |= mask;
+			counts[target]++;
+			total++;
+			return true;
+		} else {
+			final int previous = sourceOf[target];
+
+			if (previous == source) {
+				return false;
+			}
+
+			if (previous < 0 && total >= maximumTotalConnects) {
+				if (targetOf == null || targetOf[source] < 0) {
+					return false;
+				}
+			}
+
+			clearSingle(target);
+
+			if (targetOf != null) {
+				final int owner = targetOf[source];
+
+				if (owner >= 0) {
+					clearSingle(owner);
+				}
+
+				targetOf[source] = target;
+			}
+
+			sourceOf[target] = source;
+			total++;
+			return true;
+		}
+	}
+
+	/**
+	 * Gets the number of sources connected to a target.
+	 * 
+	 * @param target
+	 *            The target index.
+	 * @return The number of connected sources.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if the target index is invalid.
+	 */
+	public int connectCount(int target) throws IndexOutOfBoundsException {
+		checkTarget(target);
+
+		if (counts != null) {
+			return counts[target];
+		} else {
+			return sourceOf[target] >= 0 ? 1 : 0;
+		}
+	}
+
+	/**
+	 * Appends the connections which turn a previous state into this state to
+	 * a sequence. Only targets whose sources differ are reported: a target of
+	 * a one to N or one to one matrix is reported by a single
+	 * {@link ConnectionOperation#CONNECT} of its new source, or by a
+	 * {@link ConnectionOperation#DISCONNECT} of its old source. A target of an
+	 * n to n matrix is reported by up to two connections, one disconnecting
+	 * the removed sources and one connecting the added sources.
+	 * 
+	 * @param previous
+	 *            The previous state of the same matrix.
+	 * @param disposition
+	 *            The disposition of the reported connections, usually
+	 *            {@link ConnectionDisposition#MODIFIED}.
+	 * @param connections
+	 *            The sequence receiving the connections.
+	 * @return The number of connections appended.
+	 * @throws NullPointerException
+	 *             Thrown if any of the arguments is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link previous} has a different type or
+	 *             dimensions.
+	 */
+	public int diff(GlowMatrixState previous,
+			ConnectionDisposition disposition, Sequence connections)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(previous, "previous");
+		Assert.AssertNotNull(disposition, "disposition");
+		Assert.AssertNotNull(connections, "connections");
+
+		if (previous.type != type || previous.targetCount != targetCount
+				|| previous.sourceCount != sourceCount)
+			throw new IllegalArgumentException(
+					"The states belong to different matrices");
+
+		int count = 0;
+
+		if (bits == null) {
+			for (int target = 0; target < targetCount; target++) {
+				final int source = sourceOf[target];
+				final int old = previous.sourceOf[target];
+
+				if (source != old) {
+					final ArrayList<Integer> sources = new ArrayList<Integer>(1);
+
+					sources.add(source >= 0 ? source : old);
+					connections.insert(connection(target,
+							source >= 0 ? ConnectionOperation.CONNECT
+									: ConnectionOperation.DISCONNECT,
+							disposition, sources));
+					count++;
+				}
+			}
+		} else {
+			for (int target = 0; target < targetCount; target++) {
+				final long[] words = bits[target];
+				final long[] old = previous.bits[target];
+
+				if (words == old) {
+					continue;
+				}
+
+				ArrayList<Integer> added = null;
+				ArrayList<Integer> removed = null;
+
+				for (int i = 0; i < scratch.length; i++) {
+					final long current = words != null ? words[i] : 0;
+					final long before = old != null ? old[i] : 0;
+
+					if (current != before) {
+						long changed = current & ~before;
+
+						while (changed != 0) {
+							if (added == null) {
+								added = new ArrayList<Integer>();
+							}
+
+							added.add((i << 6)
+									+ Long.numberOfTrailingZeros(changed));
+							changed &= changed - 1;
+						}
+
+						changed = before & ~current;
+
+						while (changed != 0) {
+							if (removed == null) {
+								removed = new ArrayList<Integer>();
+							}
+
+							removed.add((i << 6)
+									+ Long.numberOfTrailingZeros(changed));
+							changed &= changed - 1;
+						}
+					}
+				}
+
+				if (removed != null) {
+					connections.insert(connection(target,
+							ConnectionOperation.DISCONNECT, disposition,
+							removed));
+					count++;
+				}
+
+				if (added != null) {
+					connections.insert(connection(target,
+							ConnectionOperation.CONNECT, disposition, added));
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Creates a message reporting the changes between a previous state and
+	 * this state, with the disposition {@link ConnectionDisposition#MODIFIED}.
+	 * 
+	 * @param path
+	 *            The path of the matrix.
+	 * @param previous
+	 *            The previous state of the matrix.
+	 * @return A {@link GlowRootElementCollection} containing a single
+	 *         {@link GlowQualifiedMatrix} with the changed connections, or
+	 *         <i>null</i> if both states are equal.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} or {@link previous} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link previous} has a different type or
+	 *             dimensions.
+	 * @see #diff(GlowMatrixState, ConnectionDisposition, Sequence)
+	 */
+	public GlowRootElementCollection diff(Oid path, GlowMatrixState previous)
+			throws NullPointerException, IllegalArgumentException {
+		final GlowQualifiedMatrix matrix = new GlowQualifiedMatrix(path);
+
+		if (diff(previous, ConnectionDisposition.MODIFIED,
+				matrix.connections(true)) == 0) {
+			return null;
+		}
+
+		final GlowRootElementCollection root = GlowRootElementCollection
+				.create();
+
+		root.insert(matrix);
+		return root;
+	}
+
+	/**
+	 * Disconnects a source from a target.
+	 * 
+	 * @param target
+	 *            The target index.
+	 * @param source
+	 *            The source index.
+	 * @return <i>true</i>, if the crosspoint was connected.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if the target or source index is invalid.
+	 */
+	public boolean disconnect(int target, int source)
+			throws IndexOutOfBoundsException {
+		checkTarget(target);
+		checkSource(source);
+
+		if (bits != null) {
+			final long[] words = bits[target];
+			final long mask = 1L << source;
+
+			if (words == null || (words[source >>> 6] & mask) == 0) {
+				return false;
+			}
+
+			words[source >>> 6] &= ~mask;
+			counts[target]--;
+			total--;
+			return true;
+		} else {
+			if (sourceOf[target] != source) {
+				return false;
+			}
+
+			return clearSingle(target);
+		}
+	}
+
+	/**
+	 * Tests whether a crosspoint is connected.
+	 * 
+	 * @param target
+	 *            The target index.
+	 * @param source
+	 *            The source index.
+	 * @return <i>true</i>, if the source is connected to the target.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if the target or source index is invalid.
+	 */
+	public boolean isConnected(int target, int source)
+			throws IndexOutOfBoundsException {
+		checkTarget(target);
+		checkSource(source);
+
+		if (bits != null) {
+			final long[] words = bits[target];
+			return words != null && (words[source >>> 6] & (1L << source)) != 0;
+		} else {
+			return sourceOf[target] == source;
+		}
+	}
+
+	/**
+	 * Gets the next source connected to a target, in ascending order.
+	 * 
+	 * @param target
+	 *            The target index.
+	 * @param from
+	 *            The source index to start searching at, inclusive.
+	 * @return The index of the next connected source or -1, if there are no
+	 *         more connected sources.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if the target index is invalid.
+	 */
+	public int nextSource(int target, int from)
+			throws IndexOutOfBoundsException {
+		checkTarget(target);
+
+		if (from < 0) {
+			from = 0;
+		}
+
+		if (bits != null) {
+			final long[] words = bits[target];
+
+			if (words == null || from >= sourceCount) {
+				return -1;
+			}
+
+			int index = from >>> 6;
+			long word = words[index] & (-1L << from);
+
+			while (word == 0) {
+				if (++index == words.length) {
+					return -1;
+				}
+
+				word = words[index];
+			}
+
+			return (index << 6) + Long.numberOfTrailingZeros(word);
+		} else {
+			final int source = sourceOf[target];
+			return source >= from ? source : -1;
+		}
+	}
+
+	/**
+	 * Replaces the sources connected to a target, as requested by an
+	 * {@link ConnectionOperation#ABSOLUTE} connection. Targets of one to N and
+	 * one to one matrices are connected to the first source only. Sources of
+	 * an n to n matrix which would exceed one of the connection limits are
+	 * skipped.
+	 * 
+	 * @param target
+	 *            The target index.
+	 * @param sources
+	 *            The sources to connect to the target.
+	 * @param count
+	 *            The number of valid elements in {@link sources}.
+	 * @return <i>true</i>, if the state has changed.
+	 * @throws NullPointerException
+	 *             Thrown if {@link sources} is <i>null</i>.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if the target index or one of the sources is invalid.
+	 */
+	public boolean setSources(int target, int[] sources, int count)
+			throws NullPointerException, IndexOutOfBoundsException {
+		Assert.AssertNotNull(sources, "sources");
+		checkTarget(target);
+
+		for (int i = 0; i < count; i++) {
+			checkSource(sources[i]);
+		}
+
+		if (bits == null) {
+			if (count == 0) {
+				return clearSingle(target);
+			} else {
+				return connect(target, sources[0]);
+			}
+		}
+
+		final long[] words = bits[target];
+
+		if (words == null) {
+			boolean changed = false;
+
+			for (int i = 0; i < count; i++) {
+				changed |= connect(target, sources[i]);
+			}
+
+			return changed;
+		}
+
+		final long[] wanted = scratch;
+		boolean changed = false;
+
+		Arrays.fill(wanted, 0);
+
+		for (int i = 0; i < count; i++) {
+			wanted[sources[i] >>> 6] |= 1L << sources[i];
+		}
+
+		for (int i = 0; i < words.length; i++) {
+			final long removed = words[i] & ~wanted[i];
+
+			if (removed != 0) {
+				final int n = Long.bitCount(removed);
+
+				words[i] &= ~removed;
+				counts[target] -= n;
+				total -= n;
+				changed = true;
+			}
+		}
+
+		for (int i = 0; i < words.length; i++) {
+			long added = wanted[i] & ~words[i];
+
+			while (added != 0) {
+				final int source = (i << 6) + Long.numberOfTrailingZeros(added);
+
+				added &= added - 1;
+				changed |= connect(target, source);
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Gets the lowest source connected to a target. This is the only source
+	 * of a target of a one to N or one to one matrix.
+	 * 
+	 * @param target
+	 *            The target index.
+	 * @return The source index or -1, if the target is not connected.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if the target index is invalid.
+	 */
+	public int source(int target) throws IndexOutOfBoundsException {
+		return nextSource(target, 0);
+	}
+
+	/**
+	 * Gets the number of sources of the matrix.
+	 * 
+	 * @return The number of sources.
+	 */
+	public int sourceCount() {
+		return sourceCount;
+	}
+
+	/**
+	 * Copies the sources connected to a target into an array, in ascending
+	 * order.
+	 * 
+	 * @param target
+	 *            The target index.
+	 * @param buffer
+	 *            The array receiving the sources. The array should be large
+	 *            enough to hold {@link #connectCount(int)} elements; excess
+	 *            sources are not copied.
+	 * @return The number of sources copied.
+	 * @throws NullPointerException
+	 *             Thrown if {@link buffer} is <i>null</i>.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if the target index is invalid.
+	 */
+	public int sources(int target, int[] buffer) throws NullPointerException,
+			IndexOutOfBoundsException {
+		Assert.AssertNotNull(buffer, "buffer");
+
+		int count = 0;
+
+		for (int source = nextSource(target, 0); source >= 0
+				&& count < buffer.length; source = nextSource(target,
+				source + 1)) {
+			buffer[count++] = source;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Gets the number of targets of the matrix.
+	 * 
+	 * @return The number of targets.
+	 */
+	public int targetCount() {
+		return targetCount;
+	}
+
+	/**
+	 * Creates a {@link GlowConnection} reporting the absolute state of a
+	 * target.
+	 * 
+	 * @param target
+	 *            The target index.
+	 * @return A connection with the operation
+	 *         {@link ConnectionOperation#ABSOLUTE} containing all connected
+	 *         sources.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if the target index is invalid.
+	 */
+	public GlowConnection toConnection(int target)
+			throws IndexOutOfBoundsException {
+		final ArrayList<Integer> sources = new ArrayList<Integer>(
+				connectCount(target));
+		final GlowConnection connection = new GlowConnection(target);
+
+		for (int source = nextSource(target, 0); source >= 0; source = nextSource(
+				target, source + 1)) {
+			sources.add(source);
+		}
+
+		connection.setSources(sources);
+		connection.setOperation(ConnectionOperation.ABSOLUTE);
+		return connection;
+	}
+
+	/**
+	 * Gets the total number of connected crosspoints.
+	 * 
+	 * @return The number of connected crosspoints.
+	 */
+	public int totalConnects() {
+		return total;
+	}
+
+	/**
+	 * Gets the type of the matrix.
+	 * 
+	 * @return The type of the matrix.
+	 */
+	public MatrixType type() {
+		return type;
+	}
+}
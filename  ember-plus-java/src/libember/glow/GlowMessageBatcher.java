@@ -0,0 +1,334 @@
+package libember.glow;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import libember.ber.Oid;
+import libember.ber.Value;
+import libember.s101.CommandType;
+import libember.s101.Dtd;
+import libember.s101.MessageType;
+import libember.s101.PackageFlags;
+import libember.s101.StreamEncoder;
+import libember.util.Assert;
+import libember.util.ByteStream;
+
+/**
+ * Collects outgoing glow elements, usually {@link GlowQualifiedParameter}
+ * updates, into a single {@link GlowRootElementCollection} and sends it as one
+ * S101 frame. A batch is sealed when it contains the maximum number of
+ * elements, when its encoded length reaches the byte budget, or when its
+ * oldest element has been waiting for the maximum delay. Sealing encodes and
+ * frames the whole batch once.
+ * <p>
+ * Sealed frames are passed to the writer through a bounded queue. The writer,
+ * see {@link #run()}, is meant to be executed by a dedicated thread and writes
+ * the frames to the output stream. If the output is slower than the producers,
+ * the queue fills up and {@link #add(GlowContentElement)} blocks until the
+ * writer catches up.
+ * </p>
+ */
+public final class GlowMessageBatcher implements Runnable {
+	/**
+	 * Sentinel frame which tells the writer to stop.
+	 */
+	private final static byte[] END = new byte[0];
+
+	private final OutputStream output;
+	private final int maxElements;
+	private final int maxBytes;
+	private final long maxDelay;
+	private final ArrayBlockingQueue<byte[]> frames;
+	private final ByteStream stream = new ByteStream();
+	private final StreamEncoder encoder = new StreamEncoder();
+	private GlowRootElementCollection batch;
+	private int count;
+	private long started;
+	private volatile boolean closed;
+	private volatile IOException error;
+
+	/**
+	 * Initializes a new instance of the {@link GlowMessageBatcher} class.
+	 * 
+	 * @param output
+	 *            The stream to write the frames to. When writing to a socket,
+	 *            the stream should be buffered, since the writer only flushes
+	 *            it when no more frames are waiting.
+	 * @param maxElements
+	 *            The maximum number of elements per batch.
+	 * @param maxBytes
+	 *            The encoded length at which a batch is sealed.
+	 * @param maxDelay
+	 *            The maximum time an element is kept in an open batch.
+	 * @param unit
+	 *            The unit of {@link maxDelay}.
+	 * @param capacity
+	 *            The number of sealed frames which may wait for the writer
+	 *            before producers are blocked.
+	 * @throws NullPointerException
+	 *             Thrown if {@link output} or {@link unit} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link maxElements}, {@link maxBytes} or
+	 *             {@link capacity} is less than one.
+	 */
+	public GlowMessageBatcher(OutputStream output, int maxElements,
+			int maxBytes, long maxDelay, TimeUnit unit, int capacity)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(output, "output");
+		Assert.AssertNotNull(unit, "unit");
+
+		if (maxElements < 1 || maxBytes < 1)
+			throw new IllegalArgumentException("The batch budget must be positive");
+
+		this.output = output;
+		this.maxElements = maxElements;
+		this.maxBytes = maxBytes;
+		this.maxDelay = unit.toNanos(maxDelay);
+		this.frames = new ArrayBlockingQueue<byte[]>(capacity);
+	}
+
+	/**
+	 * Makes sure the batcher is still usable.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the batcher has been closed or the writer failed.
+	 */
+	private void assertOpen() throws UnsupportedOperationException {
+		if (error != null)
+			throw new UnsupportedOperationException(
+					"The output stream has failed", error);
+
+		if (closed)
+			throw new UnsupportedOperationException(
+					"The batcher has been closed");
+	}
+
+	/**
+	 * Encodes and frames the current batch and passes it to the writer. Must
+	 * be called while holding the monitor of this instance, which keeps the
+	 * frames in order.
+	 * 
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted while waiting
+	 *             for the writer.
+	 */
+	private void seal() throws InterruptedException {
+		final GlowRootElementCollection batch = this.batch;
+
+		if (batch == null) {
+			return;
+		}
+
+		this.batch = null;
+		this.count = 0;
+
+		stream.clear();
+		batch.encode(stream);
+
+		encoder.reset();
+		encoder.encode(0x00);
+		encoder.encode(MessageType.EMBER.value());
+		encoder.encode(CommandType.EMBER.value());
+		encoder.encode(0x01);
+		encoder.encode(PackageFlags.FIRST_PACKAGE | PackageFlags.LAST_PACKAGE);
+		encoder.encode(Dtd.GLOW.value());
+		encoder.encode(0x02);
+		encoder.encode(GlowDtd.MINOR);
+		encoder.encode(GlowDtd.MAJOR);
+		encoder.encode(stream.buffer(), 0, stream.size());
+		encoder.finish();
+
+		frames.put(encoder.toArray());
+	}
+
+	/**
+	 * Adds an element to the current batch. If the batch reaches one of its
+	 * limits, it is sealed and queued. This method blocks while the queue of
+	 * sealed frames is full.
+	 * 
+	 * @param element
+	 *            The element to add. The element must not be owned by another
+	 *            container.
+	 * @throws NullPointerException
+	 *             Thrown if {@link element} is <i>null</i>.
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted while waiting
+	 *             for the writer.
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the batcher has been closed or the writer failed.
+	 */
+	public synchronized void add(GlowContentElement element)
+			throws NullPointerException, InterruptedException,
+			UnsupportedOperationException {
+		Assert.AssertNotNull(element, "element");
+		assertOpen();
+
+		if (batch == null) {
+			batch = GlowRootElementCollection.create();
+			started = System.nanoTime();
+		}
+
+		batch.insert(element);
+		count++;
+
+		if (count >= maxElements || batch.encodedLength() >= maxBytes
+				|| System.nanoTime() - started >= maxDelay) {
+			seal();
+		}
+	}
+
+	/**
+	 * Adds a parameter update to the current batch.
+	 * 
+	 * @param path
+	 *            The path of the parameter.
+	 * @param value
+	 *            The new value of the parameter.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} or {@link value} is <i>null</i>.
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted while waiting
+	 *             for the writer.
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the batcher has been closed or the writer failed.
+	 * @see #add(GlowContentElement)
+	 */
+	public void add(Oid path, Value value) throws NullPointerException,
+			InterruptedException, UnsupportedOperationException {
+		final GlowQualifiedParameter parameter = new GlowQualifiedParameter(
+				path);
+
+		parameter.setValue(value);
+		add(parameter);
+	}
+
+	/**
+	 * Seals the current batch and stops the writer once all queued frames have
+	 * been written. If the writer has failed or fails while closing, this
+	 * method returns without waiting for it.
+	 * 
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted while waiting
+	 *             for the writer.
+	 */
+	public synchronized void close() throws InterruptedException {
+		if (closed == false) {
+			if (error == null) {
+				seal();
+			}
+
+			closed = true;
+
+			while (frames.offer(END, 100, TimeUnit.MILLISECONDS) == false
+					&& error == null) {
+				/* Nothing */
+			}
+		}
+	}
+
+	/**
+	 * Seals the current batch, regardless of its size and age.
+	 * 
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted while waiting
+	 *             for the writer.
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the batcher has been closed or the writer failed.
+	 */
+	public synchronized void flush() throws InterruptedException,
+			UnsupportedOperationException {
+		assertOpen();
+		seal();
+	}
+
+	/**
+	 * Seals the current batch if its oldest element has been waiting for the
+	 * maximum delay. This method is called periodically by the task created
+	 * by {@link #start(ScheduledExecutorService)}.
+	 * 
+	 * @return <i>true</i>, if a batch has been sealed.
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted while waiting
+	 *             for the writer.
+	 */
+	public synchronized boolean flushExpired() throws InterruptedException {
+		if (batch != null && closed == false && error == null
+				&& System.nanoTime() - started >= maxDelay) {
+			seal();
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Writes the queued frames to the output stream until the batcher is
+	 * closed. The output stream is flushed whenever the queue runs empty, so
+	 * frames sealed in quick succession are written in one go. If writing
+	 * fails or the writer is interrupted, the error is stored and reported to
+	 * the producers, and the queued frames are discarded so that no producer
+	 * keeps waiting for the writer.
+	 */
+	public void run() {
+		final ArrayList<byte[]> pending = new ArrayList<byte[]>();
+
+		try {
+			while (true) {
+				pending.add(frames.take());
+				frames.drainTo(pending);
+
+				for (byte[] frame : pending) {
+					if (frame == END) {
+						output.flush();
+						return;
+					}
+
+					output.write(frame);
+				}
+
+				pending.clear();
+				output.flush();
+			}
+		} catch (IOException e) {
+			error = e;
+			frames.clear();
+		} catch (InterruptedException e) {
+			error = new InterruptedIOException("The writer has been interrupted");
+			frames.clear();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Enforces the time budget of open batches even if no more elements are
+	 * added, by checking the current batch periodically.
+	 * 
+	 * @param executor
+	 *            The executor which runs the checks.
+	 * @return The {@link ScheduledFuture} which can be used to stop the checks.
+	 * @throws NullPointerException
+	 *             Thrown if {@link executor} is <i>null</i>.
+	 */
+	public ScheduledFuture<?> start(ScheduledExecutorService executor)
+			throws NullPointerException {
+		Assert.AssertNotNull(executor, "executor");
+
+		final long period = Math.max(1, maxDelay / 2);
+
+		return executor.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				try {
+					flushExpired();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, period, period, TimeUnit.NANOSECONDS);
+	}
+}
@@ -1,6 +1,5 @@
 package libember.glow;
 
-import libember.ber.Class;
 import libember.ber.Tag;
 import libember.ber.Value;
 import libember.util.Assert;
@@ -39,8 +38,7 @@ public class GlowNodeBase extends GlowContentElement {
 	 * @return <i>true</i>, if the property exists. Otherwise, <i>false</i>.
 	 */
 	public boolean contains(NodeProperty property) {
-		final Tag tag = new Tag(Class.CONTEXT, property.value());
-		final boolean result = hasContent(tag);
+		final boolean result = hasContent(property.value());
 		return result;
 	}
 
@@ -4,9 +4,9 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.Vector;
 
-import libember.ber.Class;
 import libember.ber.Tag;
 import libember.ber.Value;
+import libember.dom.Node;
 import libember.util.Assert;
 import libember.util.Pair;
 
@@ -14,6 +14,11 @@ import libember.util.Pair;
  * This class represents a parameter within an Ember+ tree.
  */
 public class GlowParameterBase extends GlowContentElement {
+	private Value formulaValue;
+	private Formula formula;
+	private Object enumerationSource;
+	private int enumerationRevision;
+	private GlowEnumerationIndex enumerationIndex;
 
 	/**
 	 * Initializes a new instance of the {@link GlowParameterBase} class.
@@ -56,16 +61,15 @@ public class GlowParameterBase extends GlowContentElement {
 
 	/**
 	 * Tests whether the specified {@link ParameterProperty} is stored within
-	 * this parameter's content set.
+	 * this parameter's content set. The test only reads the
+	 * {@link #propertyMask()}.
 	 * 
 	 * @param property
 	 *            The property to lookup.
 	 * @return <i>true</i> if the property exists, otherwise <i>false</i>.
 	 */
 	public boolean contains(ParameterProperty property) {
-		final Tag tag = new Tag(Class.CONTEXT, property.value());
-		final boolean result = hasContent(tag);
-		return result;
+		return (propertyMask() & (1L << property.value())) != 0;
 	}
 
 	/**
@@ -121,6 +125,46 @@ public class GlowParameterBase extends GlowContentElement {
 		}
 	}
 
+	/**
+	 * Gets a {@link GlowEnumerationIndex} over the enumeration map of this
+	 * parameter or, if it has no map, over its legacy enumeration. The index
+	 * is cached until the enumeration is replaced or the map is modified, so
+	 * resolving values on every refresh does not allocate.
+	 * 
+	 * @return The enumeration index or <i>null</i>, if the parameter has
+	 *         neither an enumeration map nor an enumeration.
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the enumeration is of a different type.
+	 */
+	public GlowEnumerationIndex enumerationIndex()
+			throws UnsupportedOperationException {
+		final Node map = getContent(GlowTags.ParameterContents.ENUMMAP);
+
+		if (map instanceof GlowStringIntegerCollection) {
+			final GlowStringIntegerCollection collection = (GlowStringIntegerCollection) map;
+
+			if (collection != enumerationSource
+					|| collection.revision() != enumerationRevision) {
+				enumerationIndex = GlowEnumerationIndex.create(collection);
+				enumerationSource = collection;
+				enumerationRevision = collection.revision();
+			}
+
+			return enumerationIndex;
+		}
+
+		final Value value = getContentValue(GlowTags.ParameterContents.ENUMERATION);
+
+		if (value == null) {
+			return null;
+		} else if (value != enumerationSource) {
+			enumerationIndex = GlowEnumerationIndex.create(value.toUTF8String());
+			enumerationSource = value;
+		}
+
+		return enumerationIndex;
+	}
+
 	/**
 	 * Gets a {@link Collection} containing the enumeration map of this
 	 * parameter.
@@ -168,6 +212,19 @@ public class GlowParameterBase extends GlowContentElement {
 			return null;
 	}
 
+	/**
+	 * Gets the factor of this parameter without boxing it.
+	 * 
+	 * @param defaultValue
+	 *            The value to return if the property does not exist or is not
+	 *            an integer.
+	 * @return The factor of this parameter or {@link defaultValue}.
+	 */
+	public int factor(int defaultValue) {
+		return (int) getContentLong(ParameterProperty.FACTOR.value(),
+				defaultValue);
+	}
+
 	/**
 	 * Gets the format string of this parameter.
 	 * 
@@ -185,7 +242,9 @@ public class GlowParameterBase extends GlowContentElement {
 	}
 
 	/**
-	 * Gets the {@link Formula} of this parameter.
+	 * Gets the {@link Formula} of this parameter. The instance is cached as
+	 * long as the formula property is not replaced, so its compiled terms are
+	 * reused by subsequent calls.
 	 * 
 	 * @return The {@link Formula} or <i>null</i>, if the property does not
 	 *         exist.
@@ -195,16 +254,23 @@ public class GlowParameterBase extends GlowContentElement {
 	public Formula formula() throws UnsupportedOperationException {
 		final Value value = getContentValue(GlowTags.ParameterContents.FORMULA);
 
-		if (value != null) {
+		if (value == formulaValue) {
+			return formula;
+		} else if (value != null) {
 			final String[] terms = value.toUTF8String().split("\n");
+			final Formula result;
 
 			if (terms.length == 2) {
-				return new Formula(terms[0], terms[1]);
+				result = new Formula(terms[0], terms[1]);
 			} else if (terms.length == 1) {
-				return new Formula(terms[0], terms[0]);
+				result = new Formula(terms[0], terms[0]);
 			} else {
-				return new Formula("$", "$");
+				result = new Formula("$", "$");
 			}
+
+			formulaValue = value;
+			formula = result;
+			return result;
 		} else {
 			return null;
 		}
@@ -262,6 +328,19 @@ public class GlowParameterBase extends GlowContentElement {
 			return null;
 	}
 
+	/**
+	 * Gets the online state of this parameter without boxing it.
+	 * 
+	 * @param defaultValue
+	 *            The value to return if the property does not exist or is not
+	 *            a boolean.
+	 * @return The online state of this parameter or {@link defaultValue}.
+	 */
+	public boolean isOnline(boolean defaultValue) {
+		return getContentBoolean(ParameterProperty.ISONLINE.value(),
+				defaultValue);
+	}
+
 	/**
 	 * Gets the maximum value of this parameter.
 	 * 
@@ -282,6 +361,18 @@ public class GlowParameterBase extends GlowContentElement {
 		return getContentValue(GlowTags.ParameterContents.MINIMUM);
 	}
 
+	/**
+	 * Gets a bit mask of the properties stored within this parameter's
+	 * content set. The bit <code>1L &lt;&lt; property.value()</code> is set for
+	 * each {@link ParameterProperty} which exists, so several properties can
+	 * be tested at once.
+	 * 
+	 * @return The mask of the present properties.
+	 */
+	public long propertyMask() {
+		return getContentMask();
+	}
+
 	/**
 	 * Specifies the {@link Access} of this parameter.
 	 * 
@@ -640,6 +731,20 @@ public class GlowParameterBase extends GlowContentElement {
 		setContent(GlowTags.ParameterContents.VALUE, value);
 	}
 
+	/**
+	 * Sets the new value for this parameter. This overload accepts a type
+	 * erased {@link Value}, for example a value which has been read from
+	 * another parameter.
+	 * 
+	 * @param value
+	 *            The new parameter value.
+	 * @throws NullPointerException
+	 *             Thrown if {@link value} is <i>null</i>.
+	 */
+	public void setValue(Value value) throws NullPointerException {
+		setContent(GlowTags.ParameterContents.VALUE, value);
+	}
+
 	/**
 	 * gets the step of this parameter.
 	 * 
@@ -685,6 +790,19 @@ public class GlowParameterBase extends GlowContentElement {
 			return null;
 	}
 
+	/**
+	 * Gets the stream identifier of this parameter without boxing it.
+	 * 
+	 * @param defaultValue
+	 *            The value to return if the property does not exist or is not
+	 *            an integer.
+	 * @return The stream identifier or {@link defaultValue}.
+	 */
+	public int streamIdentifier(int defaultValue) {
+		return (int) getContentLong(ParameterProperty.STREAMIDENTIFIER.value(),
+				defaultValue);
+	}
+
 	/**
 	 * Gets the {@link ParameterType} of this parameter.
 	 * 
@@ -709,4 +827,44 @@ public class GlowParameterBase extends GlowContentElement {
 	public Value value() {
 		return getContentValue(GlowTags.ParameterContents.VALUE);
 	}
+
+	/**
+	 * Gets the value of this parameter as <i>boolean</i>. Unlike
+	 * {@link #value()}, this method neither boxes the value nor creates a
+	 * {@link Value} for a value set by one of the <code>setValue</code>
+	 * methods.
+	 * 
+	 * @param defaultValue
+	 *            The value to return if the property does not exist or is not
+	 *            a boolean.
+	 * @return The value of this parameter or {@link defaultValue}.
+	 */
+	public boolean valueAsBoolean(boolean defaultValue) {
+		return getContentBoolean(ParameterProperty.VALUE.value(), defaultValue);
+	}
+
+	/**
+	 * Gets the value of this parameter as <i>double</i> without boxing it.
+	 * Integer values are converted.
+	 * 
+	 * @param defaultValue
+	 *            The value to return if the property does not exist or is not
+	 *            numeric.
+	 * @return The value of this parameter or {@link defaultValue}.
+	 */
+	public double valueAsDouble(double defaultValue) {
+		return getContentDouble(ParameterProperty.VALUE.value(), defaultValue);
+	}
+
+	/**
+	 * Gets the value of this parameter as <i>long</i> without boxing it.
+	 * 
+	 * @param defaultValue
+	 *            The value to return if the property does not exist or is not
+	 *            an integer.
+	 * @return The value of this parameter or {@link defaultValue}.
+	 */
+	public long valueAsLong(long defaultValue) {
+		return getContentLong(ParameterProperty.VALUE.value(), defaultValue);
+	}
 }
@@ -0,0 +1,335 @@
+package libember.glow;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import libember.ber.Encoding;
+import libember.ber.Length;
+import libember.ber.Tag;
+import libember.dom.Node;
+import libember.dom.Sequence;
+import libember.util.Assert;
+import libember.util.ByteStream;
+import libember.util.OutputStream;
+
+/**
+ * An immutable table of the signal numbers of the targets or sources of a
+ * matrix, stored in a primitive array. The table is encoded once when it is
+ * created, so a matrix referencing the table via
+ * {@link GlowMatrixBase#setTargets(GlowSignalTable)} or
+ * {@link GlowMatrixBase#setSources(GlowSignalTable)} encodes its signals by
+ * copying bytes instead of visiting one {@link GlowTarget} or
+ * {@link GlowSource} container per signal. Tables can also be decoded directly
+ * from the encoded sequence.
+ */
+public final class GlowSignalTable {
+	private final GlowType type;
+	private final int[] numbers;
+	private final boolean sorted;
+	private final byte[] payload;
+
+	/**
+	 * Initializes a new instance of the {@link GlowSignalTable} class.
+	 * 
+	 * @param type
+	 *            The type of the signals, either {@link GlowType#TARGET} or
+	 *            {@link GlowType#SOURCE}.
+	 * @param numbers
+	 *            The signal numbers. The array is copied.
+	 * @param count
+	 *            The number of valid elements in {@link numbers}.
+	 * @throws NullPointerException
+	 *             Thrown if {@link type} or {@link numbers} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link type} is neither a target nor a source, or
+	 *             if {@link count} is invalid.
+	 */
+	public GlowSignalTable(GlowType type, int[] numbers, int count)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(type, "type");
+		Assert.AssertNotNull(numbers, "numbers");
+
+		if (type != GlowType.TARGET && type != GlowType.SOURCE)
+			throw new IllegalArgumentException(
+					"The type must either be TARGET or SOURCE");
+
+		if (count < 0 || count > numbers.length)
+			throw new IllegalArgumentException("count");
+
+		final ByteStream stream = new ByteStream(count * 10);
+		final Tag entryTag = GlowTags.ELEMENT_DEFAULT.toContainer();
+		final Tag typeTag = GlowType.typeTagOf(type).toContainer();
+		final Tag numberTag = GlowTags.Signal.NUMBER.toContainer();
+		boolean sorted = true;
+
+		for (int i = 0; i < count; i++) {
+			final long number = numbers[i];
+			final int valueLength = Encoding.encodedLength(number);
+			final int leafLength = 1 + Encoding.encodedLength(new Length(
+					valueLength)) + valueLength;
+			final int innerLength = Encoding.encodedLength(numberTag)
+					+ Encoding.encodedLength(new Length(leafLength))
+					+ leafLength;
+			final int elementLength = Encoding.encodedLength(typeTag)
+					+ Encoding.encodedLength(new Length(innerLength))
+					+ innerLength;
+
+			Encoding.encode(stream, entryTag);
+			Encoding.encode(stream, new Length(elementLength));
+			Encoding.encode(stream, typeTag);
+			Encoding.encode(stream, new Length(innerLength));
+			Encoding.encode(stream, numberTag);
+			Encoding.encode(stream, new Length(leafLength));
+			stream.append(libember.ber.UniversalType.INTEGER.value());
+			Encoding.encode(stream, new Length(valueLength));
+			Encoding.encode(stream, number);
+
+			if (i > 0 && numbers[i - 1] >= numbers[i]) {
+				sorted = false;
+			}
+		}
+
+		this.type = type;
+		this.numbers = Arrays.copyOf(numbers, count);
+		this.sorted = sorted;
+		this.payload = stream.toArray();
+	}
+
+	/**
+	 * Creates a table of linearly addressed signals, numbered from 0 to
+	 * <code>count - 1</code>.
+	 * 
+	 * @param type
+	 *            The type of the signals, either {@link GlowType#TARGET} or
+	 *            {@link GlowType#SOURCE}.
+	 * @param count
+	 *            The number of signals.
+	 * @return The new table.
+	 * @throws NullPointerException
+	 *             Thrown if {@link type} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link type} is neither a target nor a source, or
+	 *             if {@link count} is negative.
+	 */
+	public static GlowSignalTable linear(GlowType type, int count)
+			throws NullPointerException, IllegalArgumentException {
+		if (count < 0)
+			throw new IllegalArgumentException("count");
+
+		final int[] numbers = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			numbers[i] = i;
+		}
+
+		return new GlowSignalTable(type, numbers, count);
+	}
+
+	/**
+	 * Decodes a table from an encoded sequence of signals, as written by
+	 * {@link #encode(OutputStream, Tag)} or by a {@link Sequence} containing
+	 * {@link GlowSignal} objects. The sequence must use definite lengths.
+	 * 
+	 * @param type
+	 *            The type of the signals, either {@link GlowType#TARGET} or
+	 *            {@link GlowType#SOURCE}.
+	 * @param data
+	 *            The array containing the encoded sequence, including its
+	 *            application tag.
+	 * @param offset
+	 *            The index of the first byte of the sequence.
+	 * @param length
+	 *            The number of bytes to decode.
+	 * @return The decoded table.
+	 * @throws NullPointerException
+	 *             Thrown if {@link type} or {@link data} is <i>null</i>.
+	 * @throws NoSuchElementException
+	 *             Thrown if the encoded data is truncated.
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the data contains an indefinite length.
+	 */
+	public static GlowSignalTable decode(GlowType type, byte[] data,
+			int offset, int length) throws NullPointerException,
+			NoSuchElementException, UnsupportedOperationException {
+		Assert.AssertNotNull(data, "data");
+
+		final GlowTableDecoder decoder = new GlowTableDecoder(data, offset,
+				length);
+		final int numberTag = GlowTableDecoder
+				.identifier(GlowTags.Signal.NUMBER);
+		int[] numbers = new int[64];
+		int count = 0;
+
+		decoder.tag();
+		decoder.end();
+		decoder.tag();
+
+		final int end = decoder.end();
+
+		while (decoder.position() < end) {
+			decoder.tag();
+
+			final int elementEnd = decoder.end();
+
+			decoder.tag();
+
+			final int innerEnd = decoder.end();
+
+			while (decoder.position() < innerEnd) {
+				final int tag = decoder.tag();
+				final int leafEnd = decoder.end();
+
+				if (tag == numberTag) {
+					if (count == numbers.length) {
+						numbers = Arrays.copyOf(numbers, count << 1);
+					}
+
+					numbers[count++] = (int) decoder.integer();
+				}
+
+				decoder.seek(leafEnd);
+			}
+
+			decoder.seek(elementEnd);
+		}
+
+		return new GlowSignalTable(type, numbers, count);
+	}
+
+	/**
+	 * Creates a table from the signals contained in a sequence.
+	 * 
+	 * @param type
+	 *            The type of the signals, either {@link GlowType#TARGET} or
+	 *            {@link GlowType#SOURCE}.
+	 * @param sequence
+	 *            The sequence containing {@link GlowSignal} objects. Signals
+	 *            without a number are skipped.
+	 * @return The new table.
+	 * @throws NullPointerException
+	 *             Thrown if {@link type} or {@link sequence} is <i>null</i>.
+	 */
+	public static GlowSignalTable read(GlowType type, Sequence sequence)
+			throws NullPointerException {
+		Assert.AssertNotNull(sequence, "sequence");
+
+		final int[] numbers = new int[sequence.size()];
+		int count = 0;
+
+		for (Iterator<Node> it = sequence.iterator(); it.hasNext(); /* Nothing */) {
+			final Node node = it.next();
+
+			if (node instanceof GlowSignal) {
+				final Integer number = ((GlowSignal) node).number();
+
+				if (number != null) {
+					numbers[count++] = number;
+				}
+			}
+		}
+
+		return new GlowSignalTable(type, numbers, count);
+	}
+
+	/**
+	 * Creates the node which represents this table within a matrix.
+	 * 
+	 * @param tag
+	 *            The application tag of the node.
+	 * @return The new node.
+	 */
+	GlowTableNode<GlowSignalTable> node(Tag tag) {
+		return new GlowTableNode<GlowSignalTable>(tag, this, payload);
+	}
+
+	/**
+	 * Encodes this table as a sequence of signals.
+	 * 
+	 * @param output
+	 *            The stream to write the encoded table to.
+	 * @param tag
+	 *            The application tag of the sequence.
+	 * @throws NullPointerException
+	 *             Thrown if {@link output} or {@link tag} is <i>null</i>.
+	 */
+	public void encode(OutputStream output, Tag tag)
+			throws NullPointerException {
+		node(tag).encode(output);
+	}
+
+	/**
+	 * Gets the index of a signal number.
+	 * 
+	 * @param number
+	 *            The signal number to look for.
+	 * @return The index of the signal or -1, if the table does not contain
+	 *         the number.
+	 */
+	public int indexOf(int number) {
+		if (sorted) {
+			final int index = Arrays.binarySearch(numbers, number);
+			return index >= 0 ? index : -1;
+		}
+
+		for (int i = 0; i < numbers.length; i++) {
+			if (numbers[i] == number) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Gets the signal number at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the signal.
+	 * @return The signal number.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public int number(int index) throws IndexOutOfBoundsException {
+		return numbers[index];
+	}
+
+	/**
+	 * Gets the number of signals.
+	 * 
+	 * @return The number of signals.
+	 */
+	public int size() {
+		return numbers.length;
+	}
+
+	/**
+	 * Creates a {@link Sequence} containing a {@link GlowTarget} or
+	 * {@link GlowSource} for each signal of this table.
+	 * 
+	 * @param tag
+	 *            The application tag of the sequence.
+	 * @return The new sequence.
+	 * @throws NullPointerException
+	 *             Thrown if {@link tag} is <i>null</i>.
+	 */
+	public Sequence toSequence(Tag tag) throws NullPointerException {
+		final Sequence sequence = new Sequence(tag);
+
+		for (int i = 0; i < numbers.length; i++) {
+			sequence.insert(type == GlowType.TARGET ? new GlowTarget(
+					numbers[i]) : new GlowSource(numbers[i]));
+		}
+
+		return sequence;
+	}
+
+	/**
+	 * Gets the type of the signals of this table.
+	 * 
+	 * @return Either {@link GlowType#TARGET} or {@link GlowType#SOURCE}.
+	 */
+	public GlowType type() {
+		return type;
+	}
+}
@@ -0,0 +1,666 @@
+package libember.glow;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+import libember.ber.Encoding;
+import libember.ber.Oid;
+import libember.dom.AsyncDomReader;
+import libember.dom.Node;
+import libember.util.Assert;
+import libember.util.ByteStream;
+
+/**
+ * A snapshot of a complete glow tree stored in a file, which can be reopened
+ * by mapping the file into memory. Single elements or subtrees are decoded on
+ * demand, without reading the rest of the file.
+ * <p>
+ * The file contains a header, the payload and an index. The payload is the
+ * BER encoding of a {@link GlowRootElementCollection} which contains one
+ * qualified element with all properties of each element of the tree, but
+ * without its children. The index maps the path of each element to the
+ * position of its encoding within the payload. It is sorted by path, so that
+ * an element is located by a binary search within the mapped file and the
+ * descendants of an element directly follow the element itself.
+ * </p>
+ * <p>
+ * The encoded elements may also be passed on without decoding them, see
+ * {@link #encoded(int)}. Since the file is mapped as a whole, a snapshot is
+ * limited to 2 GB. An open snapshot may be read by several threads at the
+ * same time.
+ * </p>
+ */
+public final class GlowSnapshot implements Closeable {
+	/**
+	 * The signature at the beginning of a snapshot file, "EMBS".
+	 */
+	private final static int MAGIC = 0x454D4253;
+	private final static int VERSION = 1;
+
+	private final static int HEADER_SIZE = 48;
+	private final static int RECORD_SIZE = 16;
+	private final static int FLUSH_SIZE = 1 << 16;
+
+	/**
+	 * The encoded length of a BER length using the long form with four length
+	 * octets, which is used for the payload since its length is not known in
+	 * advance.
+	 */
+	private final static int FIXED_LENGTH_SIZE = 5;
+
+	/**
+	 * Orders paths lexicographically, so the descendants of a path follow the
+	 * path itself.
+	 */
+	private final static Comparator<Oid> PATH_ORDER = new Comparator<Oid>() {
+		public int compare(Oid first, Oid second) {
+			final int length = Math.min(first.size(), second.size());
+
+			for (int i = 0; i < length; i++) {
+				final int a = first.get(i);
+				final int b = second.get(i);
+
+				if (a != b) {
+					return a < b ? -1 : 1;
+				}
+			}
+
+			return first.size() - second.size();
+		}
+	};
+
+	/**
+	 * Collects the encoded elements while a snapshot is written.
+	 */
+	private final static class Writer {
+		private final FileChannel channel;
+		private final ByteStream stream = new ByteStream(FLUSH_SIZE * 2);
+		private final ArrayList<Oid> paths = new ArrayList<Oid>();
+		private long[] offsets = new long[64];
+		private int[] lengths = new int[64];
+		private long position;
+
+		/**
+		 * Initializes a new instance of the {@link Writer} class.
+		 * 
+		 * @param channel
+		 *            The channel to write to.
+		 * @param position
+		 *            The file position of the first element.
+		 */
+		Writer(FileChannel channel, long position) {
+			this.channel = channel;
+			this.position = position;
+		}
+
+		/**
+		 * Appends an element and its descendants.
+		 * 
+		 * @param element
+		 *            The element to append.
+		 * @param path
+		 *            The path of the element.
+		 */
+		void append(GlowContentElement element, Oid path) throws IOException {
+			final GlowContentElement copy = GlowTreeDiff.qualifiedCopy(element,
+					path);
+
+			if (copy != null) {
+				final int start = stream.size();
+
+				copy.encode(stream);
+
+				final int count = paths.size();
+
+				if (count == offsets.length) {
+					offsets = Arrays.copyOf(offsets, count * 2);
+					lengths = Arrays.copyOf(lengths, count * 2);
+				}
+
+				paths.add(path);
+				offsets[count] = position + start;
+				lengths[count] = stream.size() - start;
+
+				if (stream.size() >= FLUSH_SIZE) {
+					flush();
+				}
+			}
+
+			final GlowElementCollection children = element.children(false);
+
+			if (children != null) {
+				appendAll(children, path);
+			}
+		}
+
+		/**
+		 * Appends all elements of a collection and their descendants.
+		 * 
+		 * @param collection
+		 *            The collection to append.
+		 * @param path
+		 *            The path of the element owning the collection.
+		 */
+		void appendAll(GlowContainer collection, Oid path) throws IOException {
+			for (Iterator<Node> it = collection.iterator(); it.hasNext(); /* Nothing */) {
+				final Node node = it.next();
+
+				if (node instanceof GlowContentElement) {
+					final Oid child = GlowTree.pathOf(
+							(GlowContentElement) node, path);
+
+					if (child != null) {
+						append((GlowContentElement) node, child);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Writes the buffered bytes to the file.
+		 */
+		void flush() throws IOException {
+			write(channel, ByteBuffer.wrap(stream.buffer(), 0, stream.size()),
+					position);
+			position += stream.size();
+			stream.clear();
+		}
+	}
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final int count;
+	private final int payloadOffset;
+	private final int payloadLength;
+	private final int indexOffset;
+	private final int pathsOffset;
+
+	/**
+	 * Initializes a new instance of the {@link GlowSnapshot} class.
+	 * 
+	 * @param file
+	 *            The opened file.
+	 * @throws IOException
+	 *             Thrown if the file cannot be mapped or is not a valid
+	 *             snapshot.
+	 */
+	private GlowSnapshot(RandomAccessFile file) throws IOException {
+		final long size = file.length();
+
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Snapshot exceeds 2 GB");
+
+		if (size < HEADER_SIZE)
+			throw new IOException("Not a glow snapshot");
+
+		this.file = file;
+		this.buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+				size);
+
+		if (buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a glow snapshot");
+
+		if (buffer.getInt(4) != VERSION)
+			throw new IOException("Unsupported snapshot version "
+					+ buffer.getInt(4));
+
+		this.count = buffer.getInt(8);
+		this.payloadOffset = (int) buffer.getLong(16);
+		this.payloadLength = (int) buffer.getLong(24);
+		this.indexOffset = (int) buffer.getLong(32);
+		this.pathsOffset = (int) buffer.getLong(40);
+
+		if (count < 0 || payloadOffset < HEADER_SIZE
+				|| payloadLength < 0 || indexOffset < payloadOffset + payloadLength
+				|| (long) indexOffset + (long) count * RECORD_SIZE > pathsOffset
+				|| pathsOffset > size)
+			throw new IOException("Corrupt snapshot header");
+	}
+
+	/**
+	 * Opens a snapshot file for reading.
+	 * 
+	 * @param file
+	 *            The snapshot file.
+	 * @return The opened snapshot, which must be closed when no longer
+	 *         required.
+	 * @throws IOException
+	 *             Thrown if the file cannot be opened or is not a valid
+	 *             snapshot.
+	 * @throws NullPointerException
+	 *             Thrown if {@link file} is <i>null</i>.
+	 */
+	public static GlowSnapshot open(File file) throws IOException,
+			NullPointerException {
+		Assert.AssertNotNull(file, "file");
+
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+		try {
+			return new GlowSnapshot(raf);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes a tree to a snapshot file, replacing the file if it exists.
+	 * 
+	 * @param root
+	 *            The root collection of the tree, usually a
+	 *            {@link GlowRootElementCollection}. It may contain nested as
+	 *            well as qualified elements.
+	 * @param file
+	 *            The file to write.
+	 * @return The number of elements written.
+	 * @throws IOException
+	 *             Thrown if writing the file fails.
+	 * @throws NullPointerException
+	 *             Thrown if {@link root} or {@link file} is <i>null</i>.
+	 */
+	public static int write(GlowContainer root, File file) throws IOException,
+			NullPointerException {
+		Assert.AssertNotNull(root, "root");
+		Assert.AssertNotNull(file, "file");
+
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+		try {
+			final FileChannel channel = raf.getChannel();
+			final GlowRootElementCollection collection = GlowRootElementCollection
+					.create();
+			final ByteStream header = new ByteStream();
+
+			raf.setLength(0);
+
+			Encoding.encode(header, collection.applicationTag().toContainer());
+			final int outerLengthPosition = header.size();
+			appendFixedLength(header, 0);
+			Encoding.encode(header, collection.typeTag().toContainer());
+			final int innerLengthPosition = header.size();
+			appendFixedLength(header, 0);
+
+			final long payloadOffset = HEADER_SIZE;
+			final Writer writer = new Writer(channel, payloadOffset
+					+ header.size());
+
+			writer.appendAll(root, Oid.EMPTY);
+			writer.flush();
+
+			final long payloadLength = writer.position - payloadOffset;
+			final long innerLength = payloadLength - header.size();
+
+			if (payloadLength > Integer.MAX_VALUE)
+				throw new IOException("Snapshot exceeds 2 GB");
+
+			final byte[] prefix = header.toArray();
+
+			setFixedLength(prefix, innerLengthPosition, (int) innerLength);
+			setFixedLength(prefix, outerLengthPosition, (int) (innerLength
+					+ prefix.length - outerLengthPosition - FIXED_LENGTH_SIZE));
+			write(channel, ByteBuffer.wrap(prefix), payloadOffset);
+
+			final int count = writer.paths.size();
+			final Integer[] order = new Integer[count];
+
+			for (int i = 0; i < count; i++) {
+				order[i] = i;
+			}
+
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer first, Integer second) {
+					return PATH_ORDER.compare(writer.paths.get(first),
+							writer.paths.get(second));
+				}
+			});
+
+			final long indexOffset = writer.position;
+			final ByteBuffer records = ByteBuffer.allocate(count * RECORD_SIZE);
+			final ByteStream paths = new ByteStream();
+
+			for (int i = 0; i < count; i++) {
+				final int index = order[i];
+				final Oid path = writer.paths.get(index);
+
+				records.putLong(writer.offsets[index]);
+				records.putInt(writer.lengths[index]);
+				records.putInt(paths.size());
+
+				appendInt(paths, path.size());
+
+				for (int j = 0; j < path.size(); j++) {
+					appendInt(paths, path.get(j));
+				}
+			}
+
+			final long pathsOffset = indexOffset + count * RECORD_SIZE;
+
+			if (pathsOffset + paths.size() > Integer.MAX_VALUE)
+				throw new IOException("Snapshot exceeds 2 GB");
+
+			records.flip();
+			write(channel, records, indexOffset);
+			write(channel, ByteBuffer.wrap(paths.buffer(), 0, paths.size()),
+					pathsOffset);
+
+			final ByteBuffer fileHeader = ByteBuffer.allocate(HEADER_SIZE);
+
+			fileHeader.putInt(MAGIC);
+			fileHeader.putInt(VERSION);
+			fileHeader.putInt(count);
+			fileHeader.putInt(0);
+			fileHeader.putLong(payloadOffset);
+			fileHeader.putLong(payloadLength);
+			fileHeader.putLong(indexOffset);
+			fileHeader.putLong(pathsOffset);
+			fileHeader.flip();
+			write(channel, fileHeader, 0);
+			return count;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Appends a BER length of zero in the long form with four length octets,
+	 * to be set later by {@link #setFixedLength(byte[], int, int)}.
+	 */
+	private static void appendFixedLength(ByteStream stream, int length) {
+		stream.append(0x84);
+		appendInt(stream, length);
+	}
+
+	/**
+	 * Appends a big-endian <i>int</i>.
+	 */
+	private static void appendInt(ByteStream stream, int value) {
+		stream.append((value >>> 24) & 0xFF);
+		stream.append((value >>> 16) & 0xFF);
+		stream.append((value >>> 8) & 0xFF);
+		stream.append(value & 0xFF);
+	}
+
+	/**
+	 * Sets a length written by {@link #appendFixedLength(ByteStream, int)}.
+	 */
+	private static void setFixedLength(byte[] bytes, int position, int length) {
+		bytes[position + 1] = (byte) (length >>> 24);
+		bytes[position + 2] = (byte) (length >>> 16);
+		bytes[position + 3] = (byte) (length >>> 8);
+		bytes[position + 4] = (byte) length;
+	}
+
+	/**
+	 * Writes a buffer completely at the specified file position.
+	 */
+	private static void write(FileChannel channel, ByteBuffer source,
+			long position) throws IOException {
+		while (source.hasRemaining()) {
+			position += channel.write(source, position);
+		}
+	}
+
+	/**
+	 * Validates an index.
+	 * 
+	 * @param index
+	 *            The index to validate.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	private void check(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("index");
+	}
+
+	/**
+	 * Compares the path of the element at the specified index with another
+	 * path, using the order of the index.
+	 * 
+	 * @param index
+	 *            The index of the element.
+	 * @param path
+	 *            The path to compare with.
+	 * @param length
+	 *            The number of sub-identifiers of {@link path} to compare.
+	 * @return A negative value, zero or a positive value if the path of the
+	 *         element is less than, equal to or greater than {@link path}.
+	 */
+	private int compare(int index, Oid path, int length) {
+		final int position = pathPosition(index);
+		final int size = buffer.getInt(position);
+		final int common = Math.min(size, length);
+
+		for (int i = 0; i < common; i++) {
+			final int a = buffer.getInt(position + 4 + i * 4);
+			final int b = path.get(i);
+
+			if (a != b) {
+				return a < b ? -1 : 1;
+			}
+		}
+
+		return size - length;
+	}
+
+	/**
+	 * Decodes an encoded element.
+	 * 
+	 * @param offset
+	 *            The position of the element within the file.
+	 * @param length
+	 *            The encoded length of the element.
+	 * @return The decoded node.
+	 */
+	private Node decode(int offset, int length) {
+		final AsyncDomReader reader = new AsyncDomReader(GlowTree.FACTORY);
+
+		for (int i = 0; i < length; i++) {
+			reader.read(buffer.get(offset + i) & 0xFF);
+		}
+
+		return reader.root();
+	}
+
+	/**
+	 * Gets the file position of the path of the element at the specified
+	 * index.
+	 */
+	private int pathPosition(int index) {
+		return pathsOffset
+				+ buffer.getInt(indexOffset + index * RECORD_SIZE + 12);
+	}
+
+	/**
+	 * Releases the file. The mapping itself is released by the garbage
+	 * collector.
+	 */
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Gets the encoded qualified element at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the element.
+	 * @return A read-only buffer containing the BER encoding of the element.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public ByteBuffer encoded(int index) throws IndexOutOfBoundsException {
+		check(index);
+
+		final int record = indexOffset + index * RECORD_SIZE;
+		final ByteBuffer slice = buffer.duplicate();
+		final int offset = (int) buffer.getLong(record);
+
+		slice.position(offset);
+		slice.limit(offset + buffer.getInt(record + 8));
+		return slice.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Gets the index of the element with the specified path.
+	 * 
+	 * @param path
+	 *            The path of the element.
+	 * @return The index of the element or -1, if the snapshot does not
+	 *         contain an element with the specified path.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} is <i>null</i>.
+	 */
+	public int indexOf(Oid path) throws NullPointerException {
+		Assert.AssertNotNull(path, "path");
+
+		int low = 0;
+		int high = count - 1;
+
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int result = compare(middle, path, path.size());
+
+			if (result < 0) {
+				low = middle + 1;
+			} else if (result > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Gets the path of the element at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the element.
+	 * @return The path of the element.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public Oid path(int index) throws IndexOutOfBoundsException {
+		check(index);
+
+		final int position = pathPosition(index);
+		final int size = buffer.getInt(position);
+		final ArrayList<Integer> items = new ArrayList<Integer>(size);
+
+		for (int i = 0; i < size; i++) {
+			items.add(buffer.getInt(position + 4 + i * 4));
+		}
+
+		return new Oid(items);
+	}
+
+	/**
+	 * Decodes the element at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the element.
+	 * @return The qualified element, without children.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public GlowContentElement read(int index) throws IndexOutOfBoundsException {
+		check(index);
+
+		final int record = indexOffset + index * RECORD_SIZE;
+
+		return (GlowContentElement) decode((int) buffer.getLong(record),
+				buffer.getInt(record + 8));
+	}
+
+	/**
+	 * Decodes the element with the specified path.
+	 * 
+	 * @param path
+	 *            The path of the element.
+	 * @return The qualified element, without children, or <i>null</i> if the
+	 *         snapshot does not contain the element.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} is <i>null</i>.
+	 */
+	public GlowContentElement read(Oid path) throws NullPointerException {
+		final int index = indexOf(path);
+		return index >= 0 ? read(index) : null;
+	}
+
+	/**
+	 * Decodes the complete tree.
+	 * 
+	 * @return The root collection containing a qualified element for each
+	 *         element of the tree.
+	 */
+	public GlowRootElementCollection readAll() {
+		return (GlowRootElementCollection) decode(payloadOffset, payloadLength);
+	}
+
+	/**
+	 * Decodes an element and all its descendants.
+	 * 
+	 * @param path
+	 *            The path of the element.
+	 * @return The root collection containing the qualified element and its
+	 *         descendants, which is empty if the snapshot does not contain the
+	 *         element.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} is <i>null</i>.
+	 */
+	public GlowRootElementCollection readSubtree(Oid path)
+			throws NullPointerException {
+		Assert.AssertNotNull(path, "path");
+
+		final GlowRootElementCollection result = GlowRootElementCollection
+				.create();
+		final int length = path.size();
+		int index = indexOf(path);
+
+		if (index >= 0) {
+			do {
+				result.insert(read(index++));
+			} while (index < count
+					&& buffer.getInt(pathPosition(index)) > length
+					&& prefixMatches(index, path, length));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Tests whether the path of the element at the specified index starts
+	 * with the specified path.
+	 */
+	private boolean prefixMatches(int index, Oid path, int length) {
+		final int position = pathPosition(index) + 4;
+
+		for (int i = 0; i < length; i++) {
+			if (buffer.getInt(position + i * 4) != path.get(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Gets the number of elements stored in this snapshot.
+	 * 
+	 * @return The number of elements.
+	 */
+	public int size() {
+		return count;
+	}
+}
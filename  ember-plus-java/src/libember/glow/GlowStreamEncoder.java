@@ -0,0 +1,349 @@
+package libember.glow;
+
+import libember.ber.Encoding;
+import libember.ber.UniversalType;
+import libember.util.Assert;
+import libember.util.ByteStream;
+
+/**
+ * Encodes a {@link GlowStreamCollection} directly from primitive arrays of
+ * stream identifiers and values, without building a DOM. The output is
+ * identical to the encoding of a {@link GlowStreamCollection} created via
+ * {@link GlowStreamCollection#create()} and filled with the same entries, but
+ * encoding it does not allocate any objects per entry. The encoded bytes are
+ * written to an internal buffer which is reused by subsequent calls.
+ * Packed streams are encoded from the blocks of {@link GlowStreamPacker}
+ * instances, with one octet string entry per packer.
+ * <p>
+ * This class is meant for high rate streams like audio meters, where a large
+ * number of entries is sent many times per second. An instance is not
+ * thread-safe, each sending thread should use its own encoder.
+ * </p>
+ */
+public final class GlowStreamEncoder {
+	private final static int ROOT_TAG = 0x60 | GlowTags.ROOT.number();
+	private final static int COLLECTION_TAG = 0x60 | GlowType.STREAMCOLLECTION
+			.value();
+	private final static int ENTRY_TAG = 0x60 | GlowType.STREAMENTRY.value();
+	private final static int ELEMENT_TAG = 0xA0 | GlowTags.ELEMENT_DEFAULT
+			.number();
+	private final static int IDENTIFIER_TAG = 0xA0 | GlowTags.StreamEntry.STREAMIDENTIFIER
+			.number();
+	private final static int VALUE_TAG = 0xA0 | GlowTags.StreamEntry.STREAMVALUE
+			.number();
+	private final static int INTEGER = UniversalType.INTEGER.value();
+	private final static int OCTETSTRING = UniversalType.OCTETSTRING
+			.value();
+	private final static int REAL = UniversalType.REAL.value();
+
+	private final ByteStream stream;
+
+	/**
+	 * Initializes a new instance of the {@link GlowStreamEncoder} class.
+	 */
+	public GlowStreamEncoder() {
+		this(4096);
+	}
+
+	/**
+	 * Initializes a new instance of the {@link GlowStreamEncoder} class.
+	 * 
+	 * @param capacity
+	 *            The initial capacity of the internal buffer. The buffer grows
+	 *            if necessary, but is never shrunk.
+	 */
+	public GlowStreamEncoder(int capacity) {
+		stream = new ByteStream(capacity);
+	}
+
+	/**
+	 * Validates the arguments passed to one of the encode methods.
+	 * 
+	 * @param identifiers
+	 *            The stream identifiers.
+	 * @param values
+	 *            The length of the value array.
+	 * @param count
+	 *            The number of entries to encode.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link count} is negative or exceeds one of the
+	 *             arrays.
+	 */
+	private static void check(int[] identifiers, int values, int count)
+			throws IllegalArgumentException {
+		if (count < 0 || count > identifiers.length || count > values)
+			throw new IllegalArgumentException("count");
+	}
+
+	/**
+	 * Gets the encoded length of a stream identifier. Identifiers are encoded
+	 * as <i>long</i> values, exactly like the {@link libember.ber.Value} used
+	 * by {@link GlowStreamEntry}.
+	 * 
+	 * @param identifier
+	 *            The stream identifier.
+	 * @return The number of bytes required to encode the identifier.
+	 */
+	private static int identifierLength(int identifier) {
+		return Encoding.encodedLength((long) identifier);
+	}
+
+	/**
+	 * Gets the encoded length of a length field.
+	 * 
+	 * @param length
+	 *            The length to encode.
+	 * @return The number of bytes required to encode the length.
+	 */
+	private static int lengthOf(int length) {
+		return length < 0x80 ? 1 : 1 + Encoding.encodedLength(length);
+	}
+
+	/**
+	 * Gets the encoded length of a context-specific leaf.
+	 * 
+	 * @param payload
+	 *            The length of the encoded value.
+	 * @return The encoded length of the leaf, including its tag.
+	 */
+	private static int leafLength(int payload) {
+		final int inner = 1 + lengthOf(payload) + payload;
+		return 1 + lengthOf(inner) + inner;
+	}
+
+	/**
+	 * Gets the encoded length of a stream entry.
+	 * 
+	 * @param identifier
+	 *            The stream identifier of the entry.
+	 * @param payload
+	 *            The length of the encoded value.
+	 * @return The encoded length of the entry, including its tags.
+	 */
+	private static int entryLength(int identifier, int payload) {
+		final int inner = leafLength(identifierLength(identifier))
+				+ leafLength(payload);
+		final int outer = 1 + lengthOf(inner) + inner;
+		return 1 + lengthOf(outer) + outer;
+	}
+
+	/**
+	 * Writes a length field.
+	 * 
+	 * @param length
+	 *            The length to write.
+	 */
+	private void writeLength(int length) {
+		if (length < 0x80) {
+			stream.append(length);
+		} else {
+			stream.append(0x80 | Encoding.encodedLength(length));
+			Encoding.encode(stream, length);
+		}
+	}
+
+	/**
+	 * Writes the tags of the root and the stream collection.
+	 * 
+	 * @param entries
+	 *            The accumulated encoded length of all entries.
+	 */
+	private void writeHeader(int entries) {
+		stream.clear();
+		stream.append(ROOT_TAG);
+		writeLength(1 + lengthOf(entries) + entries);
+		stream.append(COLLECTION_TAG);
+		writeLength(entries);
+	}
+
+	/**
+	 * Writes the tags of a stream entry and its identifier leaf.
+	 * 
+	 * @param identifier
+	 *            The stream identifier.
+	 * @param type
+	 *            The universal type of the value.
+	 * @param payload
+	 *            The length of the encoded value.
+	 */
+	private void writeEntry(int identifier, int type, int payload) {
+		final int identifierLength = identifierLength(identifier);
+		final int inner = leafLength(identifierLength) + leafLength(payload);
+
+		stream.append(ELEMENT_TAG);
+		writeLength(1 + lengthOf(inner) + inner);
+		stream.append(ENTRY_TAG);
+		writeLength(inner);
+
+		stream.append(IDENTIFIER_TAG);
+		writeLength(2 + identifierLength);
+		stream.append(INTEGER);
+		stream.append(identifierLength);
+		Encoding.encode(stream, (long) identifier);
+
+		stream.append(VALUE_TAG);
+		writeLength(1 + lengthOf(payload) + payload);
+		stream.append(type);
+		writeLength(payload);
+	}
+
+	/**
+	 * Gets the internal buffer containing the last encoded collection. Only
+	 * the first {@link #size()} bytes are valid. The buffer is overwritten by
+	 * the next call to one of the encode methods.
+	 * 
+	 * @return The internal buffer.
+	 */
+	public byte[] buffer() {
+		return stream.buffer();
+	}
+
+	/**
+	 * Encodes a stream collection containing values of type <i>double</i>.
+	 * 
+	 * @param identifiers
+	 *            The stream identifiers.
+	 * @param values
+	 *            The values, where <code>values[i]</code> belongs to
+	 *            <code>identifiers[i]</code>.
+	 * @param count
+	 *            The number of entries to encode.
+	 * @return The number of encoded bytes.
+	 * @throws NullPointerException
+	 *             Thrown if {@link identifiers} or {@link values} is
+	 *             <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link count} is negative or exceeds the length of
+	 *             one of the arrays.
+	 */
+	public int encode(int[] identifiers, double[] values, int count)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(identifiers, "identifiers");
+		Assert.AssertNotNull(values, "values");
+		check(identifiers, values.length, count);
+
+		int entries = 0;
+
+		for (int i = 0; i < count; i++) {
+			entries += entryLength(identifiers[i],
+					Encoding.encodedLength(values[i]));
+		}
+
+		writeHeader(entries);
+
+		for (int i = 0; i < count; i++) {
+			final double value = values[i];
+
+			writeEntry(identifiers[i], REAL, Encoding.encodedLength(value));
+			Encoding.encode(stream, value);
+		}
+
+		return stream.size();
+	}
+
+	/**
+	 * Encodes a stream collection containing integer values.
+	 * 
+	 * @param identifiers
+	 *            The stream identifiers.
+	 * @param values
+	 *            The values, where <code>values[i]</code> belongs to
+	 *            <code>identifiers[i]</code>.
+	 * @param count
+	 *            The number of entries to encode.
+	 * @return The number of encoded bytes.
+	 * @throws NullPointerException
+	 *             Thrown if {@link identifiers} or {@link values} is
+	 *             <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link count} is negative or exceeds the length of
+	 *             one of the arrays.
+	 */
+	public int encode(int[] identifiers, long[] values, int count)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(identifiers, "identifiers");
+		Assert.AssertNotNull(values, "values");
+		check(identifiers, values.length, count);
+
+		int entries = 0;
+
+		for (int i = 0; i < count; i++) {
+			entries += entryLength(identifiers[i],
+					Encoding.encodedLength(values[i]));
+		}
+
+		writeHeader(entries);
+
+		for (int i = 0; i < count; i++) {
+			final long value = values[i];
+
+			writeEntry(identifiers[i], INTEGER, Encoding.encodedLength(value));
+			Encoding.encode(stream, value);
+		}
+
+		return stream.size();
+	}
+
+	/**
+	 * Encodes a stream collection containing one octet string entry per
+	 * packer, each holding the current block of the packer.
+	 * 
+	 * @param packers
+	 *            The packers to encode.
+	 * @param count
+	 *            The number of packers to encode.
+	 * @return The number of encoded bytes.
+	 * @throws NullPointerException
+	 *             Thrown if {@link packers} or one of the first {@link count}
+	 *             packers is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link count} is negative or exceeds the length of
+	 *             the array.
+	 */
+	public int encode(GlowStreamPacker[] packers, int count)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(packers, "packers");
+
+		if (count < 0 || count > packers.length)
+			throw new IllegalArgumentException("count");
+
+		int entries = 0;
+
+		for (int i = 0; i < count; i++) {
+			final GlowStreamPacker packer = packers[i];
+
+			Assert.AssertNotNull(packer, "packer");
+			entries += entryLength(packer.streamIdentifier(), packer.size());
+		}
+
+		writeHeader(entries);
+
+		for (int i = 0; i < count; i++) {
+			final GlowStreamPacker packer = packers[i];
+			final int size = packer.size();
+
+			writeEntry(packer.streamIdentifier(), OCTETSTRING, size);
+			stream.append(packer.buffer(), 0, size);
+		}
+
+		return stream.size();
+	}
+
+	/**
+	 * Gets the number of bytes of the last encoded collection.
+	 * 
+	 * @return The number of valid bytes in {@link #buffer()}.
+	 */
+	public int size() {
+		return stream.size();
+	}
+
+	/**
+	 * Copies the last encoded collection into a new array.
+	 * 
+	 * @return The encoded collection.
+	 */
+	public byte[] toArray() {
+		return stream.toArray();
+	}
+}
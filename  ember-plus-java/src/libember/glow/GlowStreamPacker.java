@@ -0,0 +1,264 @@
+package libember.glow;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import libember.ber.Octets;
+import libember.util.Assert;
+
+/**
+ * Packs the values of all parameters sharing a stream identifier into one
+ * pre-allocated block of bytes, which is published as the octet string of a
+ * single {@link GlowStreamEntry}. This is the provider side counterpart of
+ * {@link GlowStreamUnpacker}.
+ * <p>
+ * Each parameter is assigned a slot with a {@link StreamFormat} and a byte
+ * offset, which should also be announced to the consumers via
+ * {@link GlowParameterBase#setStreamDescriptor(StreamFormat, int)}. Setting a
+ * value writes it into the block immediately, so publishing a tick only
+ * copies the block, either via {@link #toEntry()} or, without creating any
+ * objects, via {@link GlowStreamEncoder#encode(GlowStreamPacker[], int)}.
+ * </p>
+ * <p>
+ * An instance is not thread-safe.
+ * </p>
+ */
+public final class GlowStreamPacker {
+	private final int streamIdentifier;
+	private StreamFormat[] formats = new StreamFormat[16];
+	private int[] offsets = new int[16];
+	private int count;
+	private byte[] data = new byte[0];
+	private int size;
+	private ByteBuffer bigEndian = ByteBuffer.wrap(data);
+	private ByteBuffer littleEndian = ByteBuffer.wrap(data).order(
+			ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Initializes a new instance of the {@link GlowStreamPacker} class.
+	 * 
+	 * @param streamIdentifier
+	 *            The stream identifier shared by all parameters packed by this
+	 *            instance.
+	 */
+	public GlowStreamPacker(int streamIdentifier) {
+		this.streamIdentifier = streamIdentifier;
+	}
+
+	/**
+	 * Gets the buffer with the byte order of the format of a slot.
+	 * 
+	 * @param slot
+	 *            The slot to get the buffer for.
+	 * @return The buffer to write the value with.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link slot} does not exist.
+	 */
+	private ByteBuffer buffer(int slot) throws IndexOutOfBoundsException {
+		if (slot < 0 || slot >= count)
+			throw new IndexOutOfBoundsException("slot");
+
+		return formats[slot].byteOrder() == ByteOrder.LITTLE_ENDIAN ? littleEndian
+				: bigEndian;
+	}
+
+	/**
+	 * Adds a slot for a value with the specified format and offset. The block
+	 * grows to contain the value; bytes which are not covered by a slot are
+	 * zero.
+	 * 
+	 * @param format
+	 *            The format of the encoded value.
+	 * @param offset
+	 *            The byte offset of the encoded value within the block.
+	 * @return The index of the slot.
+	 * @throws NullPointerException
+	 *             Thrown if {@link format} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link offset} is negative.
+	 */
+	public int add(StreamFormat format, int offset)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(format, "format");
+
+		if (offset < 0)
+			throw new IllegalArgumentException("offset");
+
+		if (count == formats.length) {
+			formats = Arrays.copyOf(formats, count << 1);
+			offsets = Arrays.copyOf(offsets, count << 1);
+		}
+
+		final int limit = offset + format.size();
+
+		if (limit > data.length) {
+			data = Arrays.copyOf(data, Math.max(limit, data.length << 1));
+			bigEndian = ByteBuffer.wrap(data);
+			littleEndian = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		size = Math.max(size, limit);
+		formats[count] = format;
+		offsets[count] = offset;
+		return count++;
+	}
+
+	/**
+	 * Adds a slot for a parameter, using its {@link GlowStreamDescriptor}.
+	 * 
+	 * @param parameter
+	 *            The parameter to add.
+	 * @return The index of the slot.
+	 * @throws NullPointerException
+	 *             Thrown if {@link parameter} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if the parameter has no complete stream descriptor,
+	 *             or if its stream identifier differs from the one of this
+	 *             packer.
+	 */
+	public int add(GlowParameterBase parameter) throws NullPointerException,
+			IllegalArgumentException {
+		Assert.AssertNotNull(parameter, "parameter");
+
+		final Integer identifier = parameter.streamIdentifier();
+		final GlowStreamDescriptor descriptor = parameter.streamDescriptor();
+
+		if (identifier == null || identifier.intValue() != streamIdentifier)
+			throw new IllegalArgumentException(
+					"The parameter uses a different stream identifier");
+
+		if (descriptor == null || descriptor.format() == null
+				|| descriptor.offset() == null)
+			throw new IllegalArgumentException(
+					"The parameter has no stream descriptor");
+
+		return add(descriptor.format(), descriptor.offset());
+	}
+
+	/**
+	 * Gets the internal block. Only the first {@link #size()} bytes are valid.
+	 * The block is modified by subsequent calls to the set methods.
+	 * 
+	 * @return The internal block.
+	 */
+	public byte[] buffer() {
+		return data;
+	}
+
+	/**
+	 * Writes a value into the block. Values written to integer formats are
+	 * rounded to the nearest integer and truncated to the width of the format.
+	 * 
+	 * @param slot
+	 *            The slot to write.
+	 * @param value
+	 *            The value to write.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link slot} does not exist.
+	 */
+	public void set(int slot, double value) throws IndexOutOfBoundsException {
+		final ByteBuffer buffer = buffer(slot);
+		final int offset = offsets[slot];
+
+		switch (formats[slot]) {
+		case IEEEFLOAT32BIGENDIAN:
+		case IEEEFLOAT32LITTLEENDIAN:
+			buffer.putFloat(offset, (float) value);
+			break;
+		case IEEEFLOAT64BIGENDIAN:
+		case IEEEFLOAT64LITTLEENDIAN:
+			buffer.putDouble(offset, value);
+			break;
+		default:
+			set(slot, Math.round(value));
+			break;
+		}
+	}
+
+	/**
+	 * Writes an integer value into the block. The value is truncated to the
+	 * width of integer formats and converted to floating point formats.
+	 * 
+	 * @param slot
+	 *            The slot to write.
+	 * @param value
+	 *            The value to write.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link slot} does not exist.
+	 */
+	public void set(int slot, long value) throws IndexOutOfBoundsException {
+		final ByteBuffer buffer = buffer(slot);
+		final int offset = offsets[slot];
+
+		switch (formats[slot].size()) {
+		case 1:
+			buffer.put(offset, (byte) value);
+			break;
+		case 2:
+			buffer.putShort(offset, (short) value);
+			break;
+		case 4:
+			if (formats[slot] == StreamFormat.IEEEFLOAT32BIGENDIAN
+					|| formats[slot] == StreamFormat.IEEEFLOAT32LITTLEENDIAN) {
+				buffer.putFloat(offset, value);
+			} else {
+				buffer.putInt(offset, (int) value);
+			}
+			break;
+		default:
+			if (formats[slot] == StreamFormat.IEEEFLOAT64BIGENDIAN
+					|| formats[slot] == StreamFormat.IEEEFLOAT64LITTLEENDIAN) {
+				buffer.putDouble(offset, value);
+			} else {
+				buffer.putLong(offset, value);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Gets the number of valid bytes of the block, which is the end of the
+	 * slot with the highest offset.
+	 * 
+	 * @return The size of the block.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of slots.
+	 * 
+	 * @return The number of slots.
+	 */
+	public int slots() {
+		return count;
+	}
+
+	/**
+	 * Gets the stream identifier shared by all parameters of this packer.
+	 * 
+	 * @return The stream identifier.
+	 */
+	public int streamIdentifier() {
+		return streamIdentifier;
+	}
+
+	/**
+	 * Creates a {@link GlowStreamEntry} containing a copy of the current
+	 * block.
+	 * 
+	 * @return A new stream entry.
+	 */
+	public GlowStreamEntry toEntry() {
+		final ArrayList<Integer> octets = new ArrayList<Integer>(size);
+
+		for (int i = 0; i < size; i++) {
+			octets.add(data[i] & 0xFF);
+		}
+
+		return new GlowStreamEntry(streamIdentifier, new Octets(octets));
+	}
+}
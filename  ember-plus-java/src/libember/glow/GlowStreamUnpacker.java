@@ -0,0 +1,440 @@
+package libember.glow;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import libember.ber.Octets;
+import libember.ber.UniversalType;
+import libember.ber.Value;
+import libember.util.Assert;
+
+/**
+ * Extracts the values of all parameters sharing a stream identifier from the
+ * binary encoded octet string of a {@link GlowStreamEntry}. Each parameter is
+ * described by its {@link StreamFormat} and byte offset, usually taken from
+ * the {@link GlowStreamDescriptor} of the parameter, and is assigned a slot in
+ * the array returned by {@link #values()}.
+ * <p>
+ * The slots are grouped by format once, so that decoding a payload runs one
+ * tight loop per format over absolute reads of a {@link ByteBuffer} with the
+ * matching byte order. The payload is copied into an internal buffer which is
+ * reused, so decoding does not allocate any objects once the buffer has
+ * reached the size of the payload.
+ * </p>
+ * <p>
+ * An instance is not thread-safe.
+ * </p>
+ */
+public final class GlowStreamUnpacker {
+	private final static StreamFormat[] FORMATS = StreamFormat.values();
+
+	private final int streamIdentifier;
+	private StreamFormat[] formats = new StreamFormat[16];
+	private int[] offsets = new int[16];
+	private int count;
+	private double[] values = new double[0];
+	private int[][] groupOffsets;
+	private int[][] groupSlots;
+	private int[] groupLimits;
+	private byte[] data = new byte[0];
+	private ByteBuffer bigEndian = ByteBuffer.wrap(data);
+	private ByteBuffer littleEndian = ByteBuffer.wrap(data).order(
+			ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Initializes a new instance of the {@link GlowStreamUnpacker} class.
+	 * 
+	 * @param streamIdentifier
+	 *            The stream identifier shared by all parameters decoded by
+	 *            this instance.
+	 */
+	public GlowStreamUnpacker(int streamIdentifier) {
+		this.streamIdentifier = streamIdentifier;
+	}
+
+	/**
+	 * Converts an unsigned 64 bit integer into a <i>double</i>.
+	 * 
+	 * @param value
+	 *            The bits of the unsigned integer.
+	 * @return The converted value.
+	 */
+	private static double unsigned(long value) {
+		if (value >= 0) {
+			return value;
+		} else {
+			return ((value >>> 1) | (value & 1)) * 2.0;
+		}
+	}
+
+	/**
+	 * Groups the slots by format. This is done lazily, before the first decode
+	 * after a slot has been added.
+	 */
+	private void compile() {
+		final int[] sizes = new int[FORMATS.length];
+
+		for (int i = 0; i < count; i++) {
+			sizes[formats[i].ordinal()]++;
+		}
+
+		groupOffsets = new int[FORMATS.length][];
+		groupSlots = new int[FORMATS.length][];
+		groupLimits = new int[FORMATS.length];
+
+		for (int f = 0; f < FORMATS.length; f++) {
+			if (sizes[f] > 0) {
+				groupOffsets[f] = new int[sizes[f]];
+				groupSlots[f] = new int[sizes[f]];
+				sizes[f] = 0;
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			final int f = formats[i].ordinal();
+			final int index = sizes[f]++;
+
+			groupOffsets[f][index] = offsets[i];
+			groupSlots[f][index] = i;
+			groupLimits[f] = Math.max(groupLimits[f],
+					offsets[i] + formats[i].size());
+		}
+	}
+
+	/**
+	 * Reads a single value, returning {@link Double#NaN} if the value exceeds
+	 * the payload.
+	 * 
+	 * @param buffer
+	 *            The buffer with the byte order of the format.
+	 * @param format
+	 *            The format of the value.
+	 * @param offset
+	 *            The byte offset of the value.
+	 * @param length
+	 *            The length of the payload.
+	 * @return The decoded value.
+	 */
+	private static double read(ByteBuffer buffer, StreamFormat format,
+			int offset, int length) {
+		if (offset + format.size() > length) {
+			return Double.NaN;
+		}
+
+		switch (format) {
+		case UNSIGNEDINT8:
+			return buffer.get(offset) & 0xFF;
+		case UNSIGNEDINT16BIGENDIAN:
+		case UNSIGNEDINT16LITTLENDIAN:
+			return buffer.getShort(offset) & 0xFFFF;
+		case UNSIGNEDINT32BIGENDIAN:
+		case UNSIGNEDINT32LITTLEENDIAN:
+			return buffer.getInt(offset) & 0xFFFFFFFFL;
+		case UNSIGNEDINT64BIGENDIAN:
+		case UNSIGNEDINT64LITTLEENDIAN:
+			return unsigned(buffer.getLong(offset));
+		case SIGNEDINT8:
+			return buffer.get(offset);
+		case SIGNEDINT16BIGENDIAN:
+		case SIGNEDINT16LITTLEENDIAN:
+			return buffer.getShort(offset);
+		case SIGNEDINT32BIGENDIAN:
+		case SIGNEDINT32LITTLEENDIAN:
+			return buffer.getInt(offset);
+		case SIGNEDINT64BIGENDIAN:
+		case SIGNEDINT64LITTLEENDIAN:
+			return buffer.getLong(offset);
+		case IEEEFLOAT32BIGENDIAN:
+		case IEEEFLOAT32LITTLEENDIAN:
+			return buffer.getFloat(offset);
+		default:
+			return buffer.getDouble(offset);
+		}
+	}
+
+	/**
+	 * Decodes all values of one format group.
+	 * 
+	 * @param buffer
+	 *            The buffer with the byte order of the format.
+	 * @param format
+	 *            The format shared by all values of the group.
+	 * @param offsets
+	 *            The byte offsets of the values.
+	 * @param slots
+	 *            The slots receiving the values.
+	 */
+	private void unpack(ByteBuffer buffer, StreamFormat format, int[] offsets,
+			int[] slots) {
+		final double[] values = this.values;
+		final int n = offsets.length;
+
+		switch (format) {
+		case UNSIGNEDINT8:
+			for (int i = 0; i < n; i++)
+				values[slots[i]] = buffer.get(offsets[i]) & 0xFF;
+			break;
+		case UNSIGNEDINT16BIGENDIAN:
+		case UNSIGNEDINT16LITTLENDIAN:
+			for (int i = 0; i < n; i++)
+				values[slots[i]] = buffer.getShort(offsets[i]) & 0xFFFF;
+			break;
+		case UNSIGNEDINT32BIGENDIAN:
+		case UNSIGNEDINT32LITTLEENDIAN:
+			for (int i = 0; i < n; i++)
+				values[slots[i]] = buffer.getInt(offsets[i]) & 0xFFFFFFFFL;
+			break;
+		case UNSIGNEDINT64BIGENDIAN:
+		case UNSIGNEDINT64LITTLEENDIAN:
+			for (int i = 0; i < n; i++)
+				values[slots[i]] = unsigned(buffer.getLong(offsets[i]));
+			break;
+		case SIGNEDINT8:
+			for (int i = 0; i < n; i++)
+				values[slots[i]] = buffer.get(offsets[i]);
+			break;
+		case SIGNEDINT16BIGENDIAN:
+		case SIGNEDINT16LITTLEENDIAN:
+			for (int i = 0; i < n; i++)
+				values[slots[i]] = buffer.getShort(offsets[i]);
+			break;
+		case SIGNEDINT32BIGENDIAN:
+		case SIGNEDINT32LITTLEENDIAN:
+			for (int i = 0; i < n; i++)
+				values[slots[i]] = buffer.getInt(offsets[i]);
+			break;
+		case SIGNEDINT64BIGENDIAN:
+		case SIGNEDINT64LITTLEENDIAN:
+			for (int i = 0; i < n; i++)
+				values[slots[i]] = buffer.getLong(offsets[i]);
+			break;
+		case IEEEFLOAT32BIGENDIAN:
+		case IEEEFLOAT32LITTLEENDIAN:
+			for (int i = 0; i < n; i++)
+				values[slots[i]] = buffer.getFloat(offsets[i]);
+			break;
+		default:
+			for (int i = 0; i < n; i++)
+				values[slots[i]] = buffer.getDouble(offsets[i]);
+			break;
+		}
+	}
+
+	/**
+	 * Makes sure the internal buffer can hold a payload of the specified
+	 * length.
+	 * 
+	 * @param length
+	 *            The length of the payload.
+	 */
+	private void reserve(int length) {
+		if (data.length < length) {
+			data = new byte[Math.max(length, data.length << 1)];
+			bigEndian = ByteBuffer.wrap(data);
+			littleEndian = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+
+	/**
+	 * Decodes the values of all slots from the internal buffer.
+	 * 
+	 * @param length
+	 *            The length of the payload stored in the internal buffer.
+	 */
+	private void unpack(int length) {
+		if (groupOffsets == null) {
+			compile();
+		}
+
+		for (int f = 0; f < FORMATS.length; f++) {
+			final int[] offsets = groupOffsets[f];
+
+			if (offsets != null) {
+				final StreamFormat format = FORMATS[f];
+				final ByteBuffer buffer = format.byteOrder() == ByteOrder.LITTLE_ENDIAN ? littleEndian
+						: bigEndian;
+
+				if (groupLimits[f] <= length) {
+					unpack(buffer, format, offsets, groupSlots[f]);
+				} else {
+					final int[] slots = groupSlots[f];
+
+					for (int i = 0; i < offsets.length; i++) {
+						values[slots[i]] = read(buffer, format, offsets[i],
+								length);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a slot for a parameter which is described by the specified format
+	 * and offset.
+	 * 
+	 * @param format
+	 *            The format of the encoded value.
+	 * @param offset
+	 *            The byte offset of the encoded value within the payload.
+	 * @return The index of the slot in {@link #values()}.
+	 * @throws NullPointerException
+	 *             Thrown if {@link format} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link offset} is negative.
+	 */
+	public int add(StreamFormat format, int offset)
+			throws NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(format, "format");
+
+		if (offset < 0)
+			throw new IllegalArgumentException("offset");
+
+		if (count == formats.length) {
+			formats = Arrays.copyOf(formats, count << 1);
+			offsets = Arrays.copyOf(offsets, count << 1);
+		}
+
+		formats[count] = format;
+		offsets[count] = offset;
+		values = Arrays.copyOf(values, count + 1);
+		values[count] = Double.NaN;
+		groupOffsets = null;
+		return count++;
+	}
+
+	/**
+	 * Adds a slot for a parameter, using its {@link GlowStreamDescriptor}.
+	 * 
+	 * @param parameter
+	 *            The parameter to add.
+	 * @return The index of the slot in {@link #values()}.
+	 * @throws NullPointerException
+	 *             Thrown if {@link parameter} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if the parameter has no complete stream descriptor,
+	 *             or if its stream identifier differs from the one of this
+	 *             unpacker.
+	 */
+	public int add(GlowParameterBase parameter) throws NullPointerException,
+			IllegalArgumentException {
+		Assert.AssertNotNull(parameter, "parameter");
+
+		final Integer identifier = parameter.streamIdentifier();
+		final GlowStreamDescriptor descriptor = parameter.streamDescriptor();
+
+		if (identifier == null || identifier.intValue() != streamIdentifier)
+			throw new IllegalArgumentException(
+					"The parameter uses a different stream identifier");
+
+		if (descriptor == null || descriptor.format() == null
+				|| descriptor.offset() == null)
+			throw new IllegalArgumentException(
+					"The parameter has no stream descriptor");
+
+		return add(descriptor.format(), descriptor.offset());
+	}
+
+	/**
+	 * Decodes all slots from a binary encoded payload.
+	 * 
+	 * @param bytes
+	 *            The array containing the payload.
+	 * @param offset
+	 *            The index of the first byte of the payload.
+	 * @param length
+	 *            The length of the payload.
+	 * @throws NullPointerException
+	 *             Thrown if {@link bytes} is <i>null</i>.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if the range exceeds the array.
+	 */
+	public void decode(byte[] bytes, int offset, int length)
+			throws NullPointerException, IndexOutOfBoundsException {
+		Assert.AssertNotNull(bytes, "bytes");
+
+		reserve(length);
+		System.arraycopy(bytes, offset, data, 0, length);
+		unpack(length);
+	}
+
+	/**
+	 * Decodes all slots from the payload of a stream entry. Values located
+	 * beyond the end of the payload are set to {@link Double#NaN}.
+	 * 
+	 * @param entry
+	 *            The stream entry to decode.
+	 * @return <i>true</i>, if the entry has the stream identifier of this
+	 *         unpacker and contains an octet string. Otherwise, the entry is
+	 *         ignored and this method returns <i>false</i>.
+	 * @throws NullPointerException
+	 *             Thrown if {@link entry} is <i>null</i>.
+	 */
+	public boolean decode(GlowStreamEntry entry) throws NullPointerException {
+		Assert.AssertNotNull(entry, "entry");
+
+		final Integer identifier = entry.streamIdentifier();
+		final Value value = entry.value();
+
+		if (identifier != null && identifier.intValue() == streamIdentifier
+				&& value != null
+				&& value.type() == UniversalType.OCTETSTRING) {
+			decode(value.toOctets());
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Decodes all slots from an octet string.
+	 * 
+	 * @param octets
+	 *            The payload to decode.
+	 * @throws NullPointerException
+	 *             Thrown if {@link octets} is <i>null</i>.
+	 */
+	public void decode(Octets octets) throws NullPointerException {
+		Assert.AssertNotNull(octets, "octets");
+
+		final int length = octets.size();
+
+		reserve(length);
+
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) octets.get(i).intValue();
+		}
+
+		unpack(length);
+	}
+
+	/**
+	 * Gets the number of slots.
+	 * 
+	 * @return The number of slots.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Gets the stream identifier shared by all parameters of this unpacker.
+	 * 
+	 * @return The stream identifier.
+	 */
+	public int streamIdentifier() {
+		return streamIdentifier;
+	}
+
+	/**
+	 * Gets the values decoded by the last call to one of the decode methods,
+	 * indexed by slot. Slots which have not been decoded yet contain
+	 * {@link Double#NaN}. The array is reused and overwritten by subsequent
+	 * decodes, and is replaced when a slot is added.
+	 * 
+	 * @return The decoded values.
+	 */
+	public double[] values() {
+		return values;
+	}
+}
@@ -12,6 +12,8 @@ import libember.dom.Node;
  * 
  */
 public final class GlowStringIntegerCollection extends GlowElement {
+	private int revision;
+
 	/**
 	 * Initializes a new instance of the {@link GlowStringIntegerCollection}
 	 * class.
@@ -37,6 +39,35 @@ public final class GlowStringIntegerCollection extends GlowElement {
 		insert(new GlowStringIntegerPair(name, value));
 	}
 
+	@Override
+	public void clear() {
+		super.clear();
+		revision++;
+	}
+
+	@Override
+	protected void eraseImpl(int index) {
+		super.eraseImpl(index);
+		revision++;
+	}
+
+	@Override
+	protected void insertImpl(int index, Node node) {
+		super.insertImpl(index, node);
+		revision++;
+	}
+
+	/**
+	 * Gets a number which changes whenever a pair is inserted into or removed
+	 * from this collection, or the collection is cleared. It allows caches derived from the collection, like
+	 * the {@link GlowEnumerationIndex} of a parameter, to detect changes.
+	 * 
+	 * @return The revision of this collection.
+	 */
+	int revision() {
+		return revision;
+	}
+
 	/**
 	 * Gets an {@link Iterable} containing all instances of the
 	 * {@link GlowStringIntegerPair} class.
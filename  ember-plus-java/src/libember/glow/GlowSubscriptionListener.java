@@ -0,0 +1,27 @@
+package libember.glow;
+
+/**
+ * Public interface which is used to deliver coalesced parameter updates to
+ * the subscribed sessions. Instances of this interface are passed to the
+ * constructor of {@link GlowSubscriptions}, which invokes
+ * {@link #updatesReady(Object, GlowRootElementCollection)} once per session
+ * and flush.
+ * 
+ * @param <TSession>
+ *            The type used to identify a consumer session.
+ */
+public interface GlowSubscriptionListener<TSession> {
+	/**
+	 * This method is called by {@link GlowSubscriptions#flush()} for each
+	 * session which is subscribed to at least one of the parameters that
+	 * changed since the previous flush.
+	 * 
+	 * @param session
+	 *            The session to send the updates to.
+	 * @param updates
+	 *            A {@link GlowRootElementCollection} containing one
+	 *            {@link GlowQualifiedParameter} with the latest value per
+	 *            changed parameter. The collection is owned by the receiver.
+	 */
+	void updatesReady(TSession session, GlowRootElementCollection updates);
+}
@@ -0,0 +1,369 @@
+package libember.glow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import libember.ber.Oid;
+import libember.ber.Value;
+import libember.dom.Node;
+import libember.util.Assert;
+
+/**
+ * Keeps track of the consumer sessions interested in the elements of a
+ * provider and coalesces parameter updates. A session is subscribed to a path
+ * either explicitly, by a {@link CommandType#SUBSCRIBE} command, or
+ * implicitly, by requesting the directory of that path. A session subscribed
+ * to a node receives the updates of the parameters contained in that node.
+ * <p>
+ * Producers report new parameter values via {@link #publish(Oid, Value)},
+ * which is lock-free and may be called from any number of threads. Only the
+ * latest value per path is kept until the next {@link #flush()}, which sends
+ * one {@link GlowQualifiedParameter} per changed path to each interested
+ * session. Flushing periodically, see
+ * {@link #start(ScheduledExecutorService, long, TimeUnit)}, limits the update
+ * rate per parameter to one per window, no matter how often the value changes.
+ * Values of parameters nobody is subscribed to are dropped, and publishing
+ * never creates any state for them.
+ * </p>
+ * <p>
+ * Sessions are stored in hash based collections, so the session type must
+ * implement {@link Object#equals(Object)} and {@link Object#hashCode()}
+ * consistently, or not override them at all.
+ * </p>
+ * 
+ * @param <TSession>
+ *            The type used to identify a consumer session.
+ */
+public final class GlowSubscriptions<TSession> {
+	/**
+	 * Marks the end of the paths queued before a flush. Compared by identity,
+	 * so it cannot be mistaken for a published path.
+	 */
+	private final static Oid MARKER = new Oid(new ArrayList<Integer>());
+
+	private final ConcurrentHashMap<Oid, CopyOnWriteArrayList<TSession>> subscriptions = new ConcurrentHashMap<Oid, CopyOnWriteArrayList<TSession>>();
+	private final ConcurrentHashMap<Oid, Value> pending = new ConcurrentHashMap<Oid, Value>();
+	private final ConcurrentLinkedQueue<Oid> dirty = new ConcurrentLinkedQueue<Oid>();
+	private final GlowSubscriptionListener<TSession> listener;
+
+	/**
+	 * Initializes a new instance of the {@link GlowSubscriptions} class.
+	 * 
+	 * @param listener
+	 *            The listener which delivers the coalesced updates.
+	 * @throws NullPointerException
+	 *             Thrown if {@link listener} is <i>null</i>.
+	 */
+	public GlowSubscriptions(GlowSubscriptionListener<TSession> listener)
+			throws NullPointerException {
+		Assert.AssertNotNull(listener, "listener");
+
+		this.listener = listener;
+	}
+
+	/**
+	 * Adds an update to the message of every session in the passed list.
+	 * 
+	 * @param messages
+	 *            The messages collected so far, or <i>null</i>.
+	 * @param path
+	 *            The path of the changed parameter.
+	 * @param value
+	 *            The new value of the parameter.
+	 * @param sessions
+	 *            The sessions to send the update to.
+	 * @param exclude
+	 *            Sessions which already received the update, or <i>null</i>.
+	 * @return The messages including the new update.
+	 */
+	private static <TSession> HashMap<TSession, GlowRootElementCollection> deliver(
+			HashMap<TSession, GlowRootElementCollection> messages, Oid path,
+			Value value, CopyOnWriteArrayList<TSession> sessions,
+			CopyOnWriteArrayList<TSession> exclude) {
+		for (TSession session : sessions) {
+			if (exclude != null && exclude.contains(session)) {
+				continue;
+			}
+
+			if (messages == null) {
+				messages = new HashMap<TSession, GlowRootElementCollection>();
+			}
+
+			GlowRootElementCollection message = messages.get(session);
+
+			if (message == null) {
+				message = GlowRootElementCollection.create();
+				messages.put(session, message);
+			}
+
+			new GlowQualifiedParameter(message, path).setValue(value);
+		}
+
+		return messages;
+	}
+
+	/**
+	 * Handles the subscription related commands contained in the passed
+	 * collection and its descendants.
+	 * 
+	 * @param session
+	 *            The session which sent the request.
+	 * @param collection
+	 *            The collection to process.
+	 * @param path
+	 *            The path of the element which owns the collection.
+	 */
+	private void process(TSession session, GlowContainer collection, Oid path) {
+		for (Iterator<Node> it = collection.iterator(); it.hasNext(); /* Nothing */) {
+			final Node node = it.next();
+
+			if (node instanceof GlowCommand) {
+				final CommandType command = ((GlowCommand) node).number();
+
+				if (command == CommandType.SUBSCRIBE
+						|| command == CommandType.GETDIRECTORY) {
+					subscribe(path, session);
+				} else if (command == CommandType.UNSUBSCRIBE) {
+					unsubscribe(path, session);
+				}
+			} else if (node instanceof GlowContentElement) {
+				final Oid child = GlowTree.pathOf((GlowContentElement) node,
+						path);
+				final GlowElementCollection children = ((GlowContentElement) node)
+						.children();
+
+				if (child != null && children != null) {
+					process(session, children, child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends all values published since the previous flush to the subscribed
+	 * sessions. For each changed path, only the latest value is sent. Values
+	 * published while this method is running are sent by the next flush.
+	 * 
+	 * @return The number of changed paths which have been processed.
+	 */
+	public synchronized int flush() {
+		HashMap<TSession, GlowRootElementCollection> messages = null;
+		Oid path;
+		int count = 0;
+
+		dirty.add(MARKER);
+
+		while ((path = dirty.poll()) != MARKER) {
+			final Value value = pending.remove(path);
+
+			if (value != null) {
+				final CopyOnWriteArrayList<TSession> sessions = subscriptions
+						.get(path);
+				final CopyOnWriteArrayList<TSession> parent = path.isEmpty() ? null
+						: subscriptions.get(path.parent());
+
+				if (sessions != null) {
+					messages = deliver(messages, path, value, sessions, null);
+				}
+
+				if (parent != null) {
+					messages = deliver(messages, path, value, parent, sessions);
+				}
+
+				count++;
+			}
+		}
+
+		if (messages != null) {
+			for (Map.Entry<TSession, GlowRootElementCollection> entry : messages
+					.entrySet()) {
+				listener.updatesReady(entry.getKey(), entry.getValue());
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Tests whether a session is subscribed to the specified path.
+	 * 
+	 * @param path
+	 *            The path to test.
+	 * @param session
+	 *            The session to test.
+	 * @return <i>true</i>, if the session is subscribed to the path itself.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} is <i>null</i>.
+	 */
+	public boolean isSubscribed(Oid path, TSession session)
+			throws NullPointerException {
+		Assert.AssertNotNull(path, "path");
+
+		final CopyOnWriteArrayList<TSession> sessions = subscriptions.get(path);
+		return sessions != null && sessions.contains(session);
+	}
+
+	/**
+	 * Handles the {@link CommandType#SUBSCRIBE},
+	 * {@link CommandType#UNSUBSCRIBE} and {@link CommandType#GETDIRECTORY}
+	 * commands contained in a decoded request. A directory request implicitly
+	 * subscribes the session to the requested element.
+	 * 
+	 * @param session
+	 *            The session which sent the request.
+	 * @param request
+	 *            The decoded request, usually a
+	 *            {@link GlowRootElementCollection}.
+	 * @throws NullPointerException
+	 *             Thrown if {@link session} or {@link request} is <i>null</i>.
+	 */
+	public void process(TSession session, Node request)
+			throws NullPointerException {
+		Assert.AssertNotNull(session, "session");
+		Assert.AssertNotNull(request, "request");
+
+		if (request instanceof GlowContainer) {
+			process(session, (GlowContainer) request, Oid.EMPTY);
+		}
+	}
+
+	/**
+	 * Reports a new value of a parameter. The value is sent with the next
+	 * flush, unless it is superseded by another value for the same path
+	 * before. This method does not block and may be called concurrently.
+	 * 
+	 * @param path
+	 *            The path of the parameter.
+	 * @param value
+	 *            The new value of the parameter.
+	 * @return <i>true</i>, if at least one session is interested in the
+	 *         parameter.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} or {@link value} is <i>null</i>.
+	 */
+	public boolean publish(Oid path, Value value) throws NullPointerException {
+		Assert.AssertNotNull(path, "path");
+		Assert.AssertNotNull(value, "value");
+
+		final CopyOnWriteArrayList<TSession> sessions = subscriptions.get(path);
+		final CopyOnWriteArrayList<TSession> parent = path.isEmpty() ? null
+				: subscriptions.get(path.parent());
+
+		if ((sessions == null || sessions.isEmpty())
+				&& (parent == null || parent.isEmpty())) {
+			return false;
+		}
+
+		if (pending.put(path, value) == null) {
+			dirty.add(path);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Flushes the pending updates periodically.
+	 * 
+	 * @param executor
+	 *            The executor which runs the flushes.
+	 * @param window
+	 *            The time between two flushes, which is the maximum time a
+	 *            value is delayed and the minimum time between two updates of
+	 *            the same parameter.
+	 * @param unit
+	 *            The unit of {@link window}.
+	 * @return The {@link ScheduledFuture} which can be used to stop flushing.
+	 * @throws NullPointerException
+	 *             Thrown if {@link executor} or {@link unit} is <i>null</i>.
+	 */
+	public ScheduledFuture<?> start(ScheduledExecutorService executor,
+			long window, TimeUnit unit) throws NullPointerException {
+		Assert.AssertNotNull(executor, "executor");
+		Assert.AssertNotNull(unit, "unit");
+
+		return executor.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				flush();
+			}
+		}, window, window, unit);
+	}
+
+	/**
+	 * Subscribes a session to a path. Subscribing to a node includes the
+	 * parameters which are direct children of that node.
+	 * 
+	 * @param path
+	 *            The path to subscribe to.
+	 * @param session
+	 *            The session to subscribe.
+	 * @return <i>true</i>, if the session has not been subscribed before.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} or {@link session} is <i>null</i>.
+	 */
+	public boolean subscribe(Oid path, TSession session)
+			throws NullPointerException {
+		Assert.AssertNotNull(path, "path");
+		Assert.AssertNotNull(session, "session");
+
+		CopyOnWriteArrayList<TSession> sessions = subscriptions.get(path);
+
+		if (sessions == null) {
+			final CopyOnWriteArrayList<TSession> created = new CopyOnWriteArrayList<TSession>();
+
+			sessions = subscriptions.putIfAbsent(path, created);
+
+			if (sessions == null) {
+				sessions = created;
+			}
+		}
+
+		return sessions.addIfAbsent(session);
+	}
+
+	/**
+	 * Removes a subscription of a session.
+	 * 
+	 * @param path
+	 *            The path to unsubscribe from.
+	 * @param session
+	 *            The session to unsubscribe.
+	 * @return <i>true</i>, if the session has been subscribed to the path.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} is <i>null</i>.
+	 */
+	public boolean unsubscribe(Oid path, TSession session)
+			throws NullPointerException {
+		Assert.AssertNotNull(path, "path");
+
+		final CopyOnWriteArrayList<TSession> sessions = subscriptions.get(path);
+		return sessions != null && sessions.remove(session);
+	}
+
+	/**
+	 * Removes all subscriptions of a session, for example after the
+	 * connection to the consumer has been closed.
+	 * 
+	 * @param session
+	 *            The session to unsubscribe.
+	 * @return The number of removed subscriptions.
+	 */
+	public int unsubscribeAll(TSession session) {
+		int count = 0;
+
+		for (CopyOnWriteArrayList<TSession> sessions : subscriptions.values()) {
+			if (sessions.remove(session)) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+}
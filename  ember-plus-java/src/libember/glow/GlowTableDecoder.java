@@ -0,0 +1,208 @@
+package libember.glow;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import libember.ber.Tag;
+
+/**
+ * Minimal BER reader working directly on a byte array, used by the compact
+ * matrix tables to decode their sequences without creating a
+ * {@link Tag} or {@link libember.ber.Length} object per element.
+ * Only the definite length form is supported.
+ */
+final class GlowTableDecoder {
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+
+	private final byte[] data;
+	private final int limit;
+	private int position;
+
+	/**
+	 * Initializes a new instance of the {@link GlowTableDecoder} class.
+	 * 
+	 * @param data
+	 *            The array containing the encoded data.
+	 * @param offset
+	 *            The index of the first byte to decode.
+	 * @param length
+	 *            The number of bytes to decode.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if the range exceeds the array.
+	 */
+	GlowTableDecoder(byte[] data, int offset, int length)
+			throws IndexOutOfBoundsException {
+		if (offset < 0 || length < 0 || offset + length > data.length)
+			throw new IndexOutOfBoundsException();
+
+		this.data = data;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	/**
+	 * Gets the identifier octet of a context specific container tag, as
+	 * returned by {@link #tag()}.
+	 * 
+	 * @param tag
+	 *            The tag to get the identifier octet of. Its number must be
+	 *            less than 31.
+	 * @return The identifier octet.
+	 */
+	static int identifier(Tag tag) {
+		return tag.toContainer().preamble() | tag.number();
+	}
+
+	/**
+	 * Reads the next byte.
+	 * 
+	 * @return The unsigned value of the byte.
+	 * @throws NoSuchElementException
+	 *             Thrown if the end of the data has been reached.
+	 */
+	private int next() throws NoSuchElementException {
+		if (position >= limit)
+			throw new NoSuchElementException("Unexpected end of data");
+
+		return data[position++] & 0xFF;
+	}
+
+	/**
+	 * Reads a definite length and validates it against the end of the data.
+	 * 
+	 * @return The position of the first byte after the value.
+	 * @throws NoSuchElementException
+	 *             Thrown if the value exceeds the data.
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the length uses the indefinite form.
+	 */
+	int end() throws NoSuchElementException, UnsupportedOperationException {
+		int length = next();
+
+		if ((length & 0x80) != 0) {
+			int bytes = length & 0x7F;
+
+			if (bytes == 0)
+				throw new UnsupportedOperationException(
+						"Indefinite lengths are not supported");
+
+			for (length = 0; bytes > 0; bytes--) {
+				length = (length << 8) | next();
+			}
+		}
+
+		if (length < 0 || length > limit - position)
+			throw new NoSuchElementException("The length exceeds the data");
+
+		return position + length;
+	}
+
+	/**
+	 * Reads an integer value, including its universal type tag and length.
+	 * 
+	 * @return The decoded value.
+	 * @throws NoSuchElementException
+	 *             Thrown if the value exceeds the data.
+	 */
+	long integer() throws NoSuchElementException {
+		tag();
+
+		final int end = end();
+		long value = end > position && (data[position] & 0x80) != 0 ? -1 : 0;
+
+		while (position < end) {
+			value = (value << 8) | next();
+		}
+
+		return value;
+	}
+
+	/**
+	 * Reads a relative object identifier, including its universal type tag
+	 * and length.
+	 * 
+	 * @return The subidentifiers of the decoded value.
+	 * @throws NoSuchElementException
+	 *             Thrown if the value exceeds the data.
+	 */
+	int[] oid() throws NoSuchElementException {
+		tag();
+
+		final int end = end();
+		int[] subids = new int[end - position];
+		int count = 0;
+
+		while (position < end) {
+			int subid = 0;
+			int octet;
+
+			do {
+				octet = next();
+				subid = (subid << 7) | (octet & 0x7F);
+			} while ((octet & 0x80) != 0);
+
+			subids[count++] = subid;
+		}
+
+		return count == subids.length ? subids : Arrays.copyOf(subids, count);
+	}
+
+	/**
+	 * Gets the current position.
+	 * 
+	 * @return The index of the next byte to read.
+	 */
+	int position() {
+		return position;
+	}
+
+	/**
+	 * Moves to the specified position, usually to skip a value.
+	 * 
+	 * @param position
+	 *            The index of the next byte to read.
+	 */
+	void seek(int position) {
+		this.position = position;
+	}
+
+	/**
+	 * Reads a UTF-8 string, including its universal type tag and length.
+	 * 
+	 * @return The decoded string.
+	 * @throws NoSuchElementException
+	 *             Thrown if the value exceeds the data.
+	 */
+	String string() throws NoSuchElementException {
+		tag();
+
+		final int end = end();
+		final String value = new String(data, position, end - position, UTF8);
+
+		position = end;
+		return value;
+	}
+
+	/**
+	 * Reads a tag.
+	 * 
+	 * @return The identifier octet of the tag or -1, if the tag uses the
+	 *         multi byte form. The number of a multi byte tag is skipped.
+	 * @throws NoSuchElementException
+	 *             Thrown if the end of the data has been reached.
+	 */
+	int tag() throws NoSuchElementException {
+		final int identifier = next();
+
+		if ((identifier & 0x1F) != 0x1F) {
+			return identifier;
+		}
+
+		while ((next() & 0x80) != 0) {
+			/* Nothing */
+		}
+
+		return -1;
+	}
+}
@@ -0,0 +1,134 @@
+package libember.glow;
+
+import libember.ber.Encoding;
+import libember.ber.Length;
+import libember.ber.Tag;
+import libember.ber.UniversalType;
+import libember.dom.Node;
+import libember.dom.Sequence;
+import libember.util.OutputStream;
+
+/**
+ * A {@link Node} which inserts a compact table into a matrix. The node encodes
+ * like a {@link libember.dom.Sequence} whose children have been encoded in
+ * advance, so encoding the matrix only copies the bytes of the table. Its
+ * fingerprint equals the one of the equivalent sequence, so a matrix has the
+ * same fingerprint whether its signals are assigned as a table or as nodes.
+ * 
+ * @param <T>
+ *            The type of the table, {@link GlowSignalTable} or
+ *            {@link GlowLabelTable}.
+ */
+final class GlowTableNode<T> extends Node {
+	private final static Tag SEQUENCE_TAG = UniversalType
+			.universalTag(UniversalType.SEQUENCE);
+	private final static Tag SEQUENCE_CONTAINER_TAG = SEQUENCE_TAG
+			.toContainer();
+
+	private final T table;
+	private final byte[] payload;
+	private int cachedLength;
+
+	/**
+	 * Initializes a new instance of the {@link GlowTableNode} class.
+	 * 
+	 * @param tag
+	 *            The application tag of the node.
+	 * @param table
+	 *            The table represented by this node.
+	 * @param payload
+	 *            The encoded entries of the table.
+	 */
+	GlowTableNode(Tag tag, T table, byte[] payload) {
+		super(tag);
+
+		this.table = table;
+		this.payload = payload;
+	}
+
+	/**
+	 * Gets the length of the universal sequence, including its tag.
+	 * 
+	 * @return The inner length.
+	 */
+	private int innerLength() {
+		return Encoding.encodedLength(SEQUENCE_CONTAINER_TAG)
+				+ Encoding.encodedLength(new Length(payload.length))
+				+ payload.length;
+	}
+
+	/**
+	 * Creates a detached copy of this node, which shares the immutable table
+	 * and payload.
+	 * 
+	 * @return The copy.
+	 */
+	GlowTableNode<T> copy() {
+		return new GlowTableNode<T>(applicationTag(), table, payload);
+	}
+
+	/**
+	 * Builds the {@link Sequence} containing one node per table entry, which
+	 * this node is equivalent to.
+	 * 
+	 * @return The sequence.
+	 */
+	Sequence toSequence() {
+		if (table instanceof GlowSignalTable) {
+			return ((GlowSignalTable) table).toSequence(applicationTag());
+		} else {
+			return ((GlowLabelTable) table).toSequence(applicationTag());
+		}
+	}
+
+	/**
+	 * Gets the table represented by this node.
+	 * 
+	 * @return The table.
+	 */
+	T table() {
+		return table;
+	}
+
+	@Override
+	protected int encodedLengthImpl() {
+		return cachedLength;
+	}
+
+	/**
+	 * Computes the fingerprint of the equivalent sequence, which mixes the
+	 * fingerprints of the entries rather than the encoded payload.
+	 * 
+	 * @return The fingerprint of this node.
+	 */
+	@Override
+	protected long fingerprintImpl() {
+		return toSequence().fingerprint();
+	}
+
+	@Override
+	protected void encodeImpl(OutputStream output) {
+		Encoding.encode(output, applicationTag().toContainer());
+		Encoding.encode(output, new Length(innerLength()));
+		Encoding.encode(output, SEQUENCE_CONTAINER_TAG);
+		Encoding.encode(output, new Length(payload.length));
+
+		for (int i = 0; i < payload.length; i++) {
+			output.append(payload[i] & 0xFF);
+		}
+	}
+
+	@Override
+	protected Tag typeTagImpl() {
+		return SEQUENCE_TAG;
+	}
+
+	@Override
+	protected void updateImpl() {
+		final int innerLength = innerLength();
+
+		cachedLength = Encoding.encodedLength(applicationTag())
+				+ Encoding.encodedLength(new Length(innerLength))
+				+ innerLength;
+	}
+}
@@ -0,0 +1,514 @@
+package libember.glow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import libember.ber.Oid;
+import libember.ber.Value;
+import libember.dom.Node;
+import libember.dom.NodeFactory;
+import libember.dom.Set;
+import libember.util.Assert;
+
+/**
+ * A consumer-side cache of an Ember+ tree. Decoded glow messages are merged
+ * into the cache with {@link #apply(Node)}, which handles nested as well as
+ * qualified nodes, parameters, matrices and functions and stream collections.
+ * Properties are merged one by one, so a partial update only changes the
+ * properties it contains. The targets, sources and connections of matrices
+ * are kept as well, see {@link GlowTreeEntry#connections()}.
+ * <p>
+ * Entries can be looked up in constant time by their number path (see
+ * {@link GlowQualifiedNode#path()}) or by their identifier path, which
+ * consists of the identifiers of the entry and its ancestors separated by a
+ * slash. Registered {@link GlowTreeListener} instances are notified about new
+ * entries and changed properties.
+ * </p>
+ * <p>
+ * This class is not thread-safe, it is meant to be owned by the thread which
+ * decodes the incoming messages.
+ * </p>
+ */
+public final class GlowTree {
+	/**
+	 * The factory used to create detached copies of complex properties.
+	 */
+	final static NodeFactory FACTORY = new GlowNodeFactory();
+
+	/**
+	 * The separator used to build identifier paths.
+	 */
+	public final static char SEPARATOR = '/';
+
+	private final static int STREAM_IDENTIFIER = ParameterProperty.STREAMIDENTIFIER
+			.value();
+	private final static int STREAM_DESCRIPTOR = ParameterProperty.STREAMDESCRIPTOR
+			.value();
+	private final static int IDENTIFIER = ParameterProperty.IDENTIFIER
+			.value();
+
+	private final GlowTreeEntry root = new GlowTreeEntry(null, Oid.EMPTY, 0);
+	private final HashMap<Oid, GlowTreeEntry> entries = new HashMap<Oid, GlowTreeEntry>();
+	private final HashMap<String, GlowTreeEntry> identifiers = new HashMap<String, GlowTreeEntry>();
+	private final HashMap<Integer, ArrayList<GlowTreeEntry>> streams = new HashMap<Integer, ArrayList<GlowTreeEntry>>();
+	private final ArrayList<GlowTreeListener> listeners = new ArrayList<GlowTreeListener>();
+
+	/**
+	 * Initializes a new instance of the {@link GlowTree} class.
+	 */
+	public GlowTree() {
+		entries.put(root.path(), root);
+	}
+
+	/**
+	 * Returns the child entry with the specified number, creating it if it
+	 * does not yet exist.
+	 * 
+	 * @param parent
+	 *            The parent entry.
+	 * @param number
+	 *            The number of the child.
+	 * @return The child entry.
+	 */
+	private GlowTreeEntry child(GlowTreeEntry parent, int number) {
+		GlowTreeEntry entry = parent.child(number);
+
+		if (entry == null) {
+			entry = new GlowTreeEntry(parent, parent.path().append(number),
+					number);
+
+			parent.addChild(entry);
+			entries.put(entry.path(), entry);
+
+			for (GlowTreeListener listener : listeners) {
+				listener.entryAdded(entry);
+			}
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Returns the entry with the specified path, creating it and all missing
+	 * ancestors if necessary.
+	 * 
+	 * @param path
+	 *            The number path of the entry.
+	 * @return The entry.
+	 */
+	private GlowTreeEntry entry(Oid path) {
+		GlowTreeEntry entry = entries.get(path);
+
+		if (entry == null) {
+			entry = root;
+
+			for (Iterator<Integer> it = path.iterator(); it.hasNext(); /* Nothing */) {
+				entry = child(entry, it.next());
+			}
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Merges a single glow element into the tree and processes its children.
+	 * 
+	 * @param entry
+	 *            The entry which represents the element.
+	 * @param type
+	 *            The unqualified type of the element.
+	 * @param element
+	 *            The element to merge.
+	 */
+	private void merge(GlowTreeEntry entry, GlowType type,
+			GlowContentElement element) {
+		final boolean retyped = entry.type() != type;
+		long changed = 0;
+
+		entry.setType(type);
+
+		final Set contents = element.contents(false);
+
+		if (contents != null) {
+			final String identifier = entry.identifier();
+			final Value stream = entry.value(STREAM_IDENTIFIER);
+
+			changed = entry.merge(contents);
+
+			if ((changed & (1L << IDENTIFIER)) != 0) {
+				reindex(entry, identifier);
+			}
+
+			if ((changed & (1L << STREAM_IDENTIFIER)) != 0) {
+				unregisterStream(entry, stream);
+				registerStream(entry);
+			}
+		}
+
+		if (element instanceof GlowMatrixBase) {
+			changed |= entry.mergeMatrix((GlowMatrixBase) element);
+		}
+
+		if (changed != 0 || retyped) {
+			notifyChanged(entry, changed);
+		}
+
+		final GlowElementCollection children = element.children();
+
+		if (children != null) {
+			mergeChildren(entry, children);
+		}
+	}
+
+	/**
+	 * Merges all elements contained in the passed collection.
+	 * 
+	 * @param parent
+	 *            The entry which owns the nested elements of the collection.
+	 * @param collection
+	 *            The collection to merge.
+	 */
+	private void mergeChildren(GlowTreeEntry parent, GlowContainer collection) {
+		for (Iterator<Node> it = collection.iterator(); it.hasNext(); /* Nothing */) {
+			mergeElement(parent, it.next());
+		}
+	}
+
+	/**
+	 * Merges a single element of a collection. Nested elements are attached to
+	 * the passed parent, qualified elements are located by their path.
+	 * 
+	 * @param parent
+	 *            The entry which owns the element, if it is a nested element.
+	 * @param node
+	 *            The element to merge.
+	 */
+	private void mergeElement(GlowTreeEntry parent, Node node) {
+		if (node instanceof GlowNode) {
+			final Integer number = ((GlowNode) node).number();
+
+			if (number != null) {
+				merge(child(parent, number), GlowType.NODE,
+						(GlowContentElement) node);
+			}
+		} else if (node instanceof GlowParameter) {
+			final Integer number = ((GlowParameter) node).number();
+
+			if (number != null) {
+				merge(child(parent, number), GlowType.PARAMETER,
+						(GlowContentElement) node);
+			}
+		} else if (node instanceof GlowMatrix) {
+			final Integer number = ((GlowMatrix) node).number();
+
+			if (number != null) {
+				merge(child(parent, number), GlowType.MATRIX,
+						(GlowContentElement) node);
+			}
+		} else if (node instanceof GlowFunction) {
+			final Integer number = ((GlowFunction) node).number();
+
+			if (number != null) {
+				merge(child(parent, number), GlowType.FUNCTION,
+						(GlowContentElement) node);
+			}
+		} else if (node instanceof GlowQualifiedNode) {
+			final Oid path = ((GlowQualifiedNode) node).path();
+
+			if (path != null) {
+				merge(entry(path), GlowType.NODE, (GlowContentElement) node);
+			}
+		} else if (node instanceof GlowQualifiedParameter) {
+			final Oid path = ((GlowQualifiedParameter) node).path();
+
+			if (path != null) {
+				merge(entry(path), GlowType.PARAMETER,
+						(GlowContentElement) node);
+			}
+		} else if (node instanceof GlowQualifiedMatrix) {
+			final Oid path = ((GlowQualifiedMatrix) node).path();
+
+			if (path != null) {
+				merge(entry(path), GlowType.MATRIX,
+						(GlowContentElement) node);
+			}
+		} else if (node instanceof GlowQualifiedFunction) {
+			final Oid path = ((GlowQualifiedFunction) node).path();
+
+			if (path != null) {
+				merge(entry(path), GlowType.FUNCTION,
+						(GlowContentElement) node);
+			}
+		} else if (node instanceof GlowStreamCollection) {
+			mergeStreams((GlowStreamCollection) node);
+		}
+	}
+
+	/**
+	 * Applies the values of a stream collection to all parameters which use
+	 * the stream identifiers of the contained entries. Parameters with a stream
+	 * descriptor are skipped, since their value is only a part of the stream
+	 * entry.
+	 * 
+	 * @param collection
+	 *            The stream collection to merge.
+	 */
+	private void mergeStreams(GlowStreamCollection collection) {
+		final int property = ParameterProperty.VALUE.value();
+
+		for (Iterator<Node> it = collection.iterator(); it.hasNext(); /* Nothing */) {
+			final Node node = it.next();
+
+			if (node instanceof GlowStreamEntry) {
+				final GlowStreamEntry stream = (GlowStreamEntry) node;
+				final Integer identifier = stream.streamIdentifier();
+				final Value value = stream.value();
+				final ArrayList<GlowTreeEntry> subscribers = identifier != null ? streams
+						.get(identifier) : null;
+
+				if (subscribers != null && value != null) {
+					for (GlowTreeEntry entry : subscribers) {
+						if (entry.contains(STREAM_DESCRIPTOR) == false
+								&& entry.setValue(property, value)) {
+							notifyChanged(entry, 1L << property);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Notifies all listeners about changed properties.
+	 * 
+	 * @param entry
+	 *            The entry whose properties changed.
+	 * @param properties
+	 *            The bit mask of changed properties.
+	 */
+	private void notifyChanged(GlowTreeEntry entry, long properties) {
+		for (GlowTreeListener listener : listeners) {
+			listener.entryChanged(entry, properties);
+		}
+	}
+
+	/**
+	 * Gets the path of a nested or qualified element contained in a message.
+	 * 
+	 * @param element
+	 *            The element to get the path of.
+	 * @param parent
+	 *            The path of the element's parent.
+	 * @return The path of the element or <i>null</i>, if the element does not
+	 *         specify its location.
+	 */
+	static Oid pathOf(GlowContentElement element, Oid parent) {
+		Integer number = null;
+
+		if (element instanceof GlowQualifiedNode) {
+			return ((GlowQualifiedNode) element).path();
+		} else if (element instanceof GlowQualifiedParameter) {
+			return ((GlowQualifiedParameter) element).path();
+		} else if (element instanceof GlowQualifiedMatrix) {
+			return ((GlowQualifiedMatrix) element).path();
+		} else if (element instanceof GlowQualifiedFunction) {
+			return ((GlowQualifiedFunction) element).path();
+		} else if (element instanceof GlowNode) {
+			number = ((GlowNode) element).number();
+		} else if (element instanceof GlowParameter) {
+			number = ((GlowParameter) element).number();
+		} else if (element instanceof GlowMatrix) {
+			number = ((GlowMatrix) element).number();
+		} else if (element instanceof GlowFunction) {
+			number = ((GlowFunction) element).number();
+		}
+
+		return number != null ? parent.append(number) : null;
+	}
+
+	/**
+	 * Registers a parameter entry with the stream identifier it uses.
+	 * 
+	 * @param entry
+	 *            The entry to register.
+	 */
+	private void registerStream(GlowTreeEntry entry) {
+		final Value stream = entry.value(STREAM_IDENTIFIER);
+
+		if (stream != null) {
+			final Integer identifier = stream.toInt();
+			ArrayList<GlowTreeEntry> list = streams.get(identifier);
+
+			if (list == null) {
+				list = new ArrayList<GlowTreeEntry>(1);
+				streams.put(identifier, list);
+			}
+
+			list.add(entry);
+		}
+	}
+
+	/**
+	 * Updates the identifier path of an entry whose identifier changed, as well
+	 * as the identifier paths of all its descendants.
+	 * 
+	 * @param entry
+	 *            The entry whose identifier changed.
+	 * @param previous
+	 *            The previous identifier of the entry or <i>null</i>.
+	 */
+	private void reindex(GlowTreeEntry entry, String previous) {
+		final String oldPath = entry.identifierPath();
+
+		if (oldPath != null && identifiers.get(oldPath) == entry) {
+			identifiers.remove(oldPath);
+		}
+
+		final GlowTreeEntry parent = entry.parent();
+		final String parentPath = parent.identifierPath();
+		final String identifier = entry.identifier();
+		final String newPath;
+
+		if (parentPath == null || identifier == null) {
+			newPath = null;
+		} else if (parentPath.length() == 0) {
+			newPath = identifier;
+		} else {
+			newPath = parentPath + SEPARATOR + identifier;
+		}
+
+		entry.setIdentifierPath(newPath);
+
+		if (newPath != null) {
+			identifiers.put(newPath, entry);
+		}
+
+		if (newPath == null ? oldPath != null : newPath.equals(oldPath) == false) {
+			for (GlowTreeEntry child : entry.children()) {
+				reindex(child, child.identifier());
+			}
+		}
+	}
+
+	/**
+	 * Removes a parameter entry from the list of entries using a stream
+	 * identifier.
+	 * 
+	 * @param entry
+	 *            The entry to remove.
+	 * @param stream
+	 *            The stream identifier the entry used before, or <i>null</i>.
+	 */
+	private void unregisterStream(GlowTreeEntry entry, Value stream) {
+		if (stream != null) {
+			final ArrayList<GlowTreeEntry> list = streams.get(stream.toInt());
+
+			if (list != null) {
+				list.remove(entry);
+			}
+		}
+	}
+
+	/**
+	 * Registers a listener which is notified about changes of this tree.
+	 * 
+	 * @param listener
+	 *            The listener to add.
+	 * @throws NullPointerException
+	 *             Thrown if {@link listener} is <i>null</i>.
+	 */
+	public void addListener(GlowTreeListener listener)
+			throws NullPointerException {
+		Assert.AssertNotNull(listener, "listener");
+
+		listeners.add(listener);
+	}
+
+	/**
+	 * Merges a decoded glow message into this tree. The passed node is usually
+	 * a {@link GlowRootElementCollection}, but single elements like a
+	 * {@link GlowQualifiedParameter} or a {@link GlowStreamCollection} are
+	 * accepted as well. Nested elements are attached to the root of the tree.
+	 * 
+	 * @param node
+	 *            The decoded message to merge.
+	 * @throws NullPointerException
+	 *             Thrown if {@link node} is <i>null</i>.
+	 */
+	public void apply(Node node) throws NullPointerException {
+		Assert.AssertNotNull(node, "node");
+
+		if (node instanceof GlowRootElementCollection
+				|| node instanceof GlowElementCollection) {
+			mergeChildren(root, (GlowContainer) node);
+		} else if (node instanceof GlowStreamCollection) {
+			mergeStreams((GlowStreamCollection) node);
+		} else {
+			mergeElement(root, node);
+		}
+	}
+
+	/**
+	 * Gets the entry with the specified number path.
+	 * 
+	 * @param path
+	 *            The number path of the entry to look up.
+	 * @return The entry or <i>null</i>, if no such entry exists.
+	 * @throws NullPointerException
+	 *             Thrown if {@link path} is <i>null</i>.
+	 */
+	public GlowTreeEntry find(Oid path) throws NullPointerException {
+		Assert.AssertNotNull(path, "path");
+
+		return entries.get(path);
+	}
+
+	/**
+	 * Gets the entry with the specified identifier path, for example
+	 * <code>router/inputs/gain</code>.
+	 * 
+	 * @param identifierPath
+	 *            The identifier path of the entry to look up.
+	 * @return The entry or <i>null</i>, if no such entry exists.
+	 * @throws NullPointerException
+	 *             Thrown if {@link identifierPath} is <i>null</i>.
+	 */
+	public GlowTreeEntry find(String identifierPath)
+			throws NullPointerException {
+		Assert.AssertNotNull(identifierPath, "identifierPath");
+
+		return identifiers.get(identifierPath);
+	}
+
+	/**
+	 * Unregisters a listener.
+	 * 
+	 * @param listener
+	 *            The listener to remove.
+	 * @return <i>true</i>, if the listener has been registered before.
+	 */
+	public boolean removeListener(GlowTreeListener listener) {
+		return listeners.remove(listener);
+	}
+
+	/**
+	 * Gets the root entry of this tree, whose path is {@link Oid#EMPTY}. The
+	 * root entry does not represent an actual element, it only owns the top
+	 * level elements.
+	 * 
+	 * @return The root entry.
+	 */
+	public GlowTreeEntry root() {
+		return root;
+	}
+
+	/**
+	 * Gets the number of entries in this tree, excluding the root entry.
+	 * 
+	 * @return The number of entries in this tree.
+	 */
+	public int size() {
+		return entries.size() - 1;
+	}
+}
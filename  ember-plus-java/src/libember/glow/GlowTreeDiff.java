@@ -0,0 +1,366 @@
+package libember.glow;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import libember.ber.Oid;
+import libember.dom.Container;
+import libember.dom.Leaf;
+import libember.dom.Node;
+import libember.dom.Sequence;
+import libember.dom.Set;
+import libember.util.Assert;
+
+/**
+ * Compares two versions of a glow element tree and creates the message which
+ * updates a consumer from the first version to the second one. The message is
+ * a {@link GlowRootElementCollection} containing one qualified element for
+ * each node, parameter, matrix or function whose properties changed, and each
+ * element contains only the changed properties. Matrices additionally contain
+ * the changed targets and sources, and the connections of the targets whose
+ * connection state changed.
+ * <p>
+ * The comparison is based on the {@link Node#fingerprint()} of every subtree,
+ * which covers the tags, the types and the values of all nodes. Elements and
+ * collections with equal fingerprints are considered equal and are skipped
+ * without descending into them. Since fingerprints are cached until a node
+ * changes, comparing a tree again after a few edits only hashes the paths to
+ * the edited nodes, and the effort mostly depends on the number of changed
+ * elements. Elements and properties which are only present in the first
+ * version are ignored, since glow does not allow to remove them.
+ * </p>
+ * <p>
+ * Both trees may contain nested as well as qualified elements, elements are
+ * matched by their number path. The trees are not modified, the result
+ * contains copies of the changed properties.
+ * </p>
+ */
+public final class GlowTreeDiff {
+	private final GlowRootElementCollection result = GlowRootElementCollection
+			.create();
+
+	/**
+	 * Initializes a new instance of the {@link GlowTreeDiff} class.
+	 */
+	private GlowTreeDiff() {
+	}
+
+	/**
+	 * Compares two versions of a tree.
+	 * 
+	 * @param before
+	 *            The root collection of the previous version, usually a
+	 *            {@link GlowRootElementCollection}.
+	 * @param after
+	 *            The root collection of the current version.
+	 * @return The update message, which is empty if both versions are equal.
+	 * @throws NullPointerException
+	 *             Thrown if {@link before} or {@link after} is <i>null</i>.
+	 */
+	public static GlowRootElementCollection diff(GlowContainer before,
+			GlowContainer after) throws NullPointerException {
+		Assert.AssertNotNull(before, "before");
+		Assert.AssertNotNull(after, "after");
+
+		final GlowTreeDiff diff = new GlowTreeDiff();
+
+		diff.compareCollections(before, after, Oid.EMPTY);
+		return diff.result;
+	}
+
+	/**
+	 * Appends a copy of a node to a container.
+	 * 
+	 * @param container
+	 *            The container to append the copy to.
+	 * @param node
+	 *            The node to copy.
+	 */
+	private static void append(Container container, Node node) {
+		final Node copy = node instanceof GlowTableNode ? ((GlowTableNode<?>) node)
+				.copy() : GlowTree.FACTORY.copy(node);
+
+		if (copy != null) {
+			container.insert(copy);
+		}
+	}
+
+	/**
+	 * Creates the qualified counterpart of an element, without any
+	 * properties.
+	 * 
+	 * @param element
+	 *            The element to create the counterpart of.
+	 * @param path
+	 *            The path of the element.
+	 * @return The qualified element or <i>null</i>, if the element is of an
+	 *         unknown type.
+	 */
+	private static GlowContentElement qualify(GlowContentElement element,
+			Oid path) {
+		if (element instanceof GlowParameterBase) {
+			return new GlowQualifiedParameter(path);
+		} else if (element instanceof GlowMatrixBase) {
+			return new GlowQualifiedMatrix(path);
+		} else if (element instanceof GlowFunctionBase) {
+			return new GlowQualifiedFunction(path);
+		} else if (element instanceof GlowNodeBase) {
+			return new GlowQualifiedNode(path);
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a qualified copy of an element which contains all properties of
+	 * the element, but not its children.
+	 * 
+	 * @param element
+	 *            The element to copy.
+	 * @param path
+	 *            The path of the element.
+	 * @return The qualified copy or <i>null</i>, if the element is of an
+	 *         unknown type.
+	 */
+	static GlowContentElement qualifiedCopy(GlowContentElement element,
+			Oid path) {
+		final GlowContentElement copy = qualify(element, path);
+
+		if (copy != null) {
+			final GlowElementCollection children = element.children(false);
+
+			for (Iterator<Node> it = element.iterator(); it.hasNext(); /* Nothing */) {
+				final Node node = it.next();
+
+				if (node instanceof Leaf == false && node != children) {
+					append(copy, node);
+				}
+			}
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Tests whether two elements are of the same kind, regardless of whether
+	 * they are nested or qualified.
+	 * 
+	 * @param first
+	 *            The first element.
+	 * @param second
+	 *            The second element.
+	 * @return <i>true</i> if both elements are of the same kind.
+	 */
+	private static boolean sameKind(GlowContentElement first,
+			GlowContentElement second) {
+		return (first instanceof GlowParameterBase && second instanceof GlowParameterBase)
+				|| (first instanceof GlowMatrixBase && second instanceof GlowMatrixBase)
+				|| (first instanceof GlowFunctionBase && second instanceof GlowFunctionBase)
+				|| (first instanceof GlowNodeBase && second instanceof GlowNodeBase);
+	}
+
+	/**
+	 * Creates a map of the elements contained in a collection, keyed by their
+	 * path.
+	 * 
+	 * @param collection
+	 *            The collection to index or <i>null</i>.
+	 * @param path
+	 *            The path of the element owning the collection.
+	 * @return The elements of the collection.
+	 */
+	private static HashMap<Oid, GlowContentElement> index(
+			GlowContainer collection, Oid path) {
+		final HashMap<Oid, GlowContentElement> elements = new HashMap<Oid, GlowContentElement>();
+
+		if (collection != null) {
+			for (Iterator<Node> it = collection.iterator(); it.hasNext(); /* Nothing */) {
+				final Node node = it.next();
+
+				if (node instanceof GlowContentElement) {
+					final Oid child = GlowTree.pathOf(
+							(GlowContentElement) node, path);
+
+					if (child != null) {
+						elements.put(child, (GlowContentElement) node);
+					}
+				}
+			}
+		}
+
+		return elements;
+	}
+
+	/**
+	 * Compares the elements of two collections. Elements are first compared
+	 * with the element at the same position in the previous collection, which
+	 * is sufficient as long as the order of the elements did not change. The
+	 * previous collection is only indexed by path when an element has been
+	 * inserted or moved.
+	 * 
+	 * @param before
+	 *            The previous collection or <i>null</i>, if it did not exist.
+	 * @param after
+	 *            The current collection.
+	 * @param path
+	 *            The path of the element owning the collections.
+	 */
+	private void compareCollections(GlowContainer before, GlowContainer after,
+			Oid path) {
+		if (before != null && before.fingerprint() == after.fingerprint()) {
+			return;
+		}
+
+		final Iterator<Node> previousIt = before != null ? before.iterator()
+				: null;
+		HashMap<Oid, GlowContentElement> previous = null;
+
+		for (Iterator<Node> it = after.iterator(); it.hasNext(); /* Nothing */) {
+			final Node node = it.next();
+			final Node sibling = previousIt != null && previousIt.hasNext() ? previousIt
+					.next() : null;
+
+			if (sibling != null && sibling.fingerprint() == node.fingerprint()) {
+				continue;
+			}
+
+			if (node instanceof GlowContentElement) {
+				final GlowContentElement element = (GlowContentElement) node;
+				final Oid child = GlowTree.pathOf(element, path);
+
+				if (child != null) {
+					GlowContentElement other = null;
+
+					if (sibling instanceof GlowContentElement
+							&& child.equals(GlowTree.pathOf(
+									(GlowContentElement) sibling, path))) {
+						other = (GlowContentElement) sibling;
+					} else {
+						if (previous == null) {
+							previous = index(before, path);
+						}
+
+						other = previous.get(child);
+					}
+
+					compareElements(other != null && sameKind(other, element) ? other
+							: null, element, child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compares the connections of two matrices and adds the connections of
+	 * all targets whose state changed to the update.
+	 * 
+	 * @param before
+	 *            The previous connections or <i>null</i>.
+	 * @param after
+	 *            The current connections.
+	 * @param update
+	 *            The matrix receiving the changed connections.
+	 */
+	private void compareConnections(Sequence before, Sequence after,
+			GlowMatrixBase update) {
+		final HashMap<Integer, Node> previous = new HashMap<Integer, Node>();
+
+		if (before != null) {
+			for (Iterator<Node> it = before.iterator(); it.hasNext(); /* Nothing */) {
+				final Node node = it.next();
+
+				if (node instanceof GlowConnection) {
+					previous.put(((GlowConnection) node).target(), node);
+				}
+			}
+		}
+
+		for (Iterator<Node> it = after.iterator(); it.hasNext(); /* Nothing */) {
+			final Node node = it.next();
+
+			if (node instanceof GlowConnection) {
+				final Node other = previous.get(((GlowConnection) node)
+						.target());
+
+				if (other == null || other.fingerprint() != node.fingerprint()) {
+					append(update.connections(true), node);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compares two versions of an element and adds a qualified element
+	 * containing the changes to the result. Then the children of the element
+	 * are compared.
+	 * 
+	 * @param before
+	 *            The previous version or <i>null</i>, if the element did not
+	 *            exist.
+	 * @param after
+	 *            The current version.
+	 * @param path
+	 *            The path of the element.
+	 */
+	private void compareElements(GlowContentElement before,
+			GlowContentElement after, Oid path) {
+		if (before != null && before.fingerprint() == after.fingerprint()) {
+			return;
+		}
+
+		final GlowContentElement update = qualify(after, path);
+
+		if (update == null) {
+			return;
+		}
+
+		final Set contents = after.contents(false);
+		final Set previousContents = before != null ? before.contents(false)
+				: null;
+		final GlowElementCollection children = after.children(false);
+
+		if (contents != null
+				&& (previousContents == null || previousContents
+						.fingerprint() != contents.fingerprint())) {
+			for (Iterator<Node> it = contents.iterator(); it.hasNext(); /* Nothing */) {
+				final Node node = it.next();
+				final Node other = previousContents != null ? previousContents
+						.find(node.applicationTag()) : null;
+
+				if (other == null || other.fingerprint() != node.fingerprint()) {
+					append(update.contents(true), node);
+				}
+			}
+		}
+
+		for (Iterator<Node> it = after.iterator(); it.hasNext(); /* Nothing */) {
+			final Node node = it.next();
+
+			if (node instanceof Leaf || node == contents || node == children) {
+				continue;
+			}
+
+			final Node other = before != null ? before.find(node
+					.applicationTag()) : null;
+
+			if (other == null || other.fingerprint() != node.fingerprint()) {
+				if (update instanceof GlowMatrixBase
+						&& node == ((GlowMatrixBase) after).connections()) {
+					compareConnections(other instanceof Sequence ? (Sequence) other
+							: null, (Sequence) node, (GlowMatrixBase) update);
+				} else {
+					append(update, node);
+				}
+			}
+		}
+
+		if (before == null || update.size() > 1) {
+			result.insert(update);
+		}
+
+		if (children != null) {
+			compareCollections(before != null ? before.children(false) : null,
+					children, path);
+		}
+	}
+}
@@ -0,0 +1,631 @@
+package libember.glow;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import libember.ber.Octets;
+import libember.ber.Oid;
+import libember.ber.Value;
+import libember.dom.Leaf;
+import libember.dom.Node;
+import libember.dom.Sequence;
+import libember.dom.Set;
+
+/**
+ * Represents a single element stored in a {@link GlowTree}, like a node, a
+ * parameter, a matrix or a function. An entry does not keep a reference to the
+ * DOM objects it has been created from. Primitive properties are stored as
+ * {@link Value} instances, complex properties like an enumeration map or a
+ * stream descriptor are stored as detached copies.
+ * <p>
+ * Properties are identified by the number of their context-specific tag within
+ * the contents set of the element, for example
+ * {@link ParameterProperty#value()}. Only properties with a number less than
+ * 61 are stored, which covers all properties defined by the glow dtd.
+ * </p>
+ * <p>
+ * Matrix entries additionally store the targets, the sources and the current
+ * connection of each target. Connections are merged per target, so an update
+ * containing a single connection only changes that target. Changes of this
+ * data are reported with the bits {@link #TARGETS}, {@link #SOURCES} and
+ * {@link #CONNECTIONS}, which are not used by any property.
+ * </p>
+ */
+public final class GlowTreeEntry {
+	/**
+	 * The greatest number of properties an entry is able to store.
+	 */
+	final static int MAX_PROPERTIES = 61;
+
+	/**
+	 * The bit reported to {@link GlowTreeListener#entryChanged} when the
+	 * targets of a matrix entry changed.
+	 */
+	public final static long TARGETS = 1L << 61;
+
+	/**
+	 * The bit reported to {@link GlowTreeListener#entryChanged} when the
+	 * sources of a matrix entry changed.
+	 */
+	public final static long SOURCES = 1L << 62;
+
+	/**
+	 * The bit reported to {@link GlowTreeListener#entryChanged} when at least
+	 * one connection of a matrix entry changed.
+	 */
+	public final static long CONNECTIONS = 1L << 63;
+
+	private final static Value[] NO_VALUES = new Value[0];
+	private final static Node[] NO_NODES = new Node[0];
+
+	private final GlowTreeEntry parent;
+	private final Oid path;
+	private final int number;
+	private GlowType type;
+	private String identifierPath;
+	private LinkedHashMap<Integer, GlowTreeEntry> children;
+	private Value[] values = NO_VALUES;
+	private Node[] nodes = NO_NODES;
+	private long mask;
+	private GlowSignalTable targets;
+	private GlowSignalTable sources;
+	private LinkedHashMap<Integer, GlowConnection> connections;
+
+	/**
+	 * Initializes a new instance of the {@link GlowTreeEntry} class.
+	 * 
+	 * @param parent
+	 *            The parent entry or <i>null</i>, if this is the root entry.
+	 * @param path
+	 *            The number path of this entry.
+	 * @param number
+	 *            The number of this entry within its parent.
+	 */
+	GlowTreeEntry(GlowTreeEntry parent, Oid path, int number) {
+		this.parent = parent;
+		this.path = path;
+		this.number = number;
+		this.identifierPath = parent == null ? "" : null;
+	}
+
+	/**
+	 * Tests whether two values are equal. Values of different types are never
+	 * considered equal.
+	 * 
+	 * @param first
+	 *            The first value to compare, may be <i>null</i>.
+	 * @param second
+	 *            The second value to compare, may be <i>null</i>.
+	 * @return <i>true</i>, if both values are equal.
+	 */
+	static boolean equals(Value first, Value second) {
+		if (first == second) {
+			return true;
+		} else if (first == null || second == null
+				|| first.type() != second.type()) {
+			return false;
+		}
+
+		switch (first.type()) {
+		case BOOLEAN:
+			return first.toBoolean() == second.toBoolean();
+		case INTEGER:
+			return first.toLong() == second.toLong();
+		case REAL:
+			return Double.doubleToLongBits(first.toDouble()) == Double
+					.doubleToLongBits(second.toDouble());
+		case UTF8STRING:
+			return first.toUTF8String().equals(second.toUTF8String());
+		case RELATIVEOID:
+			return first.toOid().equals(second.toOid());
+		case OCTETSTRING: {
+			final Octets a = first.toOctets();
+			final Octets b = second.toOctets();
+			final int size = a.size();
+
+			if (size != b.size()) {
+				return false;
+			}
+
+			for (int i = 0; i < size; i++) {
+				if (a.get(i).intValue() != b.get(i).intValue()) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+		case NULL:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Tests whether two signal tables contain the same numbers in the same
+	 * order.
+	 * 
+	 * @param first
+	 *            The first table to compare, may be <i>null</i>.
+	 * @param second
+	 *            The second table to compare, may be <i>null</i>.
+	 * @return <i>true</i>, if both tables are equal.
+	 */
+	static boolean equals(GlowSignalTable first, GlowSignalTable second) {
+		if (first == second) {
+			return true;
+		} else if (first == null || second == null
+				|| first.size() != second.size()) {
+			return false;
+		}
+
+		for (int i = 0; i < first.size(); i++) {
+			if (first.number(i) != second.number(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Adds a child entry.
+	 * 
+	 * @param child
+	 *            The child entry to add.
+	 */
+	void addChild(GlowTreeEntry child) {
+		if (children == null) {
+			children = new LinkedHashMap<Integer, GlowTreeEntry>();
+		}
+
+		children.put(child.number, child);
+	}
+
+	/**
+	 * Merges all properties contained in the passed contents set into this
+	 * entry.
+	 * 
+	 * @param contents
+	 *            The contents set of a glow element.
+	 * @return A bit mask of the properties which actually changed.
+	 */
+	long merge(Set contents) {
+		long changed = 0;
+
+		for (Iterator<Node> it = contents.iterator(); it.hasNext(); /* Nothing */) {
+			final Node node = it.next();
+			final int property = node.applicationTag().number();
+
+			if (property >= 0 && property < MAX_PROPERTIES) {
+				final boolean result;
+
+				if (node instanceof Leaf) {
+					result = setValue(property, ((Leaf) node).value());
+				} else {
+					result = setContent(property, node);
+				}
+
+				if (result) {
+					changed |= 1L << property;
+				}
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Merges a single connection into this entry. An absolute connection
+	 * replaces the sources of its target, a connect or disconnect operation
+	 * adds or removes the passed sources. A connection without sources only
+	 * updates the disposition.
+	 * 
+	 * @param connection
+	 *            The connection to merge.
+	 * @return <i>true</i>, if the state of the target changed.
+	 */
+	private boolean mergeConnection(GlowConnection connection) {
+		final Integer target = connection.target();
+
+		if (target == null) {
+			return false;
+		}
+
+		if (connections == null) {
+			connections = new LinkedHashMap<Integer, GlowConnection>();
+		}
+
+		final GlowConnection previous = connections.get(target);
+		final Iterable<Integer> received = connection.sources();
+		final ConnectionOperation operation = connection.operation();
+		final ArrayList<Integer> sources = new ArrayList<Integer>();
+
+		if (previous != null
+				&& (received == null || (operation != null && operation != ConnectionOperation.ABSOLUTE))) {
+			final Iterable<Integer> current = previous.sources();
+
+			if (current != null) {
+				for (Integer source : current) {
+					sources.add(source);
+				}
+			}
+		}
+
+		if (received != null) {
+			if (operation == ConnectionOperation.CONNECT) {
+				for (Integer source : received) {
+					if (sources.contains(source) == false) {
+						sources.add(source);
+					}
+				}
+			} else if (operation == ConnectionOperation.DISCONNECT) {
+				for (Integer source : received) {
+					sources.remove(source);
+				}
+			} else {
+				for (Integer source : received) {
+					sources.add(source);
+				}
+			}
+		}
+
+		final GlowConnection state = new GlowConnection(target);
+		final ConnectionDisposition disposition = connection.disposition() != null ? connection
+				.disposition() : previous != null ? previous.disposition()
+				: null;
+
+		state.setSources(sources);
+
+		if (disposition != null) {
+			state.setDisposition(disposition);
+		}
+
+		if (previous != null && previous.fingerprint() == state.fingerprint()) {
+			return false;
+		}
+
+		connections.put(target, state);
+		return true;
+	}
+
+	/**
+	 * Merges the targets, sources and connections of a matrix into this
+	 * entry. Targets and sources replace the ones stored before, connections
+	 * are merged per target.
+	 * 
+	 * @param matrix
+	 *            The matrix element to merge.
+	 * @return A bit mask containing {@link #TARGETS}, {@link #SOURCES} and
+	 *         {@link #CONNECTIONS} for the data which actually changed.
+	 */
+	long mergeMatrix(GlowMatrixBase matrix) {
+		final GlowSignalTable targetTable = matrix.targetTable();
+		final GlowSignalTable sourceTable = matrix.sourceTable();
+		final Sequence received = matrix.connections();
+		long changed = 0;
+
+		if (targetTable != null && equals(targets, targetTable) == false) {
+			targets = targetTable;
+			changed |= TARGETS;
+		}
+
+		if (sourceTable != null && equals(sources, sourceTable) == false) {
+			sources = sourceTable;
+			changed |= SOURCES;
+		}
+
+		if (received != null) {
+			for (Iterator<Node> it = received.iterator(); it.hasNext(); /* Nothing */) {
+				final Node node = it.next();
+
+				if (node instanceof GlowConnection
+						&& mergeConnection((GlowConnection) node)) {
+					changed |= CONNECTIONS;
+				}
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Stores a complex property.
+	 * 
+	 * @param property
+	 *            The number of the property.
+	 * @param node
+	 *            The node to store. A detached copy is stored, unless the
+	 *            stored node is equal to it.
+	 * @return <i>true</i>, if the property has been stored, <i>false</i> if
+	 *         {@link node} is <i>null</i> or equal to the stored node.
+	 */
+	boolean setContent(int property, Node node) {
+		if (node == null) {
+			return false;
+		}
+
+		if (property < nodes.length && nodes[property] != null
+				&& nodes[property].fingerprint() == node.fingerprint()) {
+			return false;
+		}
+
+		if (property >= nodes.length) {
+			nodes = Arrays.copyOf(nodes, Math.max(property + 1, 4));
+		}
+
+		if (property < values.length) {
+			values[property] = null;
+		}
+
+		nodes[property] = GlowTree.FACTORY.copy(node);
+		mask |= 1L << property;
+		return true;
+	}
+
+	/**
+	 * Sets the identifier path of this entry.
+	 * 
+	 * @param identifierPath
+	 *            The new identifier path or <i>null</i>, if the path is not
+	 *            known.
+	 */
+	void setIdentifierPath(String identifierPath) {
+		this.identifierPath = identifierPath;
+	}
+
+	/**
+	 * Sets the glow type of this entry.
+	 * 
+	 * @param type
+	 *            The new type.
+	 */
+	void setType(GlowType type) {
+		this.type = type;
+	}
+
+	/**
+	 * Stores a primitive property.
+	 * 
+	 * @param property
+	 *            The number of the property.
+	 * @param value
+	 *            The value to store.
+	 * @return <i>true</i>, if the value differs from the one stored before.
+	 */
+	boolean setValue(int property, Value value) {
+		if (property >= values.length) {
+			values = Arrays.copyOf(values, Math.max(property + 1, 4));
+		} else if (equals(values[property], value)) {
+			return false;
+		}
+
+		if (property < nodes.length) {
+			nodes[property] = null;
+		}
+
+		values[property] = value;
+		mask |= 1L << property;
+		return true;
+	}
+
+	/**
+	 * Gets the child entry with the specified number.
+	 * 
+	 * @param number
+	 *            The number of the child.
+	 * @return The child entry or <i>null</i>, if no such child exists.
+	 */
+	public GlowTreeEntry child(int number) {
+		return children != null ? children.get(number) : null;
+	}
+
+	/**
+	 * Gets the child entries, in the order in which they have been added.
+	 * 
+	 * @return An unmodifiable collection of child entries.
+	 */
+	public Collection<GlowTreeEntry> children() {
+		if (children == null) {
+			return Collections.emptyList();
+		}
+
+		return Collections.unmodifiableCollection(children.values());
+	}
+
+	/**
+	 * Gets the current connection of a target of a matrix entry. The
+	 * connection is stored with the absolute list of connected sources and
+	 * without an operation. It is owned by this entry and must not be
+	 * modified.
+	 * 
+	 * @param target
+	 *            The number of the target.
+	 * @return The connection or <i>null</i>, if the connection of the target
+	 *         is not known.
+	 */
+	public GlowConnection connection(int target) {
+		return connections != null ? connections.get(target) : null;
+	}
+
+	/**
+	 * Gets the current connections of all targets of a matrix entry whose
+	 * connection is known, in the order in which they have been received
+	 * first. See {@link #connection(int)}.
+	 * 
+	 * @return An unmodifiable collection of connections.
+	 */
+	public Collection<GlowConnection> connections() {
+		if (connections == null) {
+			return Collections.emptyList();
+		}
+
+		return Collections.unmodifiableCollection(connections.values());
+	}
+
+	/**
+	 * Tests whether the specified property is present.
+	 * 
+	 * @param property
+	 *            The number of the property to test.
+	 * @return <i>true</i>, if the property is present.
+	 */
+	public boolean contains(int property) {
+		return property >= 0 && property < MAX_PROPERTIES
+				&& ((mask >>> property) & 1) != 0;
+	}
+
+	/**
+	 * Gets a complex property, like the enumeration map of a parameter. The
+	 * returned node is owned by this entry and must not be modified. Use
+	 * {@link libember.dom.NodeFactory#copy(Node)} to insert it into another
+	 * tree.
+	 * 
+	 * @param property
+	 *            The number of the property.
+	 * @return The property node or <i>null</i>, if the property is not
+	 *         present or not a complex property.
+	 */
+	public Node content(int property) {
+		return property >= 0 && property < nodes.length ? nodes[property]
+				: null;
+	}
+
+	/**
+	 * Gets the description of this entry, which is stored as property 1 for
+	 * all element types.
+	 * 
+	 * @return The description or <i>null</i>, if it is not known.
+	 */
+	public String description() {
+		final Value value = value(ParameterProperty.DESCRIPTION.value());
+		return value != null ? value.toUTF8String() : null;
+	}
+
+	/**
+	 * Gets the identifier of this entry, which is stored as property 0 for all
+	 * element types.
+	 * 
+	 * @return The identifier or <i>null</i>, if it is not known.
+	 */
+	public String identifier() {
+		final Value value = value(ParameterProperty.IDENTIFIER.value());
+		return value != null ? value.toUTF8String() : null;
+	}
+
+	/**
+	 * Gets the identifier path of this entry. The identifier path consists of
+	 * the identifiers of all ancestors and this entry, separated by a slash,
+	 * for example <code>router/inputs/gain</code>.
+	 * 
+	 * @return The identifier path or <i>null</i>, if the identifier of this
+	 *         entry or one of its ancestors is not known.
+	 */
+	public String identifierPath() {
+		return identifierPath;
+	}
+
+	/**
+	 * Gets the number of this entry within its parent.
+	 * 
+	 * @return The number of this entry.
+	 */
+	public int number() {
+		return number;
+	}
+
+	/**
+	 * Gets the parent entry.
+	 * 
+	 * @return The parent entry or <i>null</i>, if this is the root entry.
+	 */
+	public GlowTreeEntry parent() {
+		return parent;
+	}
+
+	/**
+	 * Gets the number path of this entry.
+	 * 
+	 * @return The number path of this entry.
+	 */
+	public Oid path() {
+		return path;
+	}
+
+	/**
+	 * Gets a bit mask of all present properties. Bit <i>n</i> is set if the
+	 * property with the context tag number <i>n</i> is present. The targets,
+	 * sources and connections of a matrix are not included.
+	 * 
+	 * @return The bit mask of present properties.
+	 */
+	public long properties() {
+		return mask;
+	}
+
+	/**
+	 * Gets the sources of a matrix entry.
+	 * 
+	 * @return The sources or <i>null</i>, if they are not known.
+	 */
+	public GlowSignalTable sources() {
+		return sources;
+	}
+
+	/**
+	 * Gets the targets of a matrix entry.
+	 * 
+	 * @return The targets or <i>null</i>, if they are not known.
+	 */
+	public GlowSignalTable targets() {
+		return targets;
+	}
+
+	/**
+	 * Gets the glow type of this entry, which is one of {@link GlowType#NODE},
+	 * {@link GlowType#PARAMETER}, {@link GlowType#MATRIX} or
+	 * {@link GlowType#FUNCTION}, regardless of whether the element has been
+	 * received in qualified form.
+	 * 
+	 * @return The type of this entry or <i>null</i>, if the entry is only
+	 *         known as the ancestor of another entry.
+	 */
+	public GlowType type() {
+		return type;
+	}
+
+	/**
+	 * Gets a primitive property.
+	 * 
+	 * @param property
+	 *            The number of the property.
+	 * @return The property value or <i>null</i>, if the property is not
+	 *         present or not a primitive property.
+	 */
+	public Value value(int property) {
+		return property >= 0 && property < values.length ? values[property]
+				: null;
+	}
+
+	/**
+	 * Gets the value of a parameter entry.
+	 * 
+	 * @return The value of the parameter or <i>null</i>, if this entry is not
+	 *         a parameter or the value is not known.
+	 */
+	public Value value() {
+		return type == GlowType.PARAMETER ? value(ParameterProperty.VALUE
+				.value()) : null;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("GlowTreeEntry (Path = %s, Type = %s)",
+				path.toString(), String.valueOf(type));
+	}
+}
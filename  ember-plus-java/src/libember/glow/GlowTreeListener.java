@@ -0,0 +1,37 @@
+package libember.glow;
+
+/**
+ * Public interface which is used to observe a {@link GlowTree}. Instances of
+ * this interface are registered with {@link GlowTree#addListener}, and are
+ * notified whenever an element is added to the tree or one of its properties
+ * changes.
+ */
+public interface GlowTreeListener {
+	/**
+	 * This method is called when a new entry has been added to the tree. It is
+	 * called before the properties of the new entry are merged, so the
+	 * properties are reported by a subsequent call to
+	 * {@link #entryChanged(GlowTreeEntry, long)}.
+	 * 
+	 * @param entry
+	 *            The entry that has been added.
+	 */
+	void entryAdded(GlowTreeEntry entry);
+
+	/**
+	 * This method is called when one or more properties of an entry have
+	 * changed, or when the type of the entry became known.
+	 * 
+	 * @param entry
+	 *            The entry whose properties have changed.
+	 * @param properties
+	 *            A bit mask of the changed properties. Bit <i>n</i> is set if
+	 *            the property with the context tag number <i>n</i> has changed,
+	 *            for example {@link ParameterProperty#VALUE}. Changes of the
+	 *            targets, sources or connections of a matrix are reported with
+	 *            {@link GlowTreeEntry#TARGETS}, {@link GlowTreeEntry#SOURCES}
+	 *            and {@link GlowTreeEntry#CONNECTIONS}. The mask is 0 if only
+	 *            the type of the entry changed.
+	 */
+	void entryChanged(GlowTreeEntry entry, long properties);
+}
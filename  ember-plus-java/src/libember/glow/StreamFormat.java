@@ -1,5 +1,6 @@
 package libember.glow;
 
+import java.nio.ByteOrder;
 import java.util.NoSuchElementException;
 
 /**
@@ -91,6 +92,16 @@ public enum StreamFormat {
 		this.value = value;
 	}
 
+	/**
+	 * Gets the byte order of values encoded in this format. The byte order of
+	 * single byte formats is big endian.
+	 * 
+	 * @return The byte order of this format.
+	 */
+	public ByteOrder byteOrder() {
+		return (value & 1) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+	}
+
 	/**
 	 * Compares the {@link value} against the internal value of this
 	 * {@link StreamFormat} instance.
@@ -104,6 +115,15 @@ public enum StreamFormat {
 		return this.value == value;
 	}
 
+	/**
+	 * Gets the number of bytes occupied by a value encoded in this format.
+	 * 
+	 * @return The size of an encoded value, in bytes.
+	 */
+	public int size() {
+		return 1 << ((value >> 1) & 3);
+	}
+
 	@Override
 	public String toString() {
 		final int type = (value >> 3) & 3;
@@ -0,0 +1,61 @@
+package libember.s101;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Scoped enumeration listing the directions of the S101 data recorded by a
+ * {@link StreamRecorder}.
+ */
+public enum StreamDirection {
+	/**
+	 * Data received from the remote host.
+	 */
+	RECEIVED(0x00),
+
+	/**
+	 * Data sent to the remote host.
+	 */
+	SENT(0x01);
+
+	/**
+	 * Gets the {@link StreamDirection} instance that represents the provided
+	 * {@link value}. If the specified value does not represent a valid
+	 * {@link StreamDirection} an exception is thrown.
+	 * 
+	 * @param value
+	 *            The numeric direction value to lookup.
+	 * @return The {@link StreamDirection} that represents the provided value.
+	 * @throws NoSuchElementException
+	 *             Thrown if {@link value} is invalid.
+	 */
+	public static StreamDirection valueOf(int value)
+			throws NoSuchElementException {
+		if (value == 0x00)
+			return RECEIVED;
+		else if (value == 0x01)
+			return SENT;
+		else
+			throw new NoSuchElementException("The value is invalid.");
+	}
+
+	private final int value;
+
+	/**
+	 * Initializes a new instance of the {@link StreamDirection} class.
+	 * 
+	 * @param value
+	 *            The value to initialize this instance with.
+	 */
+	private StreamDirection(int value) {
+		this.value = value;
+	}
+
+	/**
+	 * Gets the numeric representation of this enumeration.
+	 * 
+	 * @return The numeric representation of this enumeration.
+	 */
+	public int value() {
+		return value;
+	}
+}
@@ -1,14 +1,18 @@
 package libember.s101;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Vector;
+import java.util.NoSuchElementException;
+
+import libember.util.Assert;
 
 /**
  * This class encodes a collection of bytes and forms a valid S101 packet that
  * may be transmitted to connected clients.
  */
 public final class StreamEncoder implements Iterable<Integer> {
-	private final Vector<Integer> buffer = new Vector<Integer>(1024);
+	private byte[] buffer = new byte[1024];
+	private int size;
 	boolean finished;
 	int crc;
 
@@ -32,11 +36,25 @@ public final class StreamEncoder implements Iterable<Integer> {
 			input = 0xFF;
 
 		if (input >= FrameByte.INVALID.value()) {
-			buffer.add(Integer.valueOf(FrameByte.CE.value()));
-			buffer.add(Integer.valueOf(input ^ FrameByte.XOR.value()));
+			put(FrameByte.CE.value());
+			put(input ^ FrameByte.XOR.value());
 		} else {
-			buffer.add(Integer.valueOf(input));
+			put(input);
+		}
+	}
+
+	/**
+	 * Appends a byte to the encoding buffer without escaping it.
+	 * 
+	 * @param value
+	 *            The value to add to the buffer.
+	 */
+	private void put(int value) {
+		if (size == buffer.length) {
+			buffer = Arrays.copyOf(buffer, size << 1);
 		}
+
+		buffer[size++] = (byte) value;
 	}
 
 	/**
@@ -48,13 +66,37 @@ public final class StreamEncoder implements Iterable<Integer> {
 	public void encode(int input) {
 		if (isEmpty()) {
 			crc = 0xFFFF;
-			buffer.add(Integer.valueOf(FrameByte.BOF.value()));
+			put(FrameByte.BOF.value());
 		}
 
 		crc = Crc16.sample(crc, input);
 		append(input);
 	}
 
+	/**
+	 * Adds a range of bytes to the encoding buffer. This is equivalent to
+	 * calling {@link #encode(int)} for each byte, but does not box the values.
+	 * 
+	 * @param bytes
+	 *            The array containing the bytes to append.
+	 * @param offset
+	 *            The index of the first byte to append.
+	 * @param length
+	 *            The number of bytes to append.
+	 * @throws NullPointerException
+	 *             Thrown if {@link bytes} is <i>null</i>.
+	 */
+	public void encode(byte[] bytes, int offset, int length)
+			throws NullPointerException {
+		Assert.AssertNotNull(bytes, "bytes");
+
+		final int end = offset + length;
+
+		for (int i = offset; i < end; i++) {
+			encode(bytes[i] & 0xFF);
+		}
+	}
+
 	/**
 	 * Adds all elements of the provided collection.
 	 * 
@@ -92,7 +134,7 @@ public final class StreamEncoder implements Iterable<Integer> {
 			crc = (~crc) & 0xFFFF;
 			append((crc >> 0) & 0xFF);
 			append((crc >> 8) & 0xFF);
-			buffer.add(FrameByte.EOF.value());
+			put(FrameByte.EOF.value());
 		}
 	}
 
@@ -102,7 +144,7 @@ public final class StreamEncoder implements Iterable<Integer> {
 	 * @return <i>true</i> if the encoder buffer is empty.
 	 */
 	public boolean isEmpty() {
-		return buffer.isEmpty();
+		return size == 0;
 	}
 
 	/**
@@ -116,25 +158,53 @@ public final class StreamEncoder implements Iterable<Integer> {
 	}
 
 	public Iterator<Integer> iterator() {
-		return buffer.iterator();
+		return new Iterator<Integer>() {
+			private int index;
+
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			public Integer next() {
+				if (index >= size)
+					throw new NoSuchElementException();
+
+				return Integer.valueOf(buffer[index++] & 0xFF);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 
 	/**
 	 * Resets the encoder.
 	 */
 	public void reset() {
-		buffer.clear();
+		size = 0;
 		crc = 0xFFFF;
 		finished = false;
 	}
 
+	/**
+	 * Gets the internal buffer of this encoder without copying it. Only the
+	 * first {@link #size()} bytes are valid, and the buffer must not be
+	 * modified.
+	 * 
+	 * @return The internal buffer.
+	 */
+	byte[] buffer() {
+		return buffer;
+	}
+
 	/**
 	 * Gets the current size of this buffer.
 	 * 
 	 * @return The current size of this buffer.
 	 */
 	public int size() {
-		return buffer.size();
+		return size;
 	}
 
 	/**
@@ -153,14 +223,6 @@ public final class StreamEncoder implements Iterable<Integer> {
 					"finish() must be called prior to invoking the toArray() method.");
 		}
 
-		final byte[] bytes = new byte[size()];
-
-		int index = 0;
-
-		for (int i : this) {
-			bytes[index++] = (byte) (i & 0xFF);
-		}
-
-		return bytes;
+		return Arrays.copyOf(buffer, size);
 	}
 }
@@ -0,0 +1,299 @@
+package libember.s101;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import libember.util.Assert;
+
+/**
+ * Records raw S101 data together with its direction and the time it has been
+ * received or sent to a capture file, which can be replayed by a
+ * {@link StreamReplayer}. Usually each record contains one complete frame as
+ * produced by a {@link StreamEncoder}, but received data may also be recorded
+ * in the chunks read from the connection, since a {@link StreamDecoder} does
+ * not depend on frame boundaries.
+ * <p>
+ * The capture file is written through a memory mapping, so recording only
+ * copies the data into memory and does not issue a system call per record.
+ * The file is mapped in regions of a fixed size and grows by one region at a
+ * time, the header contains the number of bytes which are actually used.
+ * Closing the recorder truncates the file to that size where the operating
+ * system allows it; otherwise the unused tail is left in place and ignored
+ * by the {@link StreamReplayer}. All methods may be called by several
+ * threads.
+ * </p>
+ * <p>
+ * The file starts with a header of 32 bytes: the signature "S1CP", the version,
+ * the start time in milliseconds since the epoch and the end of the last
+ * record. Each record consists of the length of the data, the direction, the
+ * time in nanoseconds since the start time and the data. All numbers are
+ * stored in big-endian byte order.
+ * </p>
+ */
+public final class StreamRecorder implements Closeable {
+	/**
+	 * The signature at the beginning of a capture file, "S1CP".
+	 */
+	final static int MAGIC = 0x53314350;
+	final static int VERSION = 1;
+	final static int HEADER_SIZE = 32;
+	final static int RECORD_HEADER_SIZE = 16;
+
+	/**
+	 * The position of the end of the last record within the header.
+	 */
+	final static int END_POSITION = 16;
+
+	/**
+	 * The default size of a mapped region, 16 MB.
+	 */
+	private final static int DEFAULT_REGION_SIZE = 1 << 24;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer header;
+	private final int regionSize;
+	private final long startNanos;
+	private MappedByteBuffer region;
+	private long regionStart;
+	private long end = HEADER_SIZE;
+	private int count;
+	private boolean isClosed;
+
+	/**
+	 * Initializes a new instance of the {@link StreamRecorder} class which
+	 * maps the file in regions of 16 MB.
+	 * 
+	 * @param file
+	 *            The capture file to create. An existing file is replaced.
+	 * @throws IOException
+	 *             Thrown if the file cannot be created or mapped.
+	 * @throws NullPointerException
+	 *             Thrown if {@link file} is <i>null</i>.
+	 */
+	public StreamRecorder(File file) throws IOException, NullPointerException {
+		this(file, DEFAULT_REGION_SIZE);
+	}
+
+	/**
+	 * Initializes a new instance of the {@link StreamRecorder} class.
+	 * 
+	 * @param file
+	 *            The capture file to create. An existing file is replaced.
+	 * @param regionSize
+	 *            The number of bytes to map at a time. Records larger than a
+	 *            region are stored in a region of their own size.
+	 * @throws IOException
+	 *             Thrown if the file cannot be created or mapped.
+	 * @throws NullPointerException
+	 *             Thrown if {@link file} is <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link regionSize} is less than 4096.
+	 */
+	public StreamRecorder(File file, int regionSize) throws IOException,
+			NullPointerException, IllegalArgumentException {
+		Assert.AssertNotNull(file, "file");
+
+		if (regionSize < 4096)
+			throw new IllegalArgumentException("regionSize");
+
+		this.file = new RandomAccessFile(file, "rw");
+		this.regionSize = regionSize;
+
+		try {
+			this.file.setLength(0);
+			this.header = this.file.getChannel().map(
+					FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+			this.region = this.file.getChannel().map(
+					FileChannel.MapMode.READ_WRITE, HEADER_SIZE, regionSize);
+		} catch (IOException e) {
+			this.file.close();
+			throw e;
+		}
+
+		this.regionStart = HEADER_SIZE;
+		this.startNanos = System.nanoTime();
+
+		header.putInt(0, MAGIC);
+		header.putInt(4, VERSION);
+		header.putLong(8, System.currentTimeMillis());
+		header.putLong(END_POSITION, end);
+	}
+
+	/**
+	 * Makes sure that the current region can hold a record and maps the next
+	 * region if it cannot.
+	 * 
+	 * @param length
+	 *            The length of the data to record.
+	 * @throws IOException
+	 *             Thrown if the next region cannot be mapped.
+	 */
+	private void allocate(int length) throws IOException {
+		final int required = RECORD_HEADER_SIZE + length;
+
+		if (region.remaining() < required) {
+			regionStart = end;
+			region = file.getChannel().map(FileChannel.MapMode.READ_WRITE,
+					regionStart, Math.max(regionSize, required));
+		}
+	}
+
+	/**
+	 * Publishes the record which has just been written to the current region.
+	 */
+	private void commit() {
+		end = regionStart + region.position();
+		count++;
+		header.putLong(END_POSITION, end);
+	}
+
+	/**
+	 * Validates the state of this recorder.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the recorder has been closed.
+	 */
+	private void check() throws UnsupportedOperationException {
+		if (isClosed)
+			throw new UnsupportedOperationException(
+					"The recorder has been closed.");
+	}
+
+	/**
+	 * Writes the header of a record to the current region.
+	 * 
+	 * @param direction
+	 *            The direction of the data.
+	 * @param length
+	 *            The length of the data.
+	 */
+	private void putHeader(StreamDirection direction, int length) {
+		region.putInt(length);
+		region.putInt(direction.value());
+		region.putLong(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Writes the recorded data to the storage device, cuts off the unused
+	 * part of the last region and releases the file. The mapping itself is
+	 * released by the garbage collector. Some systems, Windows for example,
+	 * refuse to truncate a file while it is mapped; the tail is kept there,
+	 * since the header already marks the end of the records.
+	 */
+	public synchronized void close() throws IOException {
+		if (isClosed == false) {
+			isClosed = true;
+
+			try {
+				force();
+				file.setLength(end);
+			} catch (IOException e) {
+				/* The file is still mapped, keep the tail */
+			} finally {
+				file.close();
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of records written so far.
+	 * 
+	 * @return The number of records.
+	 */
+	public synchronized int count() {
+		return count;
+	}
+
+	/**
+	 * Forces the recorded data to be written to the storage device. This is
+	 * not required for a {@link StreamReplayer} to see the data, since the
+	 * mapping is shared with other processes, but it protects the data against
+	 * a crash of the operating system.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the recorder has been closed.
+	 */
+	public synchronized void flush() throws UnsupportedOperationException {
+		check();
+		force();
+	}
+
+	/**
+	 * Writes the mapped regions to the storage device.
+	 */
+	private void force() {
+		region.force();
+		header.force();
+	}
+
+	/**
+	 * Records a range of bytes.
+	 * 
+	 * @param direction
+	 *            The direction of the data.
+	 * @param bytes
+	 *            The array containing the raw S101 data.
+	 * @param offset
+	 *            The index of the first byte to record.
+	 * @param length
+	 *            The number of bytes to record.
+	 * @throws IOException
+	 *             Thrown if the file cannot be extended.
+	 * @throws NullPointerException
+	 *             Thrown if {@link direction} or {@link bytes} is <i>null</i>.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link offset} or {@link length} is invalid.
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the recorder has been closed.
+	 */
+	public synchronized void record(StreamDirection direction, byte[] bytes,
+			int offset, int length) throws IOException, NullPointerException,
+			IndexOutOfBoundsException, UnsupportedOperationException {
+		Assert.AssertNotNull(direction, "direction");
+		Assert.AssertNotNull(bytes, "bytes");
+
+		if (offset < 0 || length < 0 || offset > bytes.length - length)
+			throw new IndexOutOfBoundsException("offset");
+
+		check();
+		allocate(length);
+		putHeader(direction, length);
+		region.put(bytes, offset, length);
+		commit();
+	}
+
+	/**
+	 * Records the frame contained in an encoder.
+	 * 
+	 * @param direction
+	 *            The direction of the frame, usually {@link StreamDirection#SENT}.
+	 * @param encoder
+	 *            The encoder containing the frame.
+	 * @throws IOException
+	 *             Thrown if the file cannot be extended.
+	 * @throws NullPointerException
+	 *             Thrown if {@link direction} or {@link encoder} is
+	 *             <i>null</i>.
+	 * @throws UnsupportedOperationException
+	 *             Thrown if the recorder has been closed.
+	 */
+	public synchronized void record(StreamDirection direction,
+			StreamEncoder encoder) throws IOException, NullPointerException,
+			UnsupportedOperationException {
+		Assert.AssertNotNull(direction, "direction");
+		Assert.AssertNotNull(encoder, "encoder");
+
+		final int length = encoder.size();
+
+		check();
+		allocate(length);
+		putHeader(direction, length);
+
+		region.put(encoder.buffer(), 0, length);
+		commit();
+	}
+}
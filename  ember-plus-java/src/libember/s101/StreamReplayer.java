@@ -0,0 +1,366 @@
+package libember.s101;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import libember.util.Assert;
+
+/**
+ * Replays a capture file written by a {@link StreamRecorder}. The records of
+ * one direction are passed to a {@link StreamDecoder}, or written to a
+ * channel such as a socket connected to a local provider or consumer, either
+ * with the original timing, accelerated or as fast as possible.
+ * <p>
+ * The file is mapped into memory when the replayer is created and the
+ * records are passed on directly from the mapping. A file which is still
+ * being recorded can be replayed up to the last record which was complete
+ * when the replayer has been created. Since the file is mapped as a whole,
+ * capture files are limited to 2 GB. An open replayer may be used by several
+ * threads at the same time.
+ * </p>
+ */
+public final class StreamReplayer implements Closeable {
+	/**
+	 * Receives the replayed records.
+	 */
+	private interface Sink {
+		/**
+		 * Passes a single record on.
+		 * 
+		 * @param data
+		 *            The data of the record.
+		 * @throws IOException
+		 *             Thrown if the data cannot be written.
+		 */
+		void write(ByteBuffer data) throws IOException;
+	}
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final long startTime;
+	private int[] offsets = new int[256];
+	private int count;
+
+	/**
+	 * Initializes a new instance of the {@link StreamReplayer} class.
+	 * 
+	 * @param file
+	 *            The capture file to replay.
+	 * @throws IOException
+	 *             Thrown if the file cannot be opened or is not a valid capture
+	 *             file.
+	 * @throws NullPointerException
+	 *             Thrown if {@link file} is <i>null</i>.
+	 */
+	public StreamReplayer(File file) throws IOException, NullPointerException {
+		Assert.AssertNotNull(file, "file");
+
+		this.file = new RandomAccessFile(file, "r");
+
+		try {
+			final long size = this.file.length();
+
+			if (size < StreamRecorder.HEADER_SIZE)
+				throw new IOException("Not a S101 capture file");
+
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("Capture file exceeds 2 GB");
+
+			this.buffer = this.file.getChannel().map(
+					FileChannel.MapMode.READ_ONLY, 0, size);
+
+			if (buffer.getInt(0) != StreamRecorder.MAGIC)
+				throw new IOException("Not a S101 capture file");
+
+			if (buffer.getInt(4) != StreamRecorder.VERSION)
+				throw new IOException("Unsupported capture file version "
+						+ buffer.getInt(4));
+
+			final long end = buffer.getLong(StreamRecorder.END_POSITION);
+
+			if (end < StreamRecorder.HEADER_SIZE || end > size)
+				throw new IOException("Corrupt capture file header");
+
+			this.startTime = buffer.getLong(8);
+			index((int) end);
+		} catch (IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Passes the records of one direction to a sink.
+	 * 
+	 * @param sink
+	 *            The sink receiving the records.
+	 * @param direction
+	 *            The direction of the records to replay.
+	 * @param speed
+	 *            The speed factor.
+	 * @return The number of replayed records.
+	 */
+	private int replay(Sink sink, StreamDirection direction, double speed)
+			throws IOException, InterruptedException {
+		final long started = System.nanoTime();
+		long first = -1;
+		int replayed = 0;
+
+		for (int i = 0; i < count; i++) {
+			final int offset = offsets[i];
+
+			if (buffer.getInt(offset + 4) != direction.value()) {
+				continue;
+			}
+
+			if (speed > 0) {
+				final long timestamp = buffer.getLong(offset + 8);
+
+				if (first < 0) {
+					first = timestamp;
+				}
+
+				final long delay = started + (long) ((timestamp - first) / speed)
+						- System.nanoTime();
+
+				if (delay > 0) {
+					TimeUnit.NANOSECONDS.sleep(delay);
+				}
+			}
+
+			sink.write(slice(offset));
+			replayed++;
+		}
+
+		return replayed;
+	}
+
+	/**
+	 * Validates a record index.
+	 * 
+	 * @param index
+	 *            The index to validate.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	private void check(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("index");
+	}
+
+	/**
+	 * Releases the file. The mapping itself is released by the garbage
+	 * collector.
+	 */
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Gets the number of records in the capture file.
+	 * 
+	 * @return The number of records.
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * Gets the data of the record at the specified position.
+	 * 
+	 * @param offset
+	 *            The position of the record within the file.
+	 * @return A read-only buffer containing the data.
+	 */
+	private ByteBuffer slice(int offset) {
+		final ByteBuffer slice = buffer.duplicate();
+		final int start = offset + StreamRecorder.RECORD_HEADER_SIZE;
+
+		slice.limit(start + buffer.getInt(offset));
+		slice.position(start);
+		return slice.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Gets the data of the record at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the record.
+	 * @return A read-only buffer containing the raw S101 data.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public ByteBuffer data(int index) throws IndexOutOfBoundsException {
+		check(index);
+		return slice(offsets[index]);
+	}
+
+	/**
+	 * Gets the direction of the record at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the record.
+	 * @return The direction of the record.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public StreamDirection direction(int index)
+			throws IndexOutOfBoundsException {
+		check(index);
+		return StreamDirection.valueOf(buffer.getInt(offsets[index] + 4));
+	}
+
+	/**
+	 * Locates the records of the capture file.
+	 * 
+	 * @param end
+	 *            The end of the last complete record.
+	 * @throws IOException
+	 *             Thrown if a record is invalid.
+	 */
+	private void index(int end) throws IOException {
+		int offset = StreamRecorder.HEADER_SIZE;
+
+		while (offset < end) {
+			if (end - offset < StreamRecorder.RECORD_HEADER_SIZE)
+				throw new IOException("Truncated record at " + offset);
+
+			final int length = buffer.getInt(offset);
+			final int direction = buffer.getInt(offset + 4);
+
+			if (length < 0
+					|| length > end - offset - StreamRecorder.RECORD_HEADER_SIZE)
+				throw new IOException("Truncated record at " + offset);
+
+			if (direction != StreamDirection.RECEIVED.value()
+					&& direction != StreamDirection.SENT.value())
+				throw new IOException("Invalid record at " + offset);
+
+			if (count == offsets.length) {
+				offsets = Arrays.copyOf(offsets, count << 1);
+			}
+
+			offsets[count++] = offset;
+			offset += StreamRecorder.RECORD_HEADER_SIZE + length;
+		}
+	}
+
+	/**
+	 * Feeds the records of one direction to a decoder.
+	 * 
+	 * @param decoder
+	 *            The decoder to feed.
+	 * @param direction
+	 *            The direction of the records to replay.
+	 * @param speed
+	 *            The speed factor. 1 reproduces the original timing, 2 replays
+	 *            twice as fast, and 0 replays without any delay.
+	 * @return The number of replayed records.
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread has been interrupted while
+	 *             waiting for the next record.
+	 * @throws NullPointerException
+	 *             Thrown if {@link decoder} or {@link direction} is
+	 *             <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link speed} is negative or not a number.
+	 */
+	public int replay(final StreamDecoder decoder, StreamDirection direction,
+			double speed) throws InterruptedException, NullPointerException,
+			IllegalArgumentException {
+		Assert.AssertNotNull(decoder, "decoder");
+		Assert.AssertNotNull(direction, "direction");
+
+		if ((speed >= 0) == false)
+			throw new IllegalArgumentException("speed");
+
+		try {
+			return replay(new Sink() {
+				public void write(ByteBuffer data) {
+					final int limit = data.limit();
+
+					for (int i = data.position(); i < limit; i++) {
+						decoder.read(data.get(i) & 0xFF);
+					}
+				}
+			}, direction, speed);
+		} catch (IOException e) {
+			/* The decoder does not perform any I/O */
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes the records of one direction to a channel, for example a
+	 * {@link java.nio.channels.SocketChannel} connected to a local device.
+	 * 
+	 * @param channel
+	 *            The channel to write to. A non-blocking channel is written in
+	 *            a busy loop.
+	 * @param direction
+	 *            The direction of the records to replay.
+	 * @param speed
+	 *            The speed factor. 1 reproduces the original timing, 2 replays
+	 *            twice as fast, and 0 replays without any delay.
+	 * @return The number of replayed records.
+	 * @throws IOException
+	 *             Thrown if writing to the channel fails.
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread has been interrupted while
+	 *             waiting for the next record.
+	 * @throws NullPointerException
+	 *             Thrown if {@link channel} or {@link direction} is
+	 *             <i>null</i>.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link speed} is negative or not a number.
+	 */
+	public int replay(final WritableByteChannel channel,
+			StreamDirection direction, double speed) throws IOException,
+			InterruptedException, NullPointerException,
+			IllegalArgumentException {
+		Assert.AssertNotNull(channel, "channel");
+		Assert.AssertNotNull(direction, "direction");
+
+		if ((speed >= 0) == false)
+			throw new IllegalArgumentException("speed");
+
+		return replay(new Sink() {
+			public void write(ByteBuffer data) throws IOException {
+				while (data.hasRemaining()) {
+					channel.write(data);
+				}
+			}
+		}, direction, speed);
+	}
+
+	/**
+	 * Gets the time the recording has been started at.
+	 * 
+	 * @return The start time in milliseconds since the epoch.
+	 */
+	public long startTime() {
+		return startTime;
+	}
+
+	/**
+	 * Gets the time of the record at the specified index.
+	 * 
+	 * @param index
+	 *            The index of the record.
+	 * @return The time in nanoseconds since the start of the recording.
+	 * @throws IndexOutOfBoundsException
+	 *             Thrown if {@link index} is invalid.
+	 */
+	public long timestamp(int index) throws IndexOutOfBoundsException {
+		check(index);
+		return buffer.getLong(offsets[index] + 8);
+	}
+}
@@ -0,0 +1,113 @@
+package libember.util;
+
+import java.util.Arrays;
+
+/**
+ * An {@link OutputStream} which collects the appended values in a growing
+ * array of bytes. Unlike {@link MemoryStream}, this class does not box the
+ * values it stores, which makes it the better choice for encoding large trees
+ * or for encoding the same kind of message repeatedly, since the internal
+ * buffer can be reused after calling {@link #clear()}.
+ */
+public final class ByteStream implements OutputStream {
+	private byte[] buffer;
+	private int size;
+
+	/**
+	 * Initializes a new instance of the {@link ByteStream} class with an
+	 * initial capacity of 1024 bytes.
+	 */
+	public ByteStream() {
+		this(1024);
+	}
+
+	/**
+	 * Initializes a new instance of the {@link ByteStream} class.
+	 * 
+	 * @param capacity
+	 *            The initial capacity of the internal buffer.
+	 * @throws IllegalArgumentException
+	 *             Thrown if {@link capacity} is negative.
+	 */
+	public ByteStream(int capacity) throws IllegalArgumentException {
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity");
+
+		buffer = new byte[capacity];
+	}
+
+	public void append(int value) {
+		if (size == buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(16, size << 1));
+		}
+
+		buffer[size++] = (byte) value;
+	}
+
+	/**
+	 * Appends a range of bytes.
+	 * 
+	 * @param bytes
+	 *            The array containing the bytes to append.
+	 * @param offset
+	 *            The index of the first byte to append.
+	 * @param length
+	 *            The number of bytes to append.
+	 * @throws NullPointerException
+	 *             Thrown if {@link bytes} is <i>null</i>.
+	 */
+	public void append(byte[] bytes, int offset, int length)
+			throws NullPointerException {
+		Assert.AssertNotNull(bytes, "bytes");
+
+		ensureCapacity(size + length);
+		System.arraycopy(bytes, offset, buffer, size, length);
+		size += length;
+	}
+
+	/**
+	 * Gets the internal buffer. Only the first {@link #size()} bytes are
+	 * valid. The returned array is replaced when the stream grows, so it must
+	 * not be kept across calls to {@link #append(int)}.
+	 * 
+	 * @return The internal buffer.
+	 */
+	public byte[] buffer() {
+		return buffer;
+	}
+
+	/**
+	 * Removes all bytes from the stream. The internal buffer is kept, so no
+	 * memory is allocated when the stream is filled again.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Makes sure that the internal buffer is able to store at least the
+	 * specified number of bytes.
+	 * 
+	 * @param capacity
+	 *            The required capacity.
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > buffer.length) {
+			buffer = Arrays.copyOf(buffer,
+					Math.max(capacity, buffer.length << 1));
+		}
+	}
+
+	/**
+	 * Gets the number of bytes the stream currently contains.
+	 * 
+	 * @return The number of bytes the stream contains.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public byte[] toArray() {
+		return Arrays.copyOf(buffer, size);
+	}
+}